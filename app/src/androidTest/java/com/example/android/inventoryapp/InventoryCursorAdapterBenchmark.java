@@ -0,0 +1,86 @@
+package com.example.android.inventoryapp;
+
+import android.content.Context;
+import android.database.MatrixCursor;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.annotation.UiThreadTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import com.example.android.inventoryapp.data.InventoryContract.InventoryEntry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Measures the time and allocations of binding catalog rows in {@link InventoryCursorAdapter}.
+ * Rows are bound over and over to the same few list items, as when the user scrolls the catalog.
+ * Results are written to the log under the tag of this class.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryCursorAdapterBenchmark {
+
+    private static final String LOG_TAG = InventoryCursorAdapterBenchmark.class.getSimpleName();
+
+    private static final int ROWS = 1000;
+    private static final int VISIBLE_ITEMS = 10;
+    private static final int WARM_UP_PASSES = 5;
+    private static final int MEASURED_PASSES = 20;
+
+    @Test
+    @UiThreadTest
+    public void bindView() {
+        Context context = InstrumentationRegistry.getTargetContext();
+
+        MatrixCursor cursor = new MatrixCursor(new String[]{
+                InventoryEntry.COLUMN_ID,
+                InventoryEntry.COLUMN_PRODUCT_NAME,
+                InventoryEntry.COLUMN_PRICE,
+                InventoryEntry.COLUMN_QUANTITY});
+        for (int row = 0; row < ROWS; row++) {
+            cursor.addRow(new Object[]{row, "The Fellowship of the Ring, volume " + row,
+                    1999 + row, row % 100});
+        }
+
+        InventoryCursorAdapter adapter = new InventoryCursorAdapter(context, null);
+        adapter.swapCursor(cursor);
+
+        // Create the recycled list items once, as the ListView would
+        FrameLayout parent = new FrameLayout(context);
+        View[] items = new View[VISIBLE_ITEMS];
+        for (int i = 0; i < VISIBLE_ITEMS; i++) {
+            cursor.moveToPosition(i);
+            items[i] = adapter.newView(context, cursor, parent);
+        }
+
+        for (int pass = 0; pass < WARM_UP_PASSES; pass++) {
+            bindAllRows(adapter, context, cursor, items);
+        }
+
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocCount();
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int pass = 0; pass < MEASURED_PASSES; pass++) {
+            bindAllRows(adapter, context, cursor, items);
+        }
+        long elapsed = SystemClock.elapsedRealtimeNanos() - start;
+        int allocations = Debug.getThreadAllocCount();
+        Debug.stopAllocCounting();
+
+        long binds = (long) ROWS * MEASURED_PASSES;
+        Log.i(LOG_TAG, "bindView: " + (elapsed / binds) + " ns and "
+                + ((double) allocations / binds) + " allocations per row");
+    }
+
+    private static void bindAllRows(InventoryCursorAdapter adapter, Context context,
+                                    MatrixCursor cursor, View[] items) {
+        for (int row = 0; row < ROWS; row++) {
+            cursor.moveToPosition(row);
+            adapter.bindView(items[row % VISIBLE_ITEMS], context, cursor);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.android.inventoryapp.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.inventoryapp.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests for writing the {@link CatalogSnapshot} and reading it back mapped.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CatalogSnapshotTest {
+
+    private Context context;
+    private SQLiteDatabase db;
+
+    @Before
+    public void createDatabase() {
+        context = InstrumentationRegistry.getTargetContext();
+        db = SQLiteDatabase.create(null);
+        db.execSQL("CREATE TABLE inventory (_id INTEGER PRIMARY KEY, productName TEXT NOT NULL,"
+                + " price INTEGER NOT NULL, quantity INTEGER NOT NULL)");
+    }
+
+    @After
+    public void deleteSnapshot() {
+        db.close();
+        CatalogSnapshot.getFile(context).delete();
+    }
+
+    @Test
+    public void keepsTheFirstBooks() throws IOException {
+        for (int i = 1; i <= CatalogSnapshot.ROWS + 10; i++) {
+            db.execSQL("INSERT INTO inventory VALUES (?, ?, ?, ?)",
+                    new Object[]{i, "Book " + i, 100 * i, i % 7});
+        }
+
+        CatalogSnapshot.write(context, db);
+        Cursor cursor = CatalogSnapshot.open(context);
+
+        assertNotNull(cursor);
+        assertEquals(CatalogSnapshot.ROWS, cursor.getCount());
+        assertTrue(cursor.moveToPosition(4));
+        assertEquals(5, cursor.getLong(cursor.getColumnIndex(InventoryEntry.COLUMN_ID)));
+        assertEquals("Book 5",
+                cursor.getString(cursor.getColumnIndex(InventoryEntry.COLUMN_PRODUCT_NAME)));
+        assertEquals(500, cursor.getLong(cursor.getColumnIndex(InventoryEntry.COLUMN_PRICE)));
+        assertEquals(5, cursor.getInt(cursor.getColumnIndex(InventoryEntry.COLUMN_QUANTITY)));
+        cursor.close();
+    }
+
+    @Test
+    public void cutsOffLongTitles() throws IOException {
+        StringBuilder title = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            title.append("A very long story ");
+        }
+        db.execSQL("INSERT INTO inventory VALUES (1, ?, 1299, 3)", new Object[]{title.toString()});
+
+        CatalogSnapshot.write(context, db);
+        Cursor cursor = CatalogSnapshot.open(context);
+
+        assertNotNull(cursor);
+        assertTrue(cursor.moveToFirst());
+        String shown = cursor.getString(1);
+        assertTrue(shown.length() < title.length());
+        assertTrue(title.toString().startsWith(shown));
+        cursor.close();
+    }
+
+    @Test
+    public void ignoresUnreadableSnapshot() throws IOException {
+        FileOutputStream output = new FileOutputStream(CatalogSnapshot.getFile(context));
+        output.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14});
+        output.close();
+
+        assertNull(CatalogSnapshot.open(context));
+    }
+
+    @Test
+    public void opensNothingWithoutSnapshot() {
+        CatalogSnapshot.getFile(context).delete();
+
+        assertNull(CatalogSnapshot.open(context));
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.android.inventoryapp.data;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.inventoryapp.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests for the connection setup done by {@link InventoryDbHelper}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryDbHelperTest {
+
+    private static final String TEST_DATABASE_NAME = "inventoryDbHelperTest.db";
+
+    private Context context;
+    private InventoryDbHelper dbHelper;
+
+    @Before
+    public void openDatabase() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(TEST_DATABASE_NAME);
+        dbHelper = new InventoryDbHelper(context, TEST_DATABASE_NAME);
+    }
+
+    @After
+    public void deleteDatabase() {
+        dbHelper.close();
+        context.deleteDatabase(TEST_DATABASE_NAME);
+    }
+
+    @Test
+    public void databaseUsesWriteAheadLogging() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+
+        assertEquals("wal", DatabaseUtils.stringForQuery(db, "PRAGMA journal_mode", null));
+    }
+
+    @Test
+    public void readsProgressWhileWriteTransactionIsOpen() throws Exception {
+        final SQLiteDatabase db = dbHelper.getWritableDatabase();
+        final CountDownLatch transactionOpen = new CountDownLatch(1);
+        final CountDownLatch readFinished = new CountDownLatch(1);
+
+        // Hold a write transaction open on another thread until the read has finished
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                db.beginTransactionNonExclusive();
+                try {
+                    db.execSQL("INSERT INTO " + InventoryEntry.TABLE_NAME + " ("
+                            + InventoryEntry.COLUMN_PRODUCT_NAME + ", "
+                            + InventoryEntry.COLUMN_PRICE + ") VALUES ('Dune', 999)");
+                    transactionOpen.countDown();
+                    readFinished.await(10, TimeUnit.SECONDS);
+                    db.setTransactionSuccessful();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    db.endTransaction();
+                }
+            }
+        });
+        writer.start();
+        assertTrue(transactionOpen.await(5, TimeUnit.SECONDS));
+
+        // The read must complete without waiting for the writer, and must not see its row
+        long rows = DatabaseUtils.queryNumEntries(db, InventoryEntry.TABLE_NAME);
+        readFinished.countDown();
+
+        assertEquals(0, rows);
+        writer.join();
+        assertEquals(1, DatabaseUtils.queryNumEntries(db, InventoryEntry.TABLE_NAME));
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.android.inventoryapp.data;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.os.ParcelFileDescriptor;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.inventoryapp.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests for exports written by the {@link InventoryExporter} into the reliable pipe
+ * of {@link InventoryProvider#openReliablePipe}, read back as a caller of the provider would.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryExporterTest {
+
+    private SQLiteDatabase db;
+
+    @Before
+    public void createDatabase() {
+        db = SQLiteDatabase.create(null);
+        db.execSQL(InventoryDbHelper.SQL_CREATE_INVENTORY_TABLE);
+    }
+
+    @After
+    public void closeDatabase() {
+        db.close();
+    }
+
+    @Test
+    public void completeExportReadsWithoutError() throws IOException {
+        InventoryDbHelper.migrate(db, 1, InventoryDbHelper.DATABASE_VERSION);
+        db.execSQL("INSERT INTO inventory (productName, price, quantity, titleSortKey)"
+                + " VALUES ('Dune', 999, 2, 'dune')");
+
+        ParcelFileDescriptor pipe = openExport();
+        String csv = readAll(pipe);
+        pipe.checkError();
+        pipe.close();
+
+        assertTrue(csv, csv.contains("\r\nDune,9.99,2,0,,\r\n"));
+    }
+
+    @Test
+    public void failedExportReportsAnError() throws IOException {
+        // The view books are exported from is only created by the later schema steps
+        ParcelFileDescriptor pipe = openExport();
+        readAll(pipe);
+        try {
+            pipe.checkError();
+            fail("A failed export read as a complete one");
+        } catch (IOException expected) {
+            // The writer closed the pipe with an error
+        } finally {
+            pipe.close();
+        }
+    }
+
+    private ParcelFileDescriptor openExport() throws IOException {
+        return InventoryProvider.openReliablePipe(InventoryEntry.CONTENT_EXPORT_URI,
+                InventoryEntry.EXPORT_CSV_TYPE, InventoryContract.FORMAT_CSV,
+                new InventoryExporter(db));
+    }
+
+    /**
+     * Read the pipe until the writer closes its end, without closing the read end
+     */
+    private static String readAll(ParcelFileDescriptor pipe) throws IOException {
+        InputStream input = new FileInputStream(pipe.getFileDescriptor());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8 * 1024];
+        int count;
+        while ((count = input.read(buffer)) != -1) {
+            output.write(buffer, 0, count);
+        }
+        return output.toString(InventoryContract.EXPORT_CHARSET);
+    }
+}
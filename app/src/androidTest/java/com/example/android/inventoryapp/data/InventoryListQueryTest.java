@@ -0,0 +1,247 @@
+package com.example.android.inventoryapp.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.net.Uri;
+import android.support.test.runner.AndroidJUnit4;
+import android.text.TextUtils;
+
+import com.example.android.inventoryapp.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests for the sorted, filtered and paged catalog queries built by
+ * {@link InventoryProvider#buildListQuery(Uri, String, String[], String)}, run on an in-memory
+ * database at the latest version.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryListQueryTest {
+
+    private static final String[] SORTS = {null, InventoryContract.SORT_TITLE,
+            InventoryContract.SORT_PRICE, InventoryContract.SORT_QUANTITY,
+            InventoryContract.SORT_RECENT};
+
+    private static final String[] STOCKS = {null, InventoryContract.STOCK_IN,
+            InventoryContract.STOCK_OUT};
+
+    private SQLiteDatabase db;
+
+    @Before
+    public void createDatabase() {
+        db = SQLiteDatabase.create(null);
+        db.execSQL(InventoryDbHelper.SQL_CREATE_INVENTORY_TABLE);
+        InventoryDbHelper.migrate(db, 1, InventoryDbHelper.DATABASE_VERSION);
+    }
+
+    @After
+    public void closeDatabase() {
+        db.close();
+    }
+
+    @Test
+    public void everySortAndFilterReadsAnIndexInOrder() {
+        for (String sort : SORTS) {
+            for (int supplier = 0; supplier < 2; supplier++) {
+                for (String stock : STOCKS) {
+                    for (int priceRange = 0; priceRange < 2; priceRange++) {
+                        for (int page = 0; page < 2; page++) {
+                            Uri.Builder builder = InventoryEntry.CONTENT_URI.buildUpon();
+                            if (sort != null) {
+                                builder.appendQueryParameter(
+                                        InventoryContract.QUERY_PARAMETER_SORT, sort);
+                            }
+                            if (supplier == 1) {
+                                builder.appendQueryParameter(
+                                        InventoryContract.QUERY_PARAMETER_SUPPLIER, "1");
+                            }
+                            if (stock != null) {
+                                builder.appendQueryParameter(
+                                        InventoryContract.QUERY_PARAMETER_STOCK, stock);
+                            }
+                            if (priceRange == 1) {
+                                builder.appendQueryParameter(
+                                        InventoryContract.QUERY_PARAMETER_MIN_PRICE, "500")
+                                        .appendQueryParameter(
+                                                InventoryContract.QUERY_PARAMETER_MAX_PRICE,
+                                                "2000");
+                            }
+                            Uri uri = InventoryEntry.buildPageUri(builder.build(), 50,
+                                    page == 0 || sort == null ? null : "1", page == 0 ? -1 : 1);
+                            assertReadsIndexInOrder(uri, sort);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void sortedPagesFollowEachOther() {
+        // Many books share a price, so pages often end in the middle of a run of equal keys
+        for (int i = 0; i < 100; i++) {
+            insertBook(i % 2 == 0 ? "Book " + i : "The Book " + i, 100 * (i % 7), i % 3);
+        }
+
+        for (String sort : SORTS) {
+            Uri listUri = sort == null ? InventoryEntry.CONTENT_URI
+                    : InventoryEntry.CONTENT_URI.buildUpon()
+                    .appendQueryParameter(InventoryContract.QUERY_PARAMETER_SORT, sort)
+                    .appendQueryParameter(InventoryContract.QUERY_PARAMETER_STOCK,
+                            InventoryContract.STOCK_IN)
+                    .build();
+            List<Long> all = queryIds(listUri);
+
+            List<Long> paged = new ArrayList<>();
+            String afterKey = null;
+            long afterId = -1;
+            while (true) {
+                Cursor page = query(InventoryEntry.buildPageUri(listUri, 15, afterKey, afterId));
+                try {
+                    while (page.moveToNext()) {
+                        paged.add(page.getLong(0));
+                        afterId = page.getLong(0);
+                        afterKey = sort == null ? null : page.getString(
+                                page.getColumnIndex(InventoryEntry.getSortColumn(sort)));
+                    }
+                    if (page.getCount() < 15) {
+                        break;
+                    }
+                } finally {
+                    page.close();
+                }
+            }
+            assertEquals(sort, all, paged);
+        }
+    }
+
+    @Test
+    public void priceFiltersReturnTheBooksInRangeUnderEverySort() {
+        for (int i = 1; i <= 10; i++) {
+            insertBook("Book " + i, 100 * i, i % 3);
+        }
+
+        for (String sort : SORTS) {
+            Uri.Builder builder = InventoryEntry.CONTENT_URI.buildUpon()
+                    .appendQueryParameter(InventoryContract.QUERY_PARAMETER_MIN_PRICE, "300")
+                    .appendQueryParameter(InventoryContract.QUERY_PARAMETER_MAX_PRICE, "700");
+            if (sort != null) {
+                builder.appendQueryParameter(InventoryContract.QUERY_PARAMETER_SORT, sort);
+            }
+
+            List<Long> prices = new ArrayList<>();
+            Cursor cursor = query(builder.build());
+            try {
+                while (cursor.moveToNext()) {
+                    prices.add(cursor.getLong(2));
+                }
+            } finally {
+                cursor.close();
+            }
+            Collections.sort(prices);
+            assertEquals(sort, Arrays.asList(300L, 400L, 500L, 600L, 700L), prices);
+        }
+    }
+
+    @Test
+    public void titlesSortWithoutCaseAccentsOrArticles() {
+        insertBook("the hobbit", 999, 1);
+        insertBook("Émile", 1299, 1);
+        insertBook("Dune", 999, 0);
+        insertBook("A Wrinkle in Time", 799, 1);
+        insertBook("emma", 499, 1);
+
+        Uri uri = InventoryEntry.CONTENT_URI.buildUpon()
+                .appendQueryParameter(InventoryContract.QUERY_PARAMETER_SORT,
+                        InventoryContract.SORT_TITLE)
+                .build();
+        List<String> titles = new ArrayList<>();
+        Cursor cursor = query(uri);
+        try {
+            while (cursor.moveToNext()) {
+                titles.add(cursor.getString(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        assertEquals(Arrays.asList("Dune", "Émile", "emma", "the hobbit", "A Wrinkle in Time"),
+                titles);
+    }
+
+    /**
+     * Check that the query of the URI reads the inventory through an index, or in order of ID,
+     * and never sorts the books in a temporary B-tree
+     */
+    private void assertReadsIndexInOrder(Uri uri, String sort) {
+        InventoryProvider.ListQuery query = InventoryProvider.buildListQuery(uri, null, null, null);
+        String sql = SQLiteQueryBuilder.buildQueryString(false, InventoryEntry.VIEW_NAME, null,
+                query.selection, null, null, query.sortOrder, query.limit);
+
+        List<String> plan = new ArrayList<>();
+        String inventoryStep = null;
+        Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, query.selectionArgs);
+        try {
+            while (cursor.moveToNext()) {
+                // The description of the step is the last column
+                String step = cursor.getString(cursor.getColumnCount() - 1);
+                plan.add(step);
+                if (step.matches("(SCAN|SEARCH)( TABLE)? inventory\\b.*")) {
+                    inventoryStep = step;
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        String message = uri + "\n" + TextUtils.join("\n", plan);
+        assertNotNull(message, inventoryStep);
+        assertFalse(message, message.contains("TEMP B-TREE"));
+        if (sort != null || uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_SUPPLIER)
+                != null) {
+            assertTrue(message, inventoryStep.contains(" USING INDEX ")
+                    || inventoryStep.contains(" USING COVERING INDEX "));
+        }
+    }
+
+    private Cursor query(Uri uri) {
+        InventoryProvider.ListQuery query = InventoryProvider.buildListQuery(uri, null, null, null);
+        return db.query(InventoryEntry.VIEW_NAME, new String[]{InventoryEntry._ID,
+                        InventoryEntry.COLUMN_PRODUCT_NAME, InventoryEntry.COLUMN_PRICE,
+                        InventoryEntry.COLUMN_QUANTITY, InventoryEntry.COLUMN_LAST_MODIFIED,
+                        InventoryEntry.COLUMN_TITLE_SORT_KEY},
+                query.selection, query.selectionArgs, null, null, query.sortOrder, query.limit);
+    }
+
+    /**
+     * Insert a book with the sort key of its title, as the provider does
+     */
+    private void insertBook(String title, long priceInCents, long quantity) {
+        db.execSQL("INSERT INTO inventory (productName, price, quantity, titleSortKey)"
+                + " VALUES (?, ?, ?, ?)", new Object[]{title, priceInCents, quantity,
+                TitleSortKey.of(title)});
+    }
+
+    private List<Long> queryIds(Uri uri) {
+        List<Long> ids = new ArrayList<>();
+        Cursor cursor = query(uri);
+        try {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return ids;
+    }
+}
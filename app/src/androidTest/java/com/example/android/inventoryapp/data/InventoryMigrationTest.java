@@ -0,0 +1,438 @@
+package com.example.android.inventoryapp.data;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+import android.support.test.runner.AndroidJUnit4;
+import android.text.TextUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests for the schema steps in {@link InventoryDbHelper#MIGRATIONS}. Each step is
+ * applied on its own to an in-memory database at the step's start version.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryMigrationTest {
+
+    private SQLiteDatabase db;
+
+    @Before
+    public void createVersion1Database() {
+        db = SQLiteDatabase.create(null);
+        db.execSQL(InventoryDbHelper.SQL_CREATE_INVENTORY_TABLE);
+    }
+
+    @After
+    public void closeDatabase() {
+        db.close();
+    }
+
+    @Test
+    public void migrationsFormAnUnbrokenChain() {
+        int version = 1;
+        for (Migration migration : InventoryDbHelper.MIGRATIONS) {
+            assertEquals(version, migration.startVersion);
+            assertTrue(migration.endVersion > migration.startVersion);
+            version = migration.endVersion;
+        }
+        assertEquals(InventoryDbHelper.DATABASE_VERSION, version);
+    }
+
+    @Test
+    public void migrate1To2_addsLookupIndexes() {
+        InventoryDbHelper.MIGRATION_1_2.migrate(db);
+
+        assertTrue(hasIndex("index_inventory_productName"));
+        assertTrue(hasIndex("index_inventory_supplierName"));
+        assertTrue(hasIndex("index_inventory_quantity"));
+    }
+
+    @Test
+    public void migrate2To3_indexesExistingAndNewBooksForSearch() {
+        InventoryDbHelper.MIGRATION_1_2.migrate(db);
+        insertBook("The Fellowship of the Ring", "Best Fantasy Book Suppliers");
+
+        InventoryDbHelper.MIGRATION_2_3.migrate(db);
+        insertBook("The Two Towers", "Best Fantasy Book Suppliers");
+
+        assertEquals(1, countMatches("fell*"));
+        assertEquals(2, countMatches("fant* sup*"));
+
+        db.execSQL("UPDATE inventory SET productName = 'The Return of the King'"
+                + " WHERE productName = 'The Two Towers'");
+        assertEquals(0, countMatches("tow*"));
+        assertEquals(1, countMatches("king"));
+
+        db.execSQL("DELETE FROM inventory");
+        assertEquals(0, countMatches("fant*"));
+    }
+
+    @Test
+    public void migrate3To4_storesPriceInCentsAndQuantityAsInteger() {
+        InventoryDbHelper.MIGRATION_1_2.migrate(db);
+        InventoryDbHelper.MIGRATION_2_3.migrate(db);
+        db.execSQL("INSERT INTO inventory (productName, price, quantity, supplierName, "
+                + "supplierPhoneNumber) VALUES ('Dune', 19.99, 3, 'Ace', '555-555-5555')");
+        for (int i = 0; i < 5; i++) {
+            insertBook("Book " + i, "Ace");
+        }
+        long deletedId = DatabaseUtils.longForQuery(db, "SELECT MAX(_id) FROM inventory", null);
+        db.execSQL("DELETE FROM inventory WHERE _id = " + deletedId);
+        long lastUsedId = DatabaseUtils.longForQuery(db,
+                "SELECT seq FROM sqlite_sequence WHERE name = 'inventory'", null);
+
+        InventoryDbHelper.MIGRATION_3_4.migrate(db);
+
+        assertEquals(5, DatabaseUtils.queryNumEntries(db, "inventory"));
+        assertEquals(1999, DatabaseUtils.longForQuery(db,
+                "SELECT price FROM inventory WHERE productName = 'Dune'", null));
+        assertEquals("integer", DatabaseUtils.stringForQuery(db,
+                "SELECT typeof(quantity) FROM inventory WHERE productName = 'Dune'", null));
+        assertEquals(lastUsedId, DatabaseUtils.longForQuery(db,
+                "SELECT seq FROM sqlite_sequence WHERE name = 'inventory'", null));
+        assertEquals(1, DatabaseUtils.queryNumEntries(db, "sqlite_sequence",
+                "name = 'inventory'"));
+        assertTrue(hasIndex("index_inventory_productName"));
+        assertTrue(hasIndex("index_inventory_supplierName"));
+        assertTrue(hasIndex("index_inventory_quantity"));
+
+        // The search index still follows the rebuilt table
+        assertEquals(1, countMatches("dune"));
+        insertBook("Dune Messiah", "Ace");
+        assertEquals(2, countMatches("dune"));
+
+        // The ID of the deleted book is never handed out again
+        assertTrue(DatabaseUtils.longForQuery(db, "SELECT MAX(_id) FROM inventory", null)
+                > deletedId);
+    }
+
+    @Test
+    public void migrate3To4_keepsTheSequenceOfAnEmptiedTable() {
+        InventoryDbHelper.MIGRATION_1_2.migrate(db);
+        InventoryDbHelper.MIGRATION_2_3.migrate(db);
+        insertBook("Dune", "Ace");
+        long deletedId = DatabaseUtils.longForQuery(db, "SELECT MAX(_id) FROM inventory", null);
+        db.execSQL("DELETE FROM inventory");
+
+        InventoryDbHelper.MIGRATION_3_4.migrate(db);
+
+        insertBook("Emma", "Ace");
+        assertTrue(DatabaseUtils.longForQuery(db, "SELECT MAX(_id) FROM inventory", null)
+                > deletedId);
+    }
+
+    @Test
+    public void migrate4To5_summaryMatchesFullRecompute() {
+        InventoryDbHelper.MIGRATION_1_2.migrate(db);
+        InventoryDbHelper.MIGRATION_2_3.migrate(db);
+        InventoryDbHelper.MIGRATION_3_4.migrate(db);
+        insertBook("Dune", "Ace");
+        insertBook("Emma", null);
+
+        InventoryDbHelper.MIGRATION_4_5.migrate(db);
+        assertSummaryMatchesRecompute();
+
+        // Apply random changes of every kind, checking the totals after each one
+        String[] suppliers = {"Ace", "Tor", "Baen", null};
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            String supplier = suppliers[random.nextInt(suppliers.length)];
+            switch (random.nextInt(5)) {
+                case 0:
+                    insertBook("Book " + i, supplier);
+                    break;
+                case 1:
+                    db.execSQL("UPDATE inventory SET quantity = ? WHERE _id IN "
+                                    + "(SELECT _id FROM inventory ORDER BY RANDOM() LIMIT 3)",
+                            new Object[]{random.nextInt(4)});
+                    break;
+                case 2:
+                    db.execSQL("UPDATE inventory SET price = ?, supplierName = ? WHERE _id IN "
+                                    + "(SELECT _id FROM inventory ORDER BY RANDOM() LIMIT 1)",
+                            new Object[]{random.nextInt(5000), supplier});
+                    break;
+                case 3:
+                    db.execSQL("UPDATE inventory SET productName = productName || '!' WHERE _id IN"
+                            + " (SELECT _id FROM inventory ORDER BY RANDOM() LIMIT 1)");
+                    break;
+                default:
+                    db.execSQL("DELETE FROM inventory WHERE _id IN "
+                            + "(SELECT _id FROM inventory ORDER BY RANDOM() LIMIT 1)");
+                    break;
+            }
+            assertSummaryMatchesRecompute();
+        }
+
+        db.execSQL("DELETE FROM inventory");
+        assertSummaryMatchesRecompute();
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, "supplier_summary"));
+    }
+
+    @Test
+    public void migrate5To6_addsReorderThresholdAndLowStockIndex() {
+        InventoryDbHelper.MIGRATION_1_2.migrate(db);
+        InventoryDbHelper.MIGRATION_2_3.migrate(db);
+        InventoryDbHelper.MIGRATION_3_4.migrate(db);
+        InventoryDbHelper.MIGRATION_4_5.migrate(db);
+        insertBook("Dune", "Ace");
+
+        InventoryDbHelper.MIGRATION_5_6.migrate(db);
+
+        assertEquals(0, DatabaseUtils.longForQuery(db,
+                "SELECT reorderThreshold FROM inventory", null));
+        assertEquals(0, DatabaseUtils.longForQuery(db,
+                "SELECT COUNT(*) FROM inventory WHERE " + InventoryProvider.LOW_STOCK_SELECTION,
+                null));
+        db.execSQL("UPDATE inventory SET reorderThreshold = 1");
+        assertEquals(1, DatabaseUtils.longForQuery(db,
+                "SELECT COUNT(*) FROM inventory WHERE " + InventoryProvider.LOW_STOCK_SELECTION,
+                null));
+
+        // Where partial indexes are supported, the low-stock query only reads that index
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            assertTrue(hasIndex(InventoryDbHelper.LOW_STOCK_INDEX_NAME));
+            String plan = TextUtils.join("\n", queryRows("EXPLAIN QUERY PLAN SELECT _id,"
+                    + " productName, quantity FROM inventory WHERE "
+                    + InventoryProvider.LOW_STOCK_SELECTION + " ORDER BY productName"));
+            assertTrue(plan, plan.contains(InventoryDbHelper.LOW_STOCK_INDEX_NAME));
+            assertFalse(plan, plan.contains("TEMP B-TREE"));
+        }
+    }
+
+    @Test
+    public void migrate6To7_movesDeduplicatedSuppliersToTheirOwnTable() {
+        InventoryDbHelper.migrate(db, 1, 6);
+        db.execSQL("INSERT INTO inventory (productName, price, quantity, supplierName, "
+                + "supplierPhoneNumber) VALUES ('Dune', 999, 2, 'Ace', '555-555-5555')");
+        db.execSQL("INSERT INTO inventory (productName, price, quantity, supplierName, "
+                + "supplierPhoneNumber) VALUES ('Emma', 499, 0, ' ace ', '555-555-5555')");
+        db.execSQL("INSERT INTO inventory (productName, price, quantity, supplierName, "
+                + "supplierPhoneNumber) VALUES ('Ubik', 799, 1, 'Tor', '555-555-0000')");
+        db.execSQL("INSERT INTO inventory (productName, price, quantity) VALUES ('Loose', 1, 1)");
+        db.execSQL("INSERT INTO inventory (productName, price, quantity) VALUES ('Sold', 1, 0)");
+        long deletedId = DatabaseUtils.longForQuery(db, "SELECT MAX(_id) FROM inventory", null);
+        db.execSQL("DELETE FROM inventory WHERE _id = " + deletedId);
+
+        InventoryDbHelper.MIGRATION_6_7.migrate(db);
+
+        // The table keeps a single sequence, so the ID of the deleted book isn't reused
+        assertEquals(1, DatabaseUtils.queryNumEntries(db, "sqlite_sequence",
+                "name = 'inventory'"));
+        assertEquals(deletedId, DatabaseUtils.longForQuery(db,
+                "SELECT seq FROM sqlite_sequence WHERE name = 'inventory'", null));
+
+        // Books of the same supplier share one supplier row
+        assertEquals(2, DatabaseUtils.queryNumEntries(db, "suppliers"));
+        assertEquals(1, DatabaseUtils.longForQuery(db, "SELECT COUNT(DISTINCT supplier_id)"
+                + " FROM inventory WHERE productName IN ('Dune', 'Emma')", null));
+        assertEquals("Ace", DatabaseUtils.stringForQuery(db,
+                "SELECT supplierName FROM inventory_with_supplier WHERE productName = 'Emma'",
+                null));
+        assertEquals(1, DatabaseUtils.queryNumEntries(db, "inventory_with_supplier",
+                "supplierName IS NULL"));
+        assertTrue(hasIndex("index_suppliers_name_phoneNumber"));
+        assertTrue(hasIndex("index_inventory_supplierId"));
+
+        // The books of a supplier are found through the supplier index
+        String plan = TextUtils.join("\n", queryRows("EXPLAIN QUERY PLAN SELECT * FROM"
+                + " inventory_with_supplier WHERE supplier_id = 1"));
+        assertTrue(plan, plan.contains("index_inventory_supplierId"));
+
+        // Searching by supplier name follows renamed suppliers
+        assertEquals(2, countMatches("ace"));
+        db.execSQL("UPDATE suppliers SET name = 'Baen' WHERE name = 'Ace'");
+        assertEquals(0, countMatches("ace"));
+        assertEquals(2, countMatches("baen"));
+        db.execSQL("INSERT INTO inventory (productName, price, quantity, supplier_id)"
+                + " SELECT 'Dune Messiah', 999, 1, _id FROM suppliers WHERE name = 'Tor'");
+        assertEquals(2, countMatches("tor"));
+        assertTrue(DatabaseUtils.longForQuery(db,
+                "SELECT _id FROM inventory WHERE productName = 'Dune Messiah'", null) > deletedId);
+
+        // The supplier totals follow the books moving between suppliers
+        db.execSQL("UPDATE inventory SET supplier_id = NULL WHERE productName = 'Dune'");
+        db.execSQL("DELETE FROM inventory WHERE productName = 'Ubik'");
+        assertEquals(queryRows("SELECT IFNULL(supplier_id, 0), COUNT(*), SUM(quantity),"
+                        + " SUM(price * quantity), SUM(quantity <= 0) FROM inventory"
+                        + " GROUP BY IFNULL(supplier_id, 0) ORDER BY 1"),
+                queryRows("SELECT supplier_id, titleCount, totalUnits, totalValue,"
+                        + " outOfStockCount FROM supplier_summary ORDER BY 1"));
+    }
+
+    @Test
+    public void migrate8To9_stampsChangeWithTheBookAndItsSupplier() {
+        InventoryDbHelper.migrate(db, 1, 8);
+        db.execSQL("INSERT INTO suppliers (name, phoneNumber) VALUES ('Ace', '555-555-5555')");
+        db.execSQL("INSERT INTO suppliers (name, phoneNumber) VALUES ('Tor', '555-555-0000')");
+        db.execSQL("INSERT INTO inventory (productName, price, quantity, supplier_id)"
+                + " VALUES ('Dune', 999, 2, 1)");
+
+        InventoryDbHelper.MIGRATION_8_9.migrate(db);
+
+        List<Long> stamps = new ArrayList<>();
+        stamps.add(queryVersion());
+        db.execSQL("UPDATE inventory SET quantity = quantity - 1");
+        stamps.add(queryVersion());
+        db.execSQL("UPDATE suppliers SET phoneNumber = '555-555-1111' WHERE _id = 1");
+        stamps.add(queryVersion());
+        db.execSQL("UPDATE suppliers SET name = 'Baen' WHERE _id = 2");
+        stamps.add(queryVersion());
+        db.execSQL("UPDATE inventory SET supplier_id = 2");
+        stamps.add(queryVersion());
+
+        // Every change of the book or of its supplier gave a new stamp, and only those did
+        assertEquals(stamps.get(2), stamps.get(3));
+        stamps.remove(3);
+        assertEquals(stamps.size(), new HashSet<>(stamps).size());
+
+        // The stamps don't get in the way of the totals
+        assertEquals(queryRows("SELECT supplier_id, COUNT(*), SUM(quantity) FROM inventory"
+                        + " GROUP BY supplier_id"),
+                queryRows("SELECT supplier_id, titleCount, totalUnits FROM supplier_summary"));
+    }
+
+    @Test
+    public void migrate9To10_stampsTheTimeOfEachChange() {
+        InventoryDbHelper.migrate(db, 1, 9);
+        db.execSQL("INSERT INTO inventory (productName, price, quantity) VALUES ('Dune', 999, 2)");
+
+        long before = System.currentTimeMillis();
+        InventoryDbHelper.MIGRATION_9_10.migrate(db);
+
+        // Books that haven't changed since the upgrade come last among the recent changes
+        assertEquals(0, queryLastModified("Dune"));
+        db.execSQL("INSERT INTO inventory (productName, price, quantity) VALUES ('Emma', 499, 1)");
+        assertTrue(queryLastModified("Emma") >= before);
+        db.execSQL("UPDATE inventory SET quantity = 1 WHERE productName = 'Dune'");
+        assertTrue(queryLastModified("Dune") >= before);
+        assertTrue(queryLastModified("Dune") <= System.currentTimeMillis());
+
+        assertTrue(hasIndex("index_inventory_price"));
+        assertTrue(hasIndex("index_inventory_lastModified"));
+        assertTrue(hasIndex("index_inventory_supplierId_productName"));
+        assertTrue(hasIndex("index_inventory_supplierId_lastModified"));
+    }
+
+    @Test
+    public void migrate10To11_keysExistingTitlesForSorting() {
+        InventoryDbHelper.migrate(db, 1, 10);
+        db.execSQL("INSERT INTO inventory (productName, price, quantity) VALUES ('Dune', 999, 2)");
+        db.execSQL("INSERT INTO inventory (productName, price, quantity)"
+                + " VALUES ('The Fellowship of the Ring', 1299, 0)");
+        long version = queryVersion();
+
+        InventoryDbHelper.MIGRATION_10_11.migrate(db);
+
+        assertEquals(TitleSortKey.of("Dune"), queryTitleSortKey("Dune"));
+        assertEquals("fellowship of the ring", queryTitleSortKey("The Fellowship of the Ring"));
+
+        // Keying the titles isn't a change of the books
+        assertEquals(version, queryVersion());
+        assertEquals(0, queryLastModified("Dune"));
+
+        assertTrue(hasIndex("index_inventory_titleSortKey"));
+        assertTrue(hasIndex("index_inventory_supplierId_titleSortKey"));
+        assertFalse(hasIndex("index_inventory_supplierId_productName"));
+
+        // Where partial indexes are supported, low-stock books are read by title from that index
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            String plan = TextUtils.join("\n", queryRows("EXPLAIN QUERY PLAN SELECT _id,"
+                    + " productName, quantity FROM inventory WHERE "
+                    + InventoryProvider.LOW_STOCK_SELECTION + " ORDER BY titleSortKey"));
+            assertTrue(plan, plan.contains(InventoryDbHelper.LOW_STOCK_INDEX_NAME));
+            assertFalse(plan, plan.contains("TEMP B-TREE"));
+        }
+    }
+
+    @Test
+    public void migrateAll_fromVersion1() {
+        db.execSQL("INSERT INTO inventory (productName, price, quantity, supplierName, "
+                + "supplierPhoneNumber) VALUES ('Dune', 9.99, 3, 'Ace', '555-555-5555')");
+
+        InventoryDbHelper.migrate(db, 1, InventoryDbHelper.DATABASE_VERSION);
+
+        assertEquals(1, DatabaseUtils.queryNumEntries(db, "inventory"));
+    }
+
+    /**
+     * Check the running totals against totals computed from scratch over every book
+     */
+    private void assertSummaryMatchesRecompute() {
+        assertEquals(queryRows("SELECT COUNT(*), IFNULL(SUM(quantity), 0),"
+                        + " IFNULL(SUM(price * quantity), 0), IFNULL(SUM(quantity <= 0), 0)"
+                        + " FROM inventory"),
+                queryRows("SELECT titleCount, totalUnits, totalValue, outOfStockCount"
+                        + " FROM inventory_summary"));
+        assertEquals(queryRows("SELECT IFNULL(supplierName, ''), COUNT(*), SUM(quantity),"
+                        + " SUM(price * quantity), SUM(quantity <= 0) FROM inventory"
+                        + " GROUP BY IFNULL(supplierName, '') ORDER BY 1"),
+                queryRows("SELECT supplierName, titleCount, totalUnits, totalValue,"
+                        + " outOfStockCount FROM supplier_summary ORDER BY 1"));
+    }
+
+    private List<List<String>> queryRows(String sql) {
+        List<List<String>> rows = new ArrayList<>();
+        Cursor cursor = db.rawQuery(sql, null);
+        try {
+            while (cursor.moveToNext()) {
+                List<String> row = new ArrayList<>();
+                for (int i = 0; i < cursor.getColumnCount(); i++) {
+                    row.add(cursor.getString(i));
+                }
+                rows.add(row);
+            }
+        } finally {
+            cursor.close();
+        }
+        return rows;
+    }
+
+    private long queryLastModified(String title) {
+        return DatabaseUtils.longForQuery(db, "SELECT lastModified FROM inventory_with_supplier"
+                + " WHERE productName = ?", new String[]{title});
+    }
+
+    private String queryTitleSortKey(String title) {
+        return DatabaseUtils.stringForQuery(db, "SELECT titleSortKey FROM inventory_with_supplier"
+                + " WHERE productName = ?", new String[]{title});
+    }
+
+    private long queryVersion() {
+        return DatabaseUtils.longForQuery(db,
+                "SELECT version FROM inventory_with_supplier WHERE productName = 'Dune'", null);
+    }
+
+    private void insertBook(String title, String supplierName) {
+        db.execSQL("INSERT INTO inventory (productName, price, quantity, supplierName, "
+                + "supplierPhoneNumber) VALUES (?, 999, 1, ?, '555-555-5555')",
+                new Object[]{title, supplierName});
+    }
+
+    private long countMatches(String matchQuery) {
+        return DatabaseUtils.longForQuery(db,
+                "SELECT COUNT(*) FROM inventory_fts WHERE inventory_fts MATCH ?",
+                new String[]{matchQuery});
+    }
+
+    private boolean hasIndex(String name) {
+        Cursor cursor = db.rawQuery("SELECT 1 FROM sqlite_master WHERE type = 'index' AND name = ?",
+                new String[]{name});
+        try {
+            return cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+}
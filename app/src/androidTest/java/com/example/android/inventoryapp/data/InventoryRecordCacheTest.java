@@ -0,0 +1,90 @@
+package com.example.android.inventoryapp.data;
+
+import android.database.MatrixCursor;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.inventoryapp.data.InventoryContract.InventoryEntry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests for the filling and invalidation of the {@link InventoryRecordCache}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryRecordCacheTest {
+
+    private final InventoryRecordCache cache = new InventoryRecordCache(64 * 1024);
+
+    @Test
+    public void fillsFromCursorWithAllColumns() {
+        cache.putAll(books(), cache.getGeneration());
+
+        InventoryRecord record = cache.get(2);
+        assertNotNull(record);
+        assertEquals("Emma", record.getProductName());
+        assertEquals(1299, record.getPrice());
+        assertEquals(3, record.getQuantity());
+        assertEquals("Penguin", record.getSupplierName());
+    }
+
+    @Test
+    public void ignoresCursorMissingColumns() {
+        MatrixCursor cursor = new MatrixCursor(new String[]{
+                InventoryEntry.COLUMN_ID,
+                InventoryEntry.COLUMN_PRODUCT_NAME});
+        cursor.addRow(new Object[]{1, "Dune"});
+
+        cache.putAll(cursor, cache.getGeneration());
+
+        assertNull(cache.get(1));
+    }
+
+    @Test
+    public void ignoresCursorQueriedBeforeInvalidation() {
+        long generation = cache.getGeneration();
+        cache.remove(1);
+
+        cache.putAll(books(), generation);
+
+        assertNull(cache.get(1));
+    }
+
+    @Test
+    public void dropsOnlyInvalidatedBooks() {
+        cache.putAll(books(), cache.getGeneration());
+
+        cache.remove(1);
+        assertNull(cache.get(1));
+        assertNotNull(cache.get(2));
+
+        cache.removeSupplier(20);
+        assertNotNull(cache.get(2));
+        assertNull(cache.get(3));
+
+        cache.removeAll();
+        assertNull(cache.get(2));
+    }
+
+    @Test
+    public void staysWithinMemoryBudget() {
+        InventoryRecordCache smallCache = new InventoryRecordCache(500);
+        smallCache.putAll(books(), smallCache.getGeneration());
+
+        assertNull(smallCache.get(1));
+        assertNotNull(smallCache.get(3));
+    }
+
+    /**
+     * Return a cursor over three books, the last one from another supplier
+     */
+    private static MatrixCursor books() {
+        MatrixCursor cursor = new MatrixCursor(InventoryRecord.COLUMNS);
+        cursor.addRow(new Object[]{1, "Dune", 999, 10, 2, 10, "Penguin", "555-0100", 0});
+        cursor.addRow(new Object[]{2, "Emma", 1299, 3, 2, 10, "Penguin", "555-0100", 0});
+        cursor.addRow(new Object[]{3, "Ulysses", 1599, 0, 1, 20, "Vintage", "555-0199", 0});
+        return cursor;
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.android.inventoryapp.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.inventoryapp.data.InventoryContract.InventoryEntry;
+import com.example.android.inventoryapp.data.InventoryContract.SupplierEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Measures the time and allocations of the hot provider writes, made with
+ * {@link ContentValues} as before and with the compiled {@link InventoryStatements}. Each write
+ * runs in its own transaction, as in the provider. Results are written to the log under the tag
+ * of this class.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryStatementsBenchmark {
+
+    private static final String LOG_TAG = InventoryStatementsBenchmark.class.getSimpleName();
+
+    private static final String TEST_DATABASE_NAME = "inventoryStatementsBenchmark.db";
+
+    private static final int WARM_UP_OPERATIONS = 100;
+    private static final int MEASURED_OPERATIONS = 1000;
+    private static final int OPERATIONS = WARM_UP_OPERATIONS + MEASURED_OPERATIONS;
+
+    private Context context;
+    private InventoryDbHelper dbHelper;
+    private SQLiteDatabase db;
+    private InventoryStatements statements;
+    private long supplierId;
+
+    /**
+     * IDs of the books inserted with content values, then of those inserted with statements
+     */
+    private final long[] ids = new long[2 * OPERATIONS];
+
+    /**
+     * A write made once per operation
+     */
+    private interface Operation {
+        void run(int i);
+    }
+
+    @Before
+    public void openDatabase() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(TEST_DATABASE_NAME);
+        dbHelper = new InventoryDbHelper(context, TEST_DATABASE_NAME);
+        statements = dbHelper.getStatements();
+        db = statements.getDatabase();
+
+        ContentValues supplier = new ContentValues();
+        supplier.put(SupplierEntry.COLUMN_NAME, "Penguin");
+        supplier.put(SupplierEntry.COLUMN_PHONE_NUMBER, "555-0100");
+        supplierId = db.insertOrThrow(SupplierEntry.TABLE_NAME, null, supplier);
+    }
+
+    @After
+    public void deleteDatabase() {
+        dbHelper.close();
+        context.deleteDatabase(TEST_DATABASE_NAME);
+    }
+
+    @Test
+    public void hotWrites() {
+        measure("insert with ContentValues", new Operation() {
+            @Override
+            public void run(int i) {
+                ContentValues values = new ContentValues();
+                values.put(InventoryEntry.COLUMN_PRODUCT_NAME, "Dune, volume " + i);
+                values.put(InventoryEntry.COLUMN_PRICE, 999 + i);
+                values.put(InventoryEntry.COLUMN_QUANTITY, 10);
+                values.put(InventoryEntry.COLUMN_REORDER_THRESHOLD, 2);
+                values.put(InventoryEntry.COLUMN_SUPPLIER_ID, supplierId);
+                values.put(InventoryEntry.COLUMN_TITLE_SORT_KEY, "dune volume " + i);
+                ids[i] = db.insert(InventoryEntry.TABLE_NAME, null, values);
+            }
+        });
+        measure("insert with statement", new Operation() {
+            @Override
+            public void run(int i) {
+                ids[OPERATIONS + i] = statements.insertBook("Dune, volume " + i, 999 + i, 10, 2,
+                        supplierId, "dune volume " + i);
+            }
+        });
+
+        measure("set quantity with ContentValues", new Operation() {
+            @Override
+            public void run(int i) {
+                ContentValues values = new ContentValues();
+                values.put(InventoryEntry.COLUMN_QUANTITY, i);
+                db.update(InventoryEntry.TABLE_NAME, values, InventoryEntry._ID + "=?",
+                        new String[]{String.valueOf(ids[i])});
+            }
+        });
+        measure("set quantity with statement", new Operation() {
+            @Override
+            public void run(int i) {
+                statements.setQuantity(ids[i], i);
+            }
+        });
+
+        measure("adjust quantity with SQL", new Operation() {
+            @Override
+            public void run(int i) {
+                db.execSQL("UPDATE " + InventoryEntry.TABLE_NAME
+                                + " SET " + InventoryEntry.COLUMN_QUANTITY + " = "
+                                + InventoryEntry.COLUMN_QUANTITY + " + ?"
+                                + " WHERE " + InventoryEntry._ID + " = ?"
+                                + " AND " + InventoryEntry.COLUMN_QUANTITY + " >= ?",
+                        new Object[]{1, ids[i], -1});
+            }
+        });
+        measure("adjust quantity with statement", new Operation() {
+            @Override
+            public void run(int i) {
+                statements.adjustQuantity(ids[i], 1);
+            }
+        });
+
+        measure("update price with ContentValues", new Operation() {
+            @Override
+            public void run(int i) {
+                ContentValues values = new ContentValues();
+                values.put(InventoryEntry.COLUMN_PRICE, 1999 + i);
+                db.update(InventoryEntry.TABLE_NAME, values, InventoryEntry._ID + "=?",
+                        new String[]{String.valueOf(ids[i])});
+            }
+        });
+        measure("update price with statement", new Operation() {
+            @Override
+            public void run(int i) {
+                statements.updatePrice(ids[i], 1999 + i);
+            }
+        });
+
+        measure("delete with ContentValues", new Operation() {
+            @Override
+            public void run(int i) {
+                db.delete(InventoryEntry.TABLE_NAME, InventoryEntry._ID + "=?",
+                        new String[]{String.valueOf(ids[i])});
+            }
+        });
+        measure("delete with statement", new Operation() {
+            @Override
+            public void run(int i) {
+                statements.deleteBook(ids[OPERATIONS + i]);
+            }
+        });
+    }
+
+    /**
+     * Run the operation once per index, each in its own transaction, and log the time and
+     * allocations per operation once warmed up
+     */
+    private void measure(String name, Operation operation) {
+        for (int i = 0; i < WARM_UP_OPERATIONS; i++) {
+            runInTransaction(operation, i);
+        }
+
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocCount();
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = WARM_UP_OPERATIONS; i < OPERATIONS; i++) {
+            runInTransaction(operation, i);
+        }
+        long elapsed = SystemClock.elapsedRealtimeNanos() - start;
+        int allocations = Debug.getThreadAllocCount();
+        Debug.stopAllocCounting();
+
+        Log.i(LOG_TAG, name + ": " + (elapsed / MEASURED_OPERATIONS) + " ns and "
+                + ((double) allocations / MEASURED_OPERATIONS) + " allocations per operation");
+    }
+
+    private void runInTransaction(Operation operation, int i) {
+        db.beginTransactionNonExclusive();
+        try {
+            operation.run(i);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+}
@@ -1,39 +1,226 @@
 package com.example.android.inventoryapp;
 
+import android.app.AlertDialog;
 import android.app.LoaderManager;
+import android.content.AsyncQueryHandler;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.CursorLoader;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.Loader;
+import android.database.ContentObserver;
 import android.database.Cursor;
+import android.database.MergeCursor;
 import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Trace;
 import android.support.design.widget.FloatingActionButton;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.SearchView;
 import android.os.Bundle;
+import android.text.TextUtils;
 import android.util.Log;
+import android.util.SparseArray;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.widget.AbsListView;
 import android.widget.AdapterView;
 import android.widget.Button;
+import android.widget.EditText;
 import android.widget.ListView;
 import android.widget.Toast;
 
+import com.example.android.inventoryapp.data.CatalogSnapshot;
+import com.example.android.inventoryapp.data.InventoryContract;
+import com.example.android.inventoryapp.data.InventoryContract.ImportEntry;
 import com.example.android.inventoryapp.data.InventoryContract.InventoryEntry;
+import com.example.android.inventoryapp.data.InventoryContract.SupplierEntry;
+import com.example.android.inventoryapp.data.InventoryRecord;
+import com.example.android.inventoryapp.data.InventoryWriter;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 public class CatalogActivity extends AppCompatActivity
         implements LoaderManager.LoaderCallbacks<Cursor> {
 
+    /**
+     * Identifier for the loader of the first page of the catalog. Page n is loaded by the loader
+     * with ID INVENTORY_LOADER + n.
+     */
     private static final int INVENTORY_LOADER = 0;
 
+    /**
+     * Number of books loaded per page of the catalog
+     */
+    private static final int PAGE_SIZE = 50;
+
+    /**
+     * Request code of the file picker choosing a CSV file to import
+     */
+    private static final int REQUEST_IMPORT_FILE = 1;
+
+    /**
+     * Loader argument holding the ID of the last book on the previous page
+     */
+    private static final String ARG_AFTER_ID = "afterId";
+
+    /**
+     * Loader argument holding the sort column value of the last book on the previous page
+     */
+    private static final String ARG_AFTER_KEY = "afterKey";
+
+    /**
+     * Tokens of the queries run by the {@link #queryHandler}
+     */
+    private static final int TOKEN_ROW = 0;
+    private static final int TOKEN_SUPPLIERS = 1;
+
+    /**
+     * Projection that specifies the columns from the table we care about. The list only shows
+     * a few of them, but reading all of the {@link InventoryRecord#COLUMNS} lets the provider
+     * cache the listed books, so a book opened from the list is shown without reading the
+     * database again. The time of the last change and the title sort key are read to page
+     * through the books in those orders.
+     */
+    private static final String[] CATALOG_PROJECTION = buildCatalogProjection();
+
+    /**
+     * Saved instance state key holding the search query
+     */
+    private static final String STATE_SEARCH_QUERY = "searchQuery";
+
+    /**
+     * Saved instance state keys holding the sort order and the filters
+     */
+    private static final String STATE_SORT = "sort";
+    private static final String STATE_SUPPLIER_ID = "supplierId";
+    private static final String STATE_STOCK = "stock";
+    private static final String STATE_MIN_PRICE = "minPrice";
+    private static final String STATE_MAX_PRICE = "maxPrice";
+
     // Setup an Adapter to create a list item for each row of inventory data in the Cursor
     InventoryCursorAdapter inventoryCursorAdapter;
 
+    /**
+     * Writes to the database in the background
+     */
+    private InventoryWriter inventoryWriter;
+
+    /**
+     * Pages of the catalog loaded so far, keyed by page number
+     */
+    private final SparseArray<Cursor> pages = new SparseArray<>();
+
+    /**
+     * Text the catalog is filtered by, empty to show the whole catalog
+     */
+    private String searchQuery = "";
+
+    /**
+     * Order of the catalog, one of the SORT_ values of {@link InventoryContract}, or null to
+     * list the books in the order they were added
+     */
+    private String sort;
+
+    /**
+     * Filters of the catalog: the ID of the supplier whose books are shown, whether the books
+     * are in stock or out of stock, and the lowest and highest price in cents. -1 or null when
+     * the catalog isn't filtered that way.
+     */
+    private long supplierId = -1;
+    private String stock;
+    private long minPrice = -1;
+    private long maxPrice = -1;
+
+    /**
+     * Reads the latest values of single books that changed, and the suppliers to filter by, on a
+     * background thread
+     */
+    private AsyncQueryHandler queryHandler;
+
+    /**
+     * Query of the first page started as the activity is created, until the loader of the first
+     * page takes it
+     */
+    private PrefetchedCursorLoader.Prefetch firstPagePrefetch;
+
+    /**
+     * Whether the first page has been shown, which is when the catalog is fully drawn
+     */
+    private boolean firstPageShown;
+
+    /**
+     * Observer of changes to single books. A change to one book, such as a sale, doesn't reload
+     * the pages of the catalog. Instead the book is read again and patched into the list.
+     */
+    private final ContentObserver rowChangeObserver = new ContentObserver(new Handler()) {
+        @Override
+        public void onChange(boolean selfChange) {
+            onChange(selfChange, null);
+        }
+
+        @Override
+        public void onChange(boolean selfChange, Uri uri) {
+            // Without a row URI we can't tell which book changed
+            if (uri == null || uri.getLastPathSegment() == null) {
+                return;
+            }
+
+            // Skip changes to columns that aren't shown in the catalog
+            List<String> changedColumns = InventoryEntry.getChangedColumns(uri);
+            if (changedColumns != null
+                    && Collections.disjoint(changedColumns, Arrays.asList(CATALOG_PROJECTION))) {
+                return;
+            }
+
+            // Read the columns of a record, so the provider can answer from its record cache
+            long id = ContentUris.parseId(uri);
+            queryHandler.startQuery(TOKEN_ROW, id,
+                    ContentUris.withAppendedId(InventoryEntry.CONTENT_URI, id),
+                    InventoryRecord.COLUMNS, null, null, null);
+        }
+    };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        Trace.beginSection("CatalogActivity.onCreate");
         super.onCreate(savedInstanceState);
+
+        // Start reading the first page while the views are inflated, rather than once the
+        // activity has started. After a configuration change the loaders still hold their pages.
+        if (savedInstanceState == null) {
+            firstPagePrefetch = PrefetchedCursorLoader.Prefetch.start(getContentResolver(),
+                    buildPageUri(null), CATALOG_PROJECTION);
+        }
+
+        Trace.beginSection("CatalogActivity.inflate");
         setContentView(R.layout.activity_catalog);
+        Trace.endSection();
+
+        inventoryWriter = new InventoryWriter(this);
+
+        if (savedInstanceState != null) {
+            searchQuery = savedInstanceState.getString(STATE_SEARCH_QUERY, "");
+            sort = savedInstanceState.getString(STATE_SORT);
+            supplierId = savedInstanceState.getLong(STATE_SUPPLIER_ID, -1);
+            stock = savedInstanceState.getString(STATE_STOCK);
+            minPrice = savedInstanceState.getLong(STATE_MIN_PRICE, -1);
+            maxPrice = savedInstanceState.getLong(STATE_MAX_PRICE, -1);
+        } else {
+            // Finish any import that was interrupted the last time the app ran
+            ImportService.resumeImports(this);
+        }
+
+        // Keep an eye on the books that need to be reordered. Job scheduling needs Lollipop.
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            LowStockJobService.schedule(this);
+        }
 
         // Set up FAB to open Editor Activity
         FloatingActionButton fab = (FloatingActionButton) findViewById(R.id.fab);
@@ -60,6 +247,14 @@ public class CatalogActivity extends AppCompatActivity
         inventoryCursorAdapter = new InventoryCursorAdapter(this, null);
         bookListView.setAdapter(inventoryCursorAdapter);
 
+        // Until the first page is loaded, show the books of the last catalog snapshot. It is
+        // mapped rather than read, so showing it costs no more than the rows on screen.
+        if (savedInstanceState == null) {
+            Trace.beginSection("CatalogActivity.showSnapshot");
+            inventoryCursorAdapter.swapCursor(CatalogSnapshot.open(this));
+            Trace.endSection();
+        }
+
         // Setup item click listener
         bookListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
             public void onItemClick(AdapterView<?> adapterView, View view, int position, long id) {
@@ -77,13 +272,158 @@ public class CatalogActivity extends AppCompatActivity
                 // Set the URI on the data field of the intent
                 intent.setData(currentBookUri);
 
+                // Hand the book as listed to the editor, so it can show it right away
+                InventoryRecord record = inventoryCursorAdapter.getRecord(position);
+                if (record != null) {
+                    intent.putExtra(EditorActivity.EXTRA_RECORD, record);
+                }
+
                 // Start the new activity
                 startActivity(intent);
             }
         });
 
-        // Kick off the loader
+        // Patch books that change one at a time into the list
+        queryHandler = new AsyncQueryHandler(getContentResolver()) {
+            @Override
+            protected void onQueryComplete(int token, Object cookie, Cursor cursor) {
+                if (cursor == null) {
+                    return;
+                }
+                if (token == TOKEN_SUPPLIERS) {
+                    showSupplierDialog(cursor);
+                    return;
+                }
+                try {
+                    if (cursor.moveToFirst()) {
+                        ContentValues values = new ContentValues();
+                        values.put(InventoryEntry.COLUMN_PRODUCT_NAME, cursor.getString(
+                                cursor.getColumnIndex(InventoryEntry.COLUMN_PRODUCT_NAME)));
+                        values.put(InventoryEntry.COLUMN_PRICE, cursor.getLong(
+                                cursor.getColumnIndex(InventoryEntry.COLUMN_PRICE)));
+                        values.put(InventoryEntry.COLUMN_QUANTITY, cursor.getInt(
+                                cursor.getColumnIndex(InventoryEntry.COLUMN_QUANTITY)));
+                        inventoryCursorAdapter.patchRow((Long) cookie, values);
+                    }
+                } finally {
+                    cursor.close();
+                }
+            }
+        };
+        getContentResolver().registerContentObserver(InventoryEntry.CONTENT_ROWS_URI, true,
+                rowChangeObserver);
+
+        // Load the next page when the user scrolls close to the end of the loaded pages
+        bookListView.setOnScrollListener(new AbsListView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(AbsListView view, int scrollState) {
+            }
+
+            @Override
+            public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
+                                 int totalItemCount) {
+                if (firstVisibleItem + visibleItemCount >= totalItemCount - PAGE_SIZE / 2) {
+                    loadNextPage();
+                }
+            }
+        });
+
+        // Kick off the loader for the first page, and reconnect to the loaders of any later pages
+        // that were kept across a configuration change
         getLoaderManager().initLoader(INVENTORY_LOADER, null, this);
+        for (int page = 1; getLoaderManager().getLoader(INVENTORY_LOADER + page) != null; page++) {
+            getLoaderManager().initLoader(INVENTORY_LOADER + page, null, this);
+        }
+        Trace.endSection();
+    }
+
+    /**
+     * Return the columns read for each book of the catalog
+     */
+    private static String[] buildCatalogProjection() {
+        String[] projection = Arrays.copyOf(InventoryRecord.COLUMNS,
+                InventoryRecord.COLUMNS.length + 2);
+        projection[projection.length - 2] = InventoryEntry.COLUMN_LAST_MODIFIED;
+        projection[projection.length - 1] = InventoryEntry.COLUMN_TITLE_SORT_KEY;
+        return projection;
+    }
+
+    /**
+     * Start loading the page after the last loaded page, unless it is already being loaded or
+     * the last page was not full, which means the end of the catalog has been reached.
+     */
+    private void loadNextPage() {
+        int loadedPages = countLoadedPages();
+        if (loadedPages == 0) {
+            return;
+        }
+
+        Cursor lastPage = pages.get(loadedPages - 1);
+        if (lastPage.getCount() < PAGE_SIZE
+                || getLoaderManager().getLoader(INVENTORY_LOADER + loadedPages) != null) {
+            return;
+        }
+
+        getLoaderManager().initLoader(INVENTORY_LOADER + loadedPages, pageArgs(lastPage), this);
+    }
+
+    /**
+     * Return the number of pages loaded without a gap, starting from the first page
+     */
+    private int countLoadedPages() {
+        int page = 0;
+        while (pages.get(page) != null) {
+            page++;
+        }
+        return page;
+    }
+
+    /**
+     * Build the loader arguments for the page that follows the given page, which start after
+     * the ID and sort key of its last book
+     */
+    private Bundle pageArgs(Cursor page) {
+        page.moveToLast();
+        Bundle args = new Bundle();
+        args.putLong(ARG_AFTER_ID, page.getLong(page.getColumnIndex(InventoryEntry._ID)));
+        if (sort != null) {
+            args.putString(ARG_AFTER_KEY, page.getString(
+                    page.getColumnIndex(InventoryEntry.getSortColumn(sort))));
+        }
+        return args;
+    }
+
+    /**
+     * Show all pages loaded so far as one list
+     */
+    private void showLoadedPages() {
+        int loadedPages = countLoadedPages();
+        if (loadedPages == 0) {
+            inventoryCursorAdapter.swapCursor(null);
+        } else if (loadedPages == 1) {
+            inventoryCursorAdapter.swapCursor(pages.get(0));
+        } else {
+            Cursor[] cursors = new Cursor[loadedPages];
+            for (int page = 0; page < loadedPages; page++) {
+                cursors[page] = pages.get(page);
+            }
+            inventoryCursorAdapter.swapCursor(new MergeCursor(cursors));
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        // Write the sales made in the last moments before the user leaves the catalog, without
+        // holding up the main thread. They're written from a service, since the process may be
+        // killed any time after it is paused.
+        inventoryCursorAdapter.flushSales();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        getContentResolver().unregisterContentObserver(rowChangeObserver);
     }
 
     @Override
@@ -91,9 +431,225 @@ public class CatalogActivity extends AppCompatActivity
         // Inflate the menu options from the res/menu/menu_catalog.xml file.
         // This adds menu times to the app bar
         getMenuInflater().inflate(R.menu.menu_catalog, menu);
+
+        // The provider metrics are only of use while developing the app
+        menu.findItem(R.id.action_metrics).setVisible(BuildConfig.DEBUG);
+
+        // Search the catalog as the user types
+        MenuItem searchItem = menu.findItem(R.id.action_search);
+        SearchView searchView = (SearchView) searchItem.getActionView();
+        searchView.setQueryHint(getString(R.string.search_hint));
+
+        // Restore a search that was running before a configuration change
+        if (!searchQuery.isEmpty()) {
+            searchItem.expandActionView();
+            searchView.setQuery(searchQuery, false);
+        }
+
+        // Check the sort order and stock filter in use, after a configuration change
+        menu.findItem(getSortItemId()).setChecked(true);
+        menu.findItem(getStockItemId()).setChecked(true);
+
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                String query = newText.trim();
+                if (!query.equals(searchQuery)) {
+                    searchQuery = query;
+                    restartPaging();
+                }
+                return true;
+            }
+        });
         return true;
     }
 
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(STATE_SEARCH_QUERY, searchQuery);
+        outState.putString(STATE_SORT, sort);
+        outState.putLong(STATE_SUPPLIER_ID, supplierId);
+        outState.putString(STATE_STOCK, stock);
+        outState.putLong(STATE_MIN_PRICE, minPrice);
+        outState.putLong(STATE_MAX_PRICE, maxPrice);
+    }
+
+    /**
+     * Return the ID of the menu item of the sort order in use
+     */
+    private int getSortItemId() {
+        if (sort == null) {
+            return R.id.action_sort_added;
+        }
+        switch (sort) {
+            case InventoryContract.SORT_TITLE:
+                return R.id.action_sort_title;
+            case InventoryContract.SORT_PRICE:
+                return R.id.action_sort_price;
+            case InventoryContract.SORT_QUANTITY:
+                return R.id.action_sort_quantity;
+            default:
+                return R.id.action_sort_recent;
+        }
+    }
+
+    /**
+     * Return the ID of the menu item of the stock filter in use
+     */
+    private int getStockItemId() {
+        if (InventoryContract.STOCK_IN.equals(stock)) {
+            return R.id.action_filter_in_stock;
+        } else if (InventoryContract.STOCK_OUT.equals(stock)) {
+            return R.id.action_filter_out_of_stock;
+        }
+        return R.id.action_filter_any_stock;
+    }
+
+    /**
+     * Sort the catalog in the order of the chosen menu item
+     *
+     * @param newSort one of the SORT_ values of {@link InventoryContract}, or null for the
+     *                order the books were added in
+     */
+    private void changeSort(MenuItem item, String newSort) {
+        item.setChecked(true);
+        if (!TextUtils.equals(newSort, sort)) {
+            sort = newSort;
+            restartPaging();
+        }
+    }
+
+    /**
+     * Show only the books in stock, or out of stock, as chosen with the menu item
+     *
+     * @param newStock {@link InventoryContract#STOCK_IN}, {@link InventoryContract#STOCK_OUT}
+     *                 or null to show both
+     */
+    private void changeStockFilter(MenuItem item, String newStock) {
+        item.setChecked(true);
+        if (!TextUtils.equals(newStock, stock)) {
+            stock = newStock;
+            restartPaging();
+        }
+    }
+
+    /**
+     * Read the suppliers in the background, then let the user pick the one to filter by
+     */
+    private void chooseSupplier() {
+        queryHandler.startQuery(TOKEN_SUPPLIERS, null, SupplierEntry.CONTENT_URI,
+                new String[]{SupplierEntry._ID, SupplierEntry.COLUMN_NAME}, null, null,
+                SupplierEntry.COLUMN_NAME);
+    }
+
+    /**
+     * Let the user pick the supplier whose books are shown, or all suppliers, from the suppliers
+     * read by {@link #chooseSupplier()}
+     */
+    private void showSupplierDialog(Cursor cursor) {
+        final long[] ids = new long[cursor.getCount() + 1];
+        String[] names = new String[ids.length];
+        int checked = 0;
+        ids[0] = -1;
+        names[0] = getString(R.string.filter_all_suppliers);
+        try {
+            while (cursor.moveToNext()) {
+                int item = cursor.getPosition() + 1;
+                ids[item] = cursor.getLong(0);
+                names[item] = cursor.getString(1);
+                if (ids[item] == supplierId) {
+                    checked = item;
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.action_filter_supplier)
+                .setSingleChoiceItems(names, checked, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        dialog.dismiss();
+                        if (ids[which] != supplierId) {
+                            supplierId = ids[which];
+                            restartPaging();
+                        }
+                    }
+                })
+                .show();
+    }
+
+    /**
+     * Let the user type the lowest and highest price of the books shown. A price left empty
+     * doesn't limit the prices that way.
+     */
+    private void choosePriceRange() {
+        View view = getLayoutInflater().inflate(R.layout.dialog_price_range, null);
+        final EditText minPriceEditText = (EditText) view.findViewById(R.id.min_price);
+        final EditText maxPriceEditText = (EditText) view.findViewById(R.id.max_price);
+        if (minPrice != -1) {
+            minPriceEditText.setText(BigDecimal.valueOf(minPrice, 2).toPlainString());
+        }
+        if (maxPrice != -1) {
+            maxPriceEditText.setText(BigDecimal.valueOf(maxPrice, 2).toPlainString());
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.action_filter_price)
+                .setView(view)
+                .setPositiveButton(android.R.string.ok, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        try {
+                            minPrice = parseOptionalPrice(minPriceEditText.getText().toString());
+                            maxPrice = parseOptionalPrice(maxPriceEditText.getText().toString());
+                        } catch (NumberFormatException exception) {
+                            Toast.makeText(CatalogActivity.this, R.string.filter_price_invalid,
+                                    Toast.LENGTH_SHORT).show();
+                            return;
+                        }
+                        restartPaging();
+                    }
+                })
+                .setNegativeButton(R.string.cancel, null)
+                .show();
+    }
+
+    /**
+     * Turn a price typed by the user into cents, or -1 if nothing was typed
+     */
+    private static long parseOptionalPrice(String price) {
+        price = price.trim();
+        return price.isEmpty() ? -1 : EditorActivity.parsePriceInCents(price);
+    }
+
+    /**
+     * Show the whole catalog again, keeping its order and any search
+     */
+    private void clearFilters() {
+        supplierId = -1;
+        stock = null;
+        minPrice = -1;
+        maxPrice = -1;
+        invalidateOptionsMenu();
+        restartPaging();
+    }
+
+    /**
+     * Reload the catalog from the first page, for example after the search query has changed
+     */
+    private void restartPaging() {
+        destroyPagesFrom(1);
+        getLoaderManager().restartLoader(INVENTORY_LOADER, null, this);
+    }
+
     /**
      * insert dummy data of a new book into database
      */
@@ -103,16 +659,15 @@ public class CatalogActivity extends AppCompatActivity
         // Create a new map of values, where column names are the keys
         ContentValues values = new ContentValues();
         values.put(InventoryEntry.COLUMN_PRODUCT_NAME, "The Fellowship of the Ring");
-        values.put(InventoryEntry.COLUMN_PRICE, 19.99);
+        values.put(InventoryEntry.COLUMN_PRICE, 1999);
         values.put(InventoryEntry.COLUMN_QUANTITY, 20);
         values.put(InventoryEntry.COLUMN_SUPPLIER_NAME, "Best Fantasy Book Suppliers");
         values.put(InventoryEntry.COLUMN_SUPPLIER_PHONE_NUMBER, "555-555-5555");
 
-        // Insert a new row for "The Fellowship of the Ring" into the provider using the ContentResolver.
+        // Insert a new row for "The Fellowship of the Ring" into the provider in the background.
         // Use the {@link InventoryEntry#CONTENT_URI} to indicate that we want to insert
-        // into the inventory database table.
-        // Receive the new content URI that will allow us to access Toto's data in the future.
-        Uri newUri = getContentResolver().insert(InventoryEntry.CONTENT_URI, values);
+        // into the inventory database table. The loaders pick up the new row when it is inserted.
+        inventoryWriter.insert(InventoryEntry.CONTENT_URI, values, null);
     }
 
     @Override
@@ -120,6 +675,48 @@ public class CatalogActivity extends AppCompatActivity
         // User clicked on a menu option in the app bar overflow menu
         switch (item.getItemId()) {
             // Respond to a click on the "Insert dummy data" menu option
+            case R.id.action_import:
+                chooseImportFile();
+                return true;
+            case R.id.action_share:
+                shareCatalog();
+                return true;
+            case R.id.action_metrics:
+                startActivity(new Intent(this, MetricsActivity.class));
+                return true;
+            case R.id.action_sort_added:
+                changeSort(item, null);
+                return true;
+            case R.id.action_sort_title:
+                changeSort(item, InventoryContract.SORT_TITLE);
+                return true;
+            case R.id.action_sort_price:
+                changeSort(item, InventoryContract.SORT_PRICE);
+                return true;
+            case R.id.action_sort_quantity:
+                changeSort(item, InventoryContract.SORT_QUANTITY);
+                return true;
+            case R.id.action_sort_recent:
+                changeSort(item, InventoryContract.SORT_RECENT);
+                return true;
+            case R.id.action_filter_any_stock:
+                changeStockFilter(item, null);
+                return true;
+            case R.id.action_filter_in_stock:
+                changeStockFilter(item, InventoryContract.STOCK_IN);
+                return true;
+            case R.id.action_filter_out_of_stock:
+                changeStockFilter(item, InventoryContract.STOCK_OUT);
+                return true;
+            case R.id.action_filter_supplier:
+                chooseSupplier();
+                return true;
+            case R.id.action_filter_price:
+                choosePriceRange();
+                return true;
+            case R.id.action_clear_filters:
+                clearFilters();
+                return true;
             case R.id.action_insert_dummy_data:
                 insertData();
                 return true;
@@ -134,54 +731,194 @@ public class CatalogActivity extends AppCompatActivity
 
     @Override
     public Loader<Cursor> onCreateLoader(int i, Bundle bundle) {
-        // Define a projection that specifies the columns from the table we care about
-        String[] projection = {
-                InventoryEntry.COLUMN_ID,
-                InventoryEntry.COLUMN_PRODUCT_NAME,
-                InventoryEntry.COLUMN_PRICE,
-                InventoryEntry.COLUMN_QUANTITY,
-        };
+        // The first page has no arguments. Later pages start after the last book of the page
+        // before them.
+        Uri pageUri = buildPageUri(bundle);
+
+        // The first page may already be read, or being read, since the activity was created
+        if (bundle == null && firstPagePrefetch != null) {
+            PrefetchedCursorLoader.Prefetch prefetch = firstPagePrefetch;
+            firstPagePrefetch = null;
+            return new PrefetchedCursorLoader(this, pageUri, CATALOG_PROJECTION, prefetch);
+        }
 
         // This loader will execute the ContentProvider's query method on a background thread
         return new CursorLoader(this,   //Parent activity context
-                InventoryEntry.CONTENT_URI,     // Provider content URI to query
-                projection,                     // Columns to include in the resulting Cursor
+                pageUri,                        // Provider URI for this page
+                CATALOG_PROJECTION,             // Columns to include in the resulting Cursor
                 null,                  // No selection clause
                 null,               // No selection arguments
-                null);                 // Default sort order
+                null);                 // Pages are ordered by the sort in the URI
+    }
+
+    /**
+     * Build the URI of the page whose loader has the given arguments, or of the first page if
+     * there are none
+     */
+    private Uri buildPageUri(Bundle args) {
+        // Show the books matching the search query, or the whole catalog if there is none
+        Uri.Builder builder;
+        if (searchQuery.isEmpty()) {
+            builder = InventoryEntry.CONTENT_URI.buildUpon();
+        } else {
+            builder = InventoryEntry.CONTENT_SEARCH_URI.buildUpon()
+                    .appendQueryParameter(InventoryContract.QUERY_PARAMETER_QUERY, searchQuery);
+        }
+
+        // The sort and filters are run by the provider, each through an index
+        if (sort != null) {
+            builder.appendQueryParameter(InventoryContract.QUERY_PARAMETER_SORT, sort);
+        }
+        if (supplierId != -1) {
+            builder.appendQueryParameter(InventoryContract.QUERY_PARAMETER_SUPPLIER,
+                    String.valueOf(supplierId));
+        }
+        if (stock != null) {
+            builder.appendQueryParameter(InventoryContract.QUERY_PARAMETER_STOCK, stock);
+        }
+        if (minPrice != -1) {
+            builder.appendQueryParameter(InventoryContract.QUERY_PARAMETER_MIN_PRICE,
+                    String.valueOf(minPrice));
+        }
+        if (maxPrice != -1) {
+            builder.appendQueryParameter(InventoryContract.QUERY_PARAMETER_MAX_PRICE,
+                    String.valueOf(maxPrice));
+        }
+
+        return args == null
+                ? InventoryEntry.buildPageUri(builder.build(), PAGE_SIZE, null, -1)
+                : InventoryEntry.buildPageUri(builder.build(), PAGE_SIZE,
+                args.getString(ARG_AFTER_KEY), args.getLong(ARG_AFTER_ID));
     }
 
     @Override
     public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        // Update {@link InventoryCursorAdapter} with this new cursor containing updated inventory
-        // data
-        inventoryCursorAdapter.swapCursor(data);
+        Trace.beginSection("CatalogActivity.onLoadFinished");
+        int page = loader.getId() - INVENTORY_LOADER;
+        pages.put(page, data);
+
+        // The page holds the latest values of its books, so their patches are no longer needed
+        inventoryCursorAdapter.dropPatches(data);
+
+        // A page reloads when the inventory changes. If it now ends on a different book, the
+        // following page has to start after that book instead, or it is no longer needed when
+        // this page is not full.
+        int nextLoaderId = loader.getId() + 1;
+        CursorLoader nextLoader = (CursorLoader) getLoaderManager().<Cursor>getLoader(nextLoaderId);
+        if (nextLoader != null) {
+            if (data.getCount() < PAGE_SIZE) {
+                destroyPagesFrom(page + 1);
+            } else {
+                Bundle nextArgs = pageArgs(data);
+                if (!buildPageUri(nextArgs).equals(nextLoader.getUri())) {
+                    getLoaderManager().restartLoader(nextLoaderId, nextArgs, this);
+                }
+            }
+        }
+
+        // Update {@link InventoryCursorAdapter} with the pages containing updated inventory data
+        showLoadedPages();
+
+        // Mark the end of the cold start, so the time to the first books shows in the
+        // "Fully drawn" line of the log and in traces
+        if (page == 0 && !firstPageShown) {
+            firstPageShown = true;
+            reportFullyDrawn();
+        }
+        Trace.endSection();
     }
 
     @Override
     public void onLoaderReset(Loader<Cursor> loader) {
         // Callback called when the data needs to be deleted
-        inventoryCursorAdapter.swapCursor(null);
+        pages.remove(loader.getId() - INVENTORY_LOADER);
+        showLoadedPages();
     }
 
     /**
-     * Helper method to delete all data in the database
+     * Stop loading the given page and all pages after it
      */
-    private void deleteAllData() {
-        int rowsDeleted = getContentResolver().delete(InventoryEntry.CONTENT_URI, null,
-                null);
+    private void destroyPagesFrom(int firstPage) {
+        for (int page = firstPage; getLoaderManager().getLoader(INVENTORY_LOADER + page) != null;
+             page++) {
+            getLoaderManager().destroyLoader(INVENTORY_LOADER + page);
+            pages.remove(page);
+        }
+    }
 
-        Log.v("CatalogActivity", rowsDeleted + " rows deleted from inventory database");
+    /**
+     * Let the user pick a CSV file to import the books from
+     */
+    private void chooseImportFile() {
+        Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType("text/*");
+        startActivityForResult(intent, REQUEST_IMPORT_FILE);
+    }
 
-        // Show a toast message depending on whether or not the delete was successful.
-        if (rowsDeleted == 0) {
-            // If no rows were deleted, the there was an error with the delete.
-            Toast.makeText(this, R.string.editor_delete_book_failed,
-                    Toast.LENGTH_SHORT).show();
-        } else {
-            // Otherwise, the delete was successful and we can display a toast
-            Toast.makeText(this, R.string.editor_delete_book_successful,
-                    Toast.LENGTH_SHORT).show();
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        if (requestCode != REQUEST_IMPORT_FILE) {
+            super.onActivityResult(requestCode, resultCode, data);
+            return;
         }
+        if (resultCode != RESULT_OK || data == null || data.getData() == null) {
+            return;
+        }
+
+        // Keep the right to read the file after a restart, so an interrupted import can resume
+        Uri source = data.getData();
+        getContentResolver().takePersistableUriPermission(source,
+                Intent.FLAG_GRANT_READ_URI_PERMISSION);
+
+        // Record the import, then run it in the background
+        ContentValues values = new ContentValues();
+        values.put(ImportEntry.COLUMN_SOURCE_URI, source.toString());
+        inventoryWriter.insert(ImportEntry.CONTENT_URI, values,
+                new InventoryWriter.Callback<Uri>() {
+                    @Override
+                    public void onComplete(Uri importUri) {
+                        if (importUri != null) {
+                            ImportService.start(getApplicationContext(), importUri);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Share the whole catalog as a CSV file. The receiving app reads the file straight from the
+     * provider, which writes it as it is read, and is only allowed to read this one URI.
+     */
+    private void shareCatalog() {
+        Intent intent = new Intent(Intent.ACTION_SEND);
+        intent.setType(InventoryEntry.EXPORT_CSV_TYPE);
+        intent.putExtra(Intent.EXTRA_STREAM,
+                InventoryEntry.buildExportUri(InventoryContract.FORMAT_CSV));
+        intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        startActivity(Intent.createChooser(intent, getString(R.string.action_share)));
+    }
+
+    /**
+     * Helper method to delete all data in the database
+     */
+    private void deleteAllData() {
+        inventoryWriter.delete(InventoryEntry.CONTENT_URI, null, null,
+                new InventoryWriter.Callback<Integer>() {
+                    @Override
+                    public void onComplete(Integer rowsDeleted) {
+                        Log.v("CatalogActivity", rowsDeleted + " rows deleted from inventory database");
+
+                        // Show a toast message depending on whether or not the delete was successful.
+                        if (rowsDeleted == 0) {
+                            // If no rows were deleted, the there was an error with the delete.
+                            Toast.makeText(CatalogActivity.this, R.string.editor_delete_book_failed,
+                                    Toast.LENGTH_SHORT).show();
+                        } else {
+                            // Otherwise, the delete was successful and we can display a toast
+                            Toast.makeText(CatalogActivity.this, R.string.editor_delete_book_successful,
+                                    Toast.LENGTH_SHORT).show();
+                        }
+                    }
+                });
     }
 }
@@ -0,0 +1,112 @@
+package com.example.android.inventoryapp;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the records of a CSV file one at a time, as described in RFC 4180. Fields are separated
+ * by commas and records by line breaks (CRLF or LF). A field in double quotes may contain commas,
+ * line breaks and doubled quotes. Only the current record is held in memory, so files of any size
+ * are read in constant memory.
+ */
+class CsvReader {
+
+    private final Reader reader;
+
+    /**
+     * Fields of the current record, reused from one record to the next
+     */
+    private final List<String> fields = new ArrayList<>();
+
+    /**
+     * Characters of the field being read
+     */
+    private final StringBuilder field = new StringBuilder();
+
+    /**
+     * Character read ahead of the current one, or -2 if none
+     */
+    private int peeked = -2;
+
+    /**
+     * @param reader the reader to read the file from. Wrap it in a
+     *               {@link java.io.BufferedReader}, since it is read one character at a time.
+     */
+    CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Read the next record.
+     *
+     * @return the fields of the record, valid until the next call, or null at the end of the file
+     * @throws IOException if the file can't be read or a quoted field isn't closed
+     */
+    List<String> readRecord() throws IOException {
+        fields.clear();
+        field.setLength(0);
+
+        int c = read();
+        if (c == -1) {
+            return null;
+        }
+
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Unterminated quoted field");
+                } else if (c == '"') {
+                    // A doubled quote stands for a quote, a single one closes the field
+                    if (peek() == '"') {
+                        read();
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == ',') {
+                endField();
+            } else if (c == '\n' || c == -1) {
+                endField();
+                return fields;
+            } else if (c == '\r') {
+                if (peek() == '\n') {
+                    read();
+                }
+                endField();
+                return fields;
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    private void endField() {
+        fields.add(field.toString());
+        field.setLength(0);
+    }
+
+    private int read() throws IOException {
+        if (peeked != -2) {
+            int c = peeked;
+            peeked = -2;
+            return c;
+        }
+        return reader.read();
+    }
+
+    private int peek() throws IOException {
+        if (peeked == -2) {
+            peeked = reader.read();
+        }
+        return peeked;
+    }
+}
@@ -2,7 +2,9 @@ package com.example.android.inventoryapp;
 
 import android.app.AlertDialog;
 import android.app.LoaderManager;
+import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.Context;
 import android.content.CursorLoader;
 import android.content.DialogInterface;
 import android.content.Intent;
@@ -23,6 +25,11 @@ import android.widget.Toast;
 
 import com.example.android.inventoryapp.data.InventoryContract.InventoryEntry;
 import com.example.android.inventoryapp.data.InventoryProvider;
+import com.example.android.inventoryapp.data.InventoryRecord;
+import com.example.android.inventoryapp.data.InventoryWriter;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 
 
 public class EditorActivity extends AppCompatActivity
@@ -33,6 +40,25 @@ public class EditorActivity extends AppCompatActivity
      */
     private static final int INVENTORY_LOADER = 0;
 
+    /**
+     * Intent extra holding the {@link InventoryRecord} of the book as the caller last read it.
+     * The editor shows it right away, and only shows the book again once it is read from the
+     * database with a different version.
+     */
+    public static final String EXTRA_RECORD = "record";
+
+    /**
+     * Saved instance state keys holding the version of the book shown in the editor and whether
+     * the user has edited it
+     */
+    private static final String STATE_SHOWN_VERSION = "shownVersion";
+    private static final String STATE_BOOK_HAS_CHANGED = "bookHasChanged";
+
+    /**
+     * Version of the book shown in the fields, or -1 if none is shown yet
+     */
+    private long shownVersion = -1;
+
     /**
      * Content URI for the exiting book (null if it's a new book)
      */
@@ -53,6 +79,11 @@ public class EditorActivity extends AppCompatActivity
      */
     private EditText bookQuantityEditText;
 
+    /**
+     * EditText field to enter the quantity at which the book needs to be reordered
+     */
+    private EditText reorderThresholdEditText;
+
     /**
      * EditText field to enter the supplier name
      */
@@ -68,6 +99,11 @@ public class EditorActivity extends AppCompatActivity
      */
     private static final String LOG_TAG = EditorActivity.class.getName();
 
+    /**
+     * Writes the book to the database in the background
+     */
+    private InventoryWriter inventoryWriter;
+
     /**
      * Boolean flag that keeps track of whether the book has been edited (true) or not (false).
      */
@@ -79,6 +115,8 @@ public class EditorActivity extends AppCompatActivity
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_editor);
 
+        inventoryWriter = new InventoryWriter(this);
+
         // Examine the intent that was used to launch this activity in order to figure out
         // if we're creating a new book or editing an existing one.
         Intent intent = getIntent();
@@ -112,9 +150,23 @@ public class EditorActivity extends AppCompatActivity
         bookTitleEditText = (EditText) findViewById(R.id.edit_book_title);
         bookPriceEditText = (EditText) findViewById(R.id.edit_book_price);
         bookQuantityEditText = (EditText) findViewById(R.id.edit_book_quantity);
+        reorderThresholdEditText = (EditText) findViewById(R.id.edit_reorder_threshold);
         supplierNameEditText = (EditText) findViewById(R.id.edit_supplier_name);
         supplierPhoneNumberEditText = (EditText) findViewById(R.id.edit_supplier_phone);
 
+        if (savedInstanceState != null) {
+            // The fields restore what they showed, including the user's edits
+            shownVersion = savedInstanceState.getLong(STATE_SHOWN_VERSION, -1);
+            bookHasChanged = savedInstanceState.getBoolean(STATE_BOOK_HAS_CHANGED);
+        } else if (currentBookUri != null) {
+            // Show the book as the catalog listed it without waiting for the loader, which
+            // still checks it in the background
+            InventoryRecord record = intent.getParcelableExtra(EXTRA_RECORD);
+            if (record != null && record.getId() == ContentUris.parseId(currentBookUri)) {
+                showBook(record);
+            }
+        }
+
         // Find buttons that user can interact with
         Button decrementQuantityButton = (Button) findViewById(R.id.decrement_quantity_button);
         Button incrementQuantityButton = (Button) findViewById(R.id.increment_quantity_button);
@@ -125,6 +177,7 @@ public class EditorActivity extends AppCompatActivity
         bookTitleEditText.setOnTouchListener(touchListener);
         bookPriceEditText.setOnTouchListener(touchListener);
         bookQuantityEditText.setOnTouchListener(touchListener);
+        reorderThresholdEditText.setOnTouchListener(touchListener);
         supplierNameEditText.setOnTouchListener(touchListener);
         supplierPhoneNumberEditText.setOnTouchListener(touchListener);
         decrementQuantityButton.setOnTouchListener(touchListener);
@@ -194,6 +247,13 @@ public class EditorActivity extends AppCompatActivity
         });
     }
 
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putLong(STATE_SHOWN_VERSION, shownVersion);
+        outState.putBoolean(STATE_BOOK_HAS_CHANGED, bookHasChanged);
+    }
+
     /**
      * Get user input from the editor and save new book into database
      */
@@ -201,6 +261,7 @@ public class EditorActivity extends AppCompatActivity
         String bookTitleString = bookTitleEditText.getText().toString().trim();
         String bookPriceString = bookPriceEditText.getText().toString().trim();
         String bookQuantityString = bookQuantityEditText.getText().toString().trim();
+        String reorderThresholdString = reorderThresholdEditText.getText().toString().trim();
         String supplierNameString = supplierNameEditText.getText().toString().trim();
         String supplierPhoneNumberString = supplierPhoneNumberEditText.getText().toString().trim();
 
@@ -208,8 +269,8 @@ public class EditorActivity extends AppCompatActivity
         // are blank.
         if (currentBookUri == null &&
                 bookTitleString.isEmpty() && bookPriceString.isEmpty() &&
-                bookQuantityString.isEmpty() && supplierNameString.isEmpty() &&
-                supplierPhoneNumberString.isEmpty()) {
+                bookQuantityString.isEmpty() && reorderThresholdString.isEmpty() &&
+                supplierNameString.isEmpty() && supplierPhoneNumberString.isEmpty()) {
             // Since no fields were modified, we can return early without creating a new book.
             // No need to create ContentValues and no need to do any ContentProvider operations.
             // Finish Editor Activity and return to Catalog Activity
@@ -242,10 +303,10 @@ public class EditorActivity extends AppCompatActivity
 
             // If the price or quantity are not provided by the user, don't try to parse the string
             // into an integer values. Use 0 by default.
-            double price = 0;
+            long price = 0;
             int quantity = 0;
             if (!bookPriceString.isEmpty()) {
-                price = Double.parseDouble(bookPriceString);
+                price = parsePriceInCents(bookPriceString);
             }
             values.put(InventoryEntry.COLUMN_PRICE, price);
 
@@ -254,43 +315,68 @@ public class EditorActivity extends AppCompatActivity
             }
 
             values.put(InventoryEntry.COLUMN_QUANTITY, quantity);
+
+            // The reorder threshold is optional. Without one, the book is reordered once it
+            // sells out.
+            int reorderThreshold = 0;
+            if (!reorderThresholdString.isEmpty()) {
+                reorderThreshold = Integer.parseInt(reorderThresholdString);
+            }
+            values.put(InventoryEntry.COLUMN_REORDER_THRESHOLD, reorderThreshold);
             values.put(InventoryEntry.COLUMN_SUPPLIER_NAME, supplierNameString);
             values.put(InventoryEntry.COLUMN_SUPPLIER_PHONE_NUMBER, supplierPhoneNumberString);
 
+            // The result of the write is shown once it completes in the background, after the
+            // editor has already closed, so toasts use the application context.
+            final Context appContext = getApplicationContext();
+
             // Determine if this is a new or existing book by checking if currentBookUri is null or not
             if (currentBookUri == null) {
 
                 // Insert a new book into the provider returning the content URI for the new book
-                Uri newUri = getContentResolver().insert(InventoryEntry.CONTENT_URI, values);
-
-                // Show a toast message depending on whether or not the insertion was successful
-                if (newUri == null) {
-                    // If the new content URI is null, then there was an error with insertion
-                    Toast.makeText(this, R.string.insert_failed, Toast.LENGTH_SHORT).show();
-                } else {
-                    // Otherwise the insertion was successful, and we can display a toast
-                    Toast.makeText(this, R.string.insert_successful, Toast.LENGTH_SHORT).show();
-                }
+                inventoryWriter.insert(InventoryEntry.CONTENT_URI, values,
+                        new InventoryWriter.Callback<Uri>() {
+                            @Override
+                            public void onComplete(Uri newUri) {
+                                // Show a toast message depending on whether or not the insertion
+                                // was successful
+                                if (newUri == null) {
+                                    // If the new content URI is null, then there was an error
+                                    // with insertion
+                                    Toast.makeText(appContext, R.string.insert_failed,
+                                            Toast.LENGTH_SHORT).show();
+                                } else {
+                                    // Otherwise the insertion was successful, and we can display
+                                    // a toast
+                                    Toast.makeText(appContext, R.string.insert_successful,
+                                            Toast.LENGTH_SHORT).show();
+                                }
+                            }
+                        });
             } else {
                 // Otherwise this is an existing book, so update the book with the content URI:
                 // currentBookUri and pass in the new ContentValues. Pass in null for the selection and
                 // selection args because currentBookUri will already identify the correct row in the
                 // database that we want to modify.
-
-                int rowsAffected = getContentResolver().update(
-                        currentBookUri,
-                        values,
-                        null,
-                        null);
-
-                // Show a toast message depending on whether or not the update was successful.
-                if (rowsAffected == 0) {
-                    // If no rows were affected, then there was an error with the update.
-                    Toast.makeText(this, R.string.update_failed, Toast.LENGTH_SHORT).show();
-                } else {
-                    // Otherwise, the update was successful and we can display a toast.
-                    Toast.makeText(this, R.string.update_successful, Toast.LENGTH_SHORT).show();
-                }
+                inventoryWriter.update(currentBookUri, values, null, null,
+                        new InventoryWriter.Callback<Integer>() {
+                            @Override
+                            public void onComplete(Integer rowsAffected) {
+                                // Show a toast message depending on whether or not the update
+                                // was successful.
+                                if (rowsAffected == 0) {
+                                    // If no rows were affected, then there was an error with
+                                    // the update.
+                                    Toast.makeText(appContext, R.string.update_failed,
+                                            Toast.LENGTH_SHORT).show();
+                                } else {
+                                    // Otherwise, the update was successful and we can display
+                                    // a toast.
+                                    Toast.makeText(appContext, R.string.update_successful,
+                                            Toast.LENGTH_SHORT).show();
+                                }
+                            }
+                        });
             }
 
             // Finish Editor Activity and return to Catalog Activity
@@ -369,15 +455,9 @@ public class EditorActivity extends AppCompatActivity
     @Override
     public Loader<Cursor> onCreateLoader(int i, Bundle bundle) {
         // Since the editor shows all book attributes, define a projection that contains
-        // all columns from the inventory table
-        String[] projection = {
-                InventoryEntry.COLUMN_ID,
-                InventoryEntry.COLUMN_PRODUCT_NAME,
-                InventoryEntry.COLUMN_PRICE,
-                InventoryEntry.COLUMN_QUANTITY,
-                InventoryEntry.COLUMN_SUPPLIER_NAME,
-                InventoryEntry.COLUMN_SUPPLIER_PHONE_NUMBER
-        };
+        // all columns from the inventory table. These are the columns of a cached record, so a
+        // book listed or viewed lately is read from the provider's cache.
+        String[] projection = InventoryRecord.COLUMNS;
 
         // This loader will execute the ContentProvider's query method on a background thread
         return new CursorLoader(this,   // Parent activity context
@@ -398,39 +478,40 @@ public class EditorActivity extends AppCompatActivity
         // Proceed with moving to the first row of the cursor and reading data from it
         // (This should be the only row in the cursor)
         if (cursor.moveToFirst()) {
-            // Find the columns of the book attributes that we're interested in
-            int bookTitleIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_PRODUCT_NAME);
-            int bookPriceIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_PRICE);
-            int bookQuantityIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_QUANTITY);
-            int supplierNameIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_SUPPLIER_NAME);
-            int supplierPhoneNumberIndex = cursor.getColumnIndex(
-                    InventoryEntry.COLUMN_SUPPLIER_PHONE_NUMBER);
-
-            // Extract out the value from the Cursor for the given column index.
-            String bookTitle = cursor.getString(bookTitleIndex);
-            double bookPrice = cursor.getDouble(bookPriceIndex);
-            int bookQuantity = cursor.getInt(bookQuantityIndex);
-            String supplierName = cursor.getString(supplierNameIndex);
-            String supplierPhoneNumber = cursor.getString(supplierPhoneNumberIndex);
-
-            // Update the view on the screen with the values from the database
-            bookTitleEditText.setText(bookTitle);
-            bookPriceEditText.setText(Double.toString(bookPrice));
-            bookQuantityEditText.setText(Integer.toString(bookQuantity));
-            supplierNameEditText.setText(supplierName);
-            supplierPhoneNumberEditText.setText(supplierPhoneNumber);
+            InventoryRecord record = InventoryRecord.fromCursor(cursor);
+
+            // The fields already show this version of the book, maybe with the user's edits.
+            // Once the user has edited the fields, a newer version doesn't replace their edits.
+            if (record.getVersion() == shownVersion || bookHasChanged) {
+                return;
+            }
+            showBook(record);
         }
     }
 
+    /**
+     * Update the view on the screen with the values of the book
+     */
+    private void showBook(InventoryRecord record) {
+        bookTitleEditText.setText(record.getProductName());
+        bookPriceEditText.setText(formatPrice(record.getPrice()));
+        bookQuantityEditText.setText(Integer.toString(record.getQuantity()));
+        reorderThresholdEditText.setText(Integer.toString(record.getReorderThreshold()));
+        supplierNameEditText.setText(record.getSupplierName());
+        supplierPhoneNumberEditText.setText(record.getSupplierPhoneNumber());
+        shownVersion = record.getVersion();
+    }
+
     @Override
     public void onLoaderReset(Loader<Cursor> loader) {
         // If the loader is invalidated, clear out all the data from tne input fields.
         bookTitleEditText.setText("");
         bookPriceEditText.setText("");
         bookQuantityEditText.setText("");
+        reorderThresholdEditText.setText("");
         supplierNameEditText.setText("");
         supplierPhoneNumberEditText.setText("");
-
+        shownVersion = -1;
     }
 
     // OnTouchListener that listens for any user touches on a View, implying that they are modifying
@@ -521,27 +602,57 @@ public class EditorActivity extends AppCompatActivity
     private void deleteBook() {
         // Only perform the delete if this is an existing book.
         if (currentBookUri != null) {
-            // Call the ContentResolver to delete the book at the given content URI.
+            // Delete the book at the given content URI in the background.
             // Pass in null for the selection and selection args because the currentBookUri
             // content URI already identifies teh poet that we want.
-            int rowsDeleted = getContentResolver().delete(currentBookUri, null,
-                    null);
-
-            // Show a toast message depending on whether or not the delete was successful
-            if (rowsDeleted == 0) {
-                // If no rows were deleted, then there was an error with the delete.
-                Toast.makeText(this, R.string.editor_delete_book_failed,
-                        Toast.LENGTH_SHORT).show();
-            } else {
-                // Otherwise the delte was successful, and we can display a toast
-                Toast.makeText(this, R.string.editor_delete_book_successful,
-                        Toast.LENGTH_SHORT).show();
-            }
+            final Context appContext = getApplicationContext();
+            inventoryWriter.delete(currentBookUri, null, null,
+                    new InventoryWriter.Callback<Integer>() {
+                        @Override
+                        public void onComplete(Integer rowsDeleted) {
+                            // Show a toast message depending on whether or not the delete was
+                            // successful
+                            if (rowsDeleted == 0) {
+                                // If no rows were deleted, then there was an error with the
+                                // delete.
+                                Toast.makeText(appContext, R.string.editor_delete_book_failed,
+                                        Toast.LENGTH_SHORT).show();
+                            } else {
+                                // Otherwise the delte was successful, and we can display a toast
+                                Toast.makeText(appContext, R.string.editor_delete_book_successful,
+                                        Toast.LENGTH_SHORT).show();
+                            }
+                        }
+                    });
+
             // Close the activity
             finish();
         }
     }
 
+    /**
+     * The helper method to turn the price typed by the user, such as 19.99, into cents.
+     *
+     * @param price the price in dollars and cents.
+     * @return the price in cents, rounded to the nearest cent.
+     */
+
+    static long parsePriceInCents(String price) {
+        return new BigDecimal(price).movePointRight(2).setScale(0, RoundingMode.HALF_UP)
+                .longValue();
+    }
+
+    /**
+     * The helper method to show a price stored in cents in dollars and cents, such as 19.99.
+     *
+     * @param cents the price in cents.
+     * @return the formatted price.
+     */
+
+    private static String formatPrice(long cents) {
+        return BigDecimal.valueOf(cents, 2).toPlainString();
+    }
+
     /**
      * The helper method to decrement the quantity of books in stock.
      *
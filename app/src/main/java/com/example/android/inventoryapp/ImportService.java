@@ -0,0 +1,384 @@
+package com.example.android.inventoryapp;
+
+import android.app.IntentService;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.net.Uri;
+import android.os.Build;
+import android.provider.OpenableColumns;
+import android.support.v4.app.NotificationCompat;
+import android.support.v4.app.NotificationManagerCompat;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.example.android.inventoryapp.data.InventoryContract.ImportEntry;
+import com.example.android.inventoryapp.data.InventoryContract.InventoryEntry;
+import com.example.android.inventoryapp.data.InventoryProvider;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Imports books from a CSV file chosen by the user. The first record of the file names the
+ * columns, using the column names of {@link InventoryEntry}: productName, price (in dollars, such
+ * as 19.99), quantity, supplierName, supplierPhoneNumber and optionally reorderThreshold.
+ * <p>
+ * The file is streamed one record at a time and the books are written in chunks of
+ * {@link #CHUNK_ROWS}, each in a single transaction together with the number of records done.
+ * Invalid records are skipped. If the import is interrupted, it resumes after the last chunk
+ * written, either when the system redelivers the intent or when the catalog is opened again.
+ * Whichever comes first finishes the import and deletes it, so the other finds nothing to do.
+ * Progress is shown in a notification.
+ */
+public class ImportService extends IntentService {
+
+    private static final String LOG_TAG = ImportService.class.getSimpleName();
+
+    /**
+     * Action resuming every import that was interrupted
+     */
+    private static final String ACTION_RESUME = "com.example.android.inventoryapp.action.RESUME_IMPORTS";
+
+    /**
+     * Number of books written per transaction
+     */
+    static final int CHUNK_ROWS = 1000;
+
+    private static final int NOTIFICATION_ID = 2;
+
+    private static final String CHANNEL_ID = "import";
+
+    private static final String[] IMPORT_PROJECTION = {
+            ImportEntry.COLUMN_ID,
+            ImportEntry.COLUMN_SOURCE_URI,
+            ImportEntry.COLUMN_RECORDS_DONE
+    };
+
+    public ImportService() {
+        super("ImportService");
+    }
+
+    /**
+     * Run an import added to {@link ImportEntry#CONTENT_URI}. The app must hold a persistable
+     * read permission on the file, so the import can resume after the app restarts.
+     *
+     * @param importUri the URI of the import
+     */
+    public static void start(Context context, Uri importUri) {
+        context.startService(new Intent(context, ImportService.class).setData(importUri));
+    }
+
+    /**
+     * Finish the imports that were interrupted, if any
+     */
+    public static void resumeImports(Context context) {
+        context.startService(new Intent(context, ImportService.class).setAction(ACTION_RESUME));
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        // If the process dies during an import, have the system start it again
+        setIntentRedelivery(true);
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        if (intent == null) {
+            return;
+        }
+
+        // Run the given import, or all imports left over when resuming. An import that is no
+        // longer there has already been finished.
+        Uri importsUri = ACTION_RESUME.equals(intent.getAction())
+                ? ImportEntry.CONTENT_URI : intent.getData();
+        Cursor imports = getContentResolver().query(importsUri, IMPORT_PROJECTION, null, null,
+                null);
+        if (imports == null) {
+            return;
+        }
+        try {
+            while (imports.moveToNext()) {
+                importFile(Uri.parse(imports.getString(1)), imports.getLong(0),
+                        imports.getLong(2));
+            }
+        } finally {
+            imports.close();
+        }
+    }
+
+    /**
+     * Import a CSV file, starting after the records already done.
+     *
+     * @param source      the URI of the file
+     * @param importId    the ID of the import in {@link ImportEntry#CONTENT_URI}
+     * @param recordsDone the number of records of the file already done
+     */
+    private void importFile(Uri source, long importId, long recordsDone) {
+        ContentResolver resolver = getContentResolver();
+        NotificationManagerCompat notificationManager = NotificationManagerCompat.from(this);
+        long fileSize = querySize(source);
+
+        // Keep the import running while the app is in the background
+        createNotificationChannel();
+        NotificationCompat.Builder notification = new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.stat_sys_download)
+                .setContentTitle(getString(R.string.import_notification_title))
+                .setOnlyAlertOnce(true)
+                .setProgress(0, 0, true);
+        startForeground(NOTIFICATION_ID, notification.build());
+
+        int booksImported = 0;
+        int recordsSkipped = 0;
+        boolean failed = false;
+
+        try {
+            CountingInputStream input = new CountingInputStream(resolver.openInputStream(source));
+            try {
+                CsvReader csv = new CsvReader(new BufferedReader(
+                        new InputStreamReader(input, "UTF-8"), 64 * 1024));
+
+                // The header maps column names to the position of their field
+                List<String> record = csv.readRecord();
+                if (record == null) {
+                    throw new IOException("Empty file");
+                }
+                Map<String, Integer> columns = new HashMap<>();
+                for (int i = 0; i < record.size(); i++) {
+                    String name = record.get(i);
+
+                    // Spreadsheets often start UTF-8 files with a byte order mark, which trim()
+                    // leaves on the name of the first column
+                    if (i == 0 && name.startsWith("\uFEFF")) {
+                        name = name.substring(1);
+                    }
+                    columns.put(name.trim(), i);
+                }
+                long recordsRead = 1;
+
+                // Skip the records written before the import was interrupted
+                while (recordsRead < recordsDone && csv.readRecord() != null) {
+                    recordsRead++;
+                }
+
+                // Suppliers whose phone number was already checked
+                Set<String> checkedSuppliers = new HashSet<>();
+                List<ContentValues> chunk = new ArrayList<>(CHUNK_ROWS);
+                int lastPercent = -1;
+                while ((record = csv.readRecord()) != null) {
+                    recordsRead++;
+                    ContentValues values = toBook(record, columns, checkedSuppliers);
+                    if (values == null) {
+                        recordsSkipped++;
+                        Log.w(LOG_TAG, "Skipped invalid record " + recordsRead + " of " + source);
+                    } else {
+                        chunk.add(values);
+                    }
+
+                    if (chunk.size() == CHUNK_ROWS) {
+                        booksImported += writeChunk(importId, recordsRead, chunk);
+
+                        // Show the progress, changing the notification at most once a percent
+                        if (fileSize > 0) {
+                            int percent = (int) (input.getCount() * 100 / fileSize);
+                            if (percent != lastPercent) {
+                                lastPercent = percent;
+                                notification.setProgress(100, percent, false)
+                                        .setContentText(getResources().getQuantityString(
+                                                R.plurals.import_notification_progress,
+                                                booksImported, booksImported));
+                                notificationManager.notify(NOTIFICATION_ID, notification.build());
+                            }
+                        }
+                    }
+                }
+                booksImported += writeChunk(importId, recordsRead, chunk);
+            } finally {
+                input.close();
+            }
+        } catch (IOException | SecurityException | IllegalArgumentException | SQLException exception) {
+            // The file can't be read anymore or isn't valid CSV, so give up on it
+            Log.e(LOG_TAG, "Failed to import " + source, exception);
+            failed = true;
+        }
+
+        // The import is over, so don't resume it
+        resolver.delete(ContentUris.withAppendedId(ImportEntry.CONTENT_URI, importId), null, null);
+
+        String result = failed
+                ? getString(R.string.import_failed)
+                : getResources().getQuantityString(R.plurals.import_notification_done,
+                booksImported, booksImported, recordsSkipped);
+        notification.setProgress(0, 0, false)
+                .setSmallIcon(android.R.drawable.stat_sys_download_done)
+                .setContentText(result);
+        stopForeground(false);
+        notificationManager.notify(NOTIFICATION_ID, notification.build());
+    }
+
+    /**
+     * Write a chunk of books in one transaction, together with the number of records done.
+     * Return the number of books written and empty the chunk.
+     */
+    private int writeChunk(long importId, long recordsDone, List<ContentValues> chunk) {
+        int written = getContentResolver().bulkInsert(
+                InventoryEntry.buildImportChunkUri(importId, recordsDone),
+                chunk.toArray(new ContentValues[chunk.size()]));
+        chunk.clear();
+        return written;
+    }
+
+    /**
+     * Turn a record into the content values of a book. Return null if the record isn't a valid
+     * book according to the rules of the provider.
+     *
+     * @param record           the fields of the record
+     * @param columns          the position of each column in the record
+     * @param checkedSuppliers the suppliers with a valid phone number seen so far
+     */
+    private static ContentValues toBook(List<String> record, Map<String, Integer> columns,
+                                        Set<String> checkedSuppliers) {
+        String title = field(record, columns, InventoryEntry.COLUMN_PRODUCT_NAME);
+        String price = field(record, columns, InventoryEntry.COLUMN_PRICE);
+        String quantity = field(record, columns, InventoryEntry.COLUMN_QUANTITY);
+        String supplierName = field(record, columns, InventoryEntry.COLUMN_SUPPLIER_NAME);
+        String supplierPhoneNumber =
+                field(record, columns, InventoryEntry.COLUMN_SUPPLIER_PHONE_NUMBER);
+
+        // Every book needs these fields
+        if (TextUtils.isEmpty(title) || TextUtils.isEmpty(price) || TextUtils.isEmpty(quantity)
+                || TextUtils.isEmpty(supplierName) || TextUtils.isEmpty(supplierPhoneNumber)) {
+            return null;
+        }
+
+        try {
+            ContentValues values = new ContentValues();
+            values.put(InventoryEntry.COLUMN_PRODUCT_NAME, title);
+            values.put(InventoryEntry.COLUMN_PRICE, EditorActivity.parsePriceInCents(price));
+            values.put(InventoryEntry.COLUMN_QUANTITY, Integer.parseInt(quantity));
+            values.put(InventoryEntry.COLUMN_SUPPLIER_NAME, supplierName);
+            values.put(InventoryEntry.COLUMN_SUPPLIER_PHONE_NUMBER, supplierPhoneNumber);
+            String reorderThreshold =
+                    field(record, columns, InventoryEntry.COLUMN_REORDER_THRESHOLD);
+            if (!TextUtils.isEmpty(reorderThreshold)) {
+                values.put(InventoryEntry.COLUMN_REORDER_THRESHOLD,
+                        Integer.parseInt(reorderThreshold));
+            }
+            InventoryProvider.validateInventory(values);
+
+            // A new supplier is rejected by the provider if its phone number is invalid, which
+            // would reject the whole chunk, so check each supplier once here
+            String supplier = supplierName + '\n' + supplierPhoneNumber;
+            if (!checkedSuppliers.contains(supplier)) {
+                if (!InventoryProvider.isValidPhoneNumber(supplierPhoneNumber)) {
+                    return null;
+                }
+                checkedSuppliers.add(supplier);
+            }
+            return values;
+        } catch (IllegalArgumentException | ArithmeticException exception) {
+            // NumberFormatException is an IllegalArgumentException
+            return null;
+        }
+    }
+
+    /**
+     * Return the trimmed field of a record for a column, or null if the file or record lacks it
+     */
+    private static String field(List<String> record, Map<String, Integer> columns, String column) {
+        Integer position = columns.get(column);
+        if (position == null || position >= record.size()) {
+            return null;
+        }
+        return record.get(position).trim();
+    }
+
+    /**
+     * Return the size of a file in bytes, or -1 if it is unknown
+     */
+    private long querySize(Uri source) {
+        try {
+            Cursor cursor = getContentResolver().query(source,
+                    new String[]{OpenableColumns.SIZE}, null, null, null);
+            if (cursor == null) {
+                return -1;
+            }
+            try {
+                return cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getLong(0) : -1;
+            } finally {
+                cursor.close();
+            }
+        } catch (SecurityException | IllegalArgumentException exception) {
+            return -1;
+        }
+    }
+
+    /**
+     * Create the notification channel for imports, on systems that have channels
+     */
+    private void createNotificationChannel() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID,
+                    getString(R.string.import_channel_name), NotificationManager.IMPORTANCE_LOW);
+            getSystemService(NotificationManager.class).createNotificationChannel(channel);
+        }
+    }
+
+    /**
+     * Input stream counting the bytes read through it, to report the progress of the import
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
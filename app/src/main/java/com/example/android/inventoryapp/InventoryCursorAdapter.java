@@ -1,16 +1,11 @@
 package com.example.android.inventoryapp;
 
-import android.app.LoaderManager;
-import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
-import android.content.CursorLoader;
-import android.content.Loader;
+import android.database.CharArrayBuffer;
 import android.database.Cursor;
-import android.net.Uri;
 import android.os.Bundle;
-import android.text.TextUtils;
-import android.util.Log;
+import android.util.LongSparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -19,18 +14,118 @@ import android.widget.CursorAdapter;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import com.example.android.inventoryapp.data.CatalogSnapshot;
+import com.example.android.inventoryapp.data.InventoryContract;
 import com.example.android.inventoryapp.data.InventoryContract.InventoryEntry;
-
-import java.math.BigDecimal;
-import java.text.DecimalFormat;
+import com.example.android.inventoryapp.data.InventoryRecord;
 
 /**
  * {@link InventoryCursorAdapter} is an adapter for a list or grid view that uses a {@link Cursor}
  * of inventory data as its data source. This adapter knows how to create list items for each row of
  * inventory data in the {@link Cursor}
+ * <p>
+ * Binding a row doesn't allocate: the views of each list item are found once and kept in a
+ * {@link ViewHolder}, the column indexes are looked up once per cursor, the title is copied into a
+ * buffer owned by the list item, and the price and quantity are formatted into char arrays.
  */
 public class InventoryCursorAdapter extends CursorAdapter{
 
+    /**
+     * Latest values of books that changed after their page was loaded, keyed by book ID. They are
+     * shown instead of the values in the cursor until the page holding the book is reloaded.
+     */
+    private final LongSparseArray<RowPatch> rowPatches = new LongSparseArray<>();
+
+    /**
+     * Column indexes of the current cursor, looked up when the cursor is swapped in
+     */
+    private int idColumnIndex;
+    private int bookTitleColumnIndex;
+    private int priceColumnIndex;
+    private int quantityColumnIndex;
+
+    /**
+     * Click listener shared by the Sale buttons of all list items. The button's tag holds the
+     * {@link ViewHolder} of its list item, which knows the ID of the book currently bound to it.
+     */
+    private final View.OnClickListener saleClickListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View view) {
+            ViewHolder holder = (ViewHolder) view.getTag();
+
+            // Count the sale right away. It is written together with the other sales made in
+            // the next moments, and the quantity shown already takes it into account.
+            if (!saleBuffer.sell(holder.id, holder.quantityInStock)) {
+                // If no copy is left, do not decrement. Show toast informing user that quantity
+                // cannot be less than 0.
+                Toast.makeText(view.getContext(), R.string.quantity_less_than_zero,
+                        Toast.LENGTH_SHORT).show();
+            }
+        }
+    };
+
+    /**
+     * Latest values of the columns of one book that changed, read out of the
+     * {@link ContentValues} of the change once so that binding the book doesn't unbox them
+     */
+    private static class RowPatch {
+        // Null if the title didn't change
+        String bookTitle;
+
+        boolean hasPrice;
+        long price;
+
+        boolean hasQuantity;
+        int quantity;
+
+        void putAll(ContentValues values) {
+            if (values.containsKey(InventoryEntry.COLUMN_PRODUCT_NAME)) {
+                bookTitle = values.getAsString(InventoryEntry.COLUMN_PRODUCT_NAME);
+            }
+            if (values.containsKey(InventoryEntry.COLUMN_PRICE)) {
+                hasPrice = true;
+                price = values.getAsLong(InventoryEntry.COLUMN_PRICE);
+            }
+            if (values.containsKey(InventoryEntry.COLUMN_QUANTITY)) {
+                hasQuantity = true;
+                quantity = values.getAsInteger(InventoryEntry.COLUMN_QUANTITY);
+            }
+        }
+    }
+
+    /**
+     * Views and buffers of one list item, kept in the tag of the list item and of its Sale button
+     */
+    static class ViewHolder {
+        final TextView bookTitleTextView;
+        final TextView priceTextView;
+        final TextView quantityTextView;
+        final Button saleButton;
+
+        // Buffers the book attributes are copied and formatted into
+        final CharArrayBuffer bookTitleBuffer = new CharArrayBuffer(64);
+        final char[] priceChars = new char[24];
+        final char[] quantityChars = new char[12];
+
+        // ID and quantity in the database of the book currently bound to the list item
+        long id;
+        int quantityInStock;
+
+        ViewHolder(View view) {
+            bookTitleTextView = (TextView) view.findViewById(R.id.bookTitle);
+            priceTextView = (TextView) view.findViewById(R.id.price);
+            quantityTextView = (TextView) view.findViewById(R.id.quantity);
+            saleButton = (Button) view.findViewById(R.id.sale_button);
+        }
+    }
+
+    /**
+     * Collects the sales made with the Sale buttons and writes them in batches
+     */
+    private final SaleBuffer saleBuffer;
+
+    private final Context context;
+
     /**
      * Constructs a new {@link InventoryCursorAdapter}
      *
@@ -39,6 +134,99 @@ public class InventoryCursorAdapter extends CursorAdapter{
      */
     public InventoryCursorAdapter(Context context, Cursor cursor) {
         super(context, cursor, 0);
+        this.context = context;
+        saleBuffer = new SaleBuffer(context, new SaleBuffer.Listener() {
+            @Override
+            public void onUnwrittenSalesChanged() {
+                notifyDataSetChanged();
+            }
+
+            @Override
+            public void onSalesWritten(long[] ids, Bundle result) {
+                showSaleResult(ids, result);
+            }
+        });
+        if (cursor != null) {
+            findColumnIndexes(cursor);
+        }
+    }
+
+    @Override
+    public Cursor swapCursor(Cursor newCursor) {
+        // Look up the columns of book attributes once for the whole cursor rather than per row
+        if (newCursor != null) {
+            findColumnIndexes(newCursor);
+        }
+        return super.swapCursor(newCursor);
+    }
+
+    /**
+     * Find the columns of book attributes that we're interested in
+     */
+    private void findColumnIndexes(Cursor cursor) {
+        idColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_ID);
+        bookTitleColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_PRODUCT_NAME);
+        priceColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_PRICE);
+        quantityColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_QUANTITY);
+    }
+
+    /**
+     * Write the sales that are waiting for the next batch now, for example when the catalog is
+     * being left. The sales are written in the background and the quantities shown are updated
+     * once they are in the database.
+     */
+    public void flushSales() {
+        saleBuffer.flushBeforeLeaving();
+    }
+
+    /**
+     * Show new values for some columns of a single book without reloading the cursor.
+     *
+     * @param id     the ID of the book
+     * @param values the columns that changed and their new values
+     */
+    public void patchRow(long id, ContentValues values) {
+        RowPatch patch = rowPatches.get(id);
+        if (patch == null) {
+            patch = new RowPatch();
+            rowPatches.put(id, patch);
+        }
+        patch.putAll(values);
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Return a snapshot of the book at the given position, as loaded with its page. Return null
+     * if the book changed since the page was loaded or has sales that aren't written yet, as the
+     * snapshot would then be out of date, or if the list still shows the
+     * {@link CatalogSnapshot}, which holds only part of a book.
+     *
+     * @param position the position of the book in the list
+     */
+    public InventoryRecord getRecord(int position) {
+        Cursor cursor = (Cursor) getItem(position);
+        long id = getItemId(position);
+        if (cursor == null || rowPatches.get(id) != null || saleBuffer.getUnwrittenSales(id) != 0
+                || cursor.getColumnIndex(InventoryEntry.COLUMN_VERSION) == -1) {
+            return null;
+        }
+        return InventoryRecord.fromCursor(cursor);
+    }
+
+    /**
+     * Forget the patches of the books in a freshly loaded page, since it already holds their
+     * latest values.
+     *
+     * @param page the cursor holding the page
+     */
+    public void dropPatches(Cursor page) {
+        if (rowPatches.size() == 0 || !page.moveToFirst()) {
+            return;
+        }
+        int idColumnIndex = page.getColumnIndex(InventoryEntry.COLUMN_ID);
+        do {
+            rowPatches.remove(page.getLong(idColumnIndex));
+        } while (page.moveToNext());
     }
 
     /**
@@ -52,7 +240,14 @@ public class InventoryCursorAdapter extends CursorAdapter{
      */
     @Override
     public View newView(Context context, Cursor cursor, ViewGroup parent) {
-        return LayoutInflater.from(context).inflate(R.layout.list_item, parent, false);
+        View view = LayoutInflater.from(context).inflate(R.layout.list_item, parent, false);
+
+        // Find individual views that we want to modify in the list item layout, once per view
+        ViewHolder holder = new ViewHolder(view);
+        view.setTag(holder);
+        holder.saleButton.setTag(holder);
+        holder.saleButton.setOnClickListener(saleClickListener);
+        return view;
     }
 
     /**
@@ -66,103 +261,135 @@ public class InventoryCursorAdapter extends CursorAdapter{
      *                correct row.
      */
     @Override
-    public void bindView(View view, final Context context, Cursor cursor) {
-        // Find individual views tha we want to modify in the list item layout
-        TextView bookTitleTextView = (TextView) view.findViewById(R.id.bookTitle);
-        TextView priceTextView = (TextView) view.findViewById(R.id.price);
-        final TextView quantityTextView = (TextView) view.findViewById(R.id.quantity);
-
-        // Find sale button
-        Button saleButton = (Button) view.findViewById(R.id.sale_button);
-
-        // Find the columns of book attributes that we're interested in
-        int bookTitleColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_PRODUCT_NAME);
-        int priceColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_PRICE);
-        int quantityColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_QUANTITY);
-        int idColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_ID);
+    public void bindView(View view, Context context, Cursor cursor) {
+        ViewHolder holder = (ViewHolder) view.getTag();
 
         // Read the book attributes from the Cursor for the current book
-        String bookTitle = cursor.getString(bookTitleColumnIndex);
-        double bookPrice = cursor.getDouble(priceColumnIndex);
-        final String bookQuantity = cursor.getString(quantityColumnIndex);
-        long id = cursor.getLong(idColumnIndex);
+        holder.id = cursor.getLong(idColumnIndex);
+        cursor.copyStringToBuffer(bookTitleColumnIndex, holder.bookTitleBuffer);
+        long bookPrice = cursor.getLong(priceColumnIndex);
+        int bookQuantity = cursor.getInt(quantityColumnIndex);
 
-        // Update the TextViews with the attributes for the current book
-        bookTitleTextView.setText(bookTitle);
-        priceTextView.setText(formatPrice(bookPrice));
-        quantityTextView.setText(bookQuantity);
+        // Prefer the latest values of the book if it changed after the cursor was loaded
+        RowPatch patch = rowPatches.get(holder.id);
+        if (patch != null) {
+            if (patch.bookTitle != null) {
+                copyToBuffer(patch.bookTitle, holder.bookTitleBuffer);
+            }
+            if (patch.hasPrice) {
+                bookPrice = patch.price;
+            }
+            if (patch.hasQuantity) {
+                bookQuantity = patch.quantity;
+            }
+        }
 
-        // Build Uri for current book
-        final Uri currentBookUri = ContentUris.withAppendedId(InventoryEntry.CONTENT_URI, id);
+        // Show the quantity left after the sales that are not in the database yet
+        holder.quantityInStock = bookQuantity;
+        bookQuantity -= saleBuffer.getUnwrittenSales(holder.id);
 
-        // Set click listener on Sale button
-        saleButton.setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View view) {
-                // Decrease quantity by 1. Using new variable for quantity since bookQuantity
-                // must be declared final in order to be used in OnClickListener
-                String bookQuantityAfterSale = sellBook(Integer.parseInt(bookQuantity), context);
+        // Update the TextViews with the attributes for the current book
+        holder.bookTitleTextView.setText(holder.bookTitleBuffer.data, 0,
+                holder.bookTitleBuffer.sizeCopied);
+        holder.priceTextView.setText(holder.priceChars, 0,
+                formatPrice(bookPrice, holder.priceChars));
+        holder.quantityTextView.setText(holder.quantityChars, 0,
+                formatNumber(bookQuantity, holder.quantityChars));
+    }
 
-                // Set the new quantity on the Quantity Text View.
-                quantityTextView.setText(bookQuantityAfterSale);
+    /**
+     * Helper method to copy a string into a buffer the way {@link Cursor#copyStringToBuffer}
+     * does, growing the buffer only if the string doesn't fit.
+     *
+     * @param text   the string to copy
+     * @param buffer the buffer to copy the string to, from the start
+     */
 
-                // Create a new map of values, where column names are the keys
-                ContentValues values = new ContentValues();
-                values.put(InventoryEntry.COLUMN_QUANTITY, Integer.parseInt(bookQuantityAfterSale));
-
-                //Update the database with the new value
-                int rowsAffected = context.getContentResolver().update(
-                        currentBookUri,
-                        values,
-                        null,
-                        null
-                );
-
-                // Show a toast message depending on whether or not the update was successful.
-                if (rowsAffected == 0) {
-                    // If no rows were affected, then there was an error with the update.
-                    Toast.makeText(context, R.string.update_failed, Toast.LENGTH_SHORT).show();
-                } else if (Integer.parseInt(bookQuantity) != 0){
-                    // Otherwise, the update was successful and we can display a toast, but only
-                    // when the bookQuantity is not equal to 0.
-                    Toast.makeText(context, R.string.sale_successful, Toast.LENGTH_SHORT).show();
-                }
-            }
-        });
+    private static void copyToBuffer(String text, CharArrayBuffer buffer) {
+        int length = text.length();
+        if (buffer.data == null || buffer.data.length < length) {
+            buffer.data = new char[length];
+        }
+        text.getChars(0, length, buffer.data, 0);
+        buffer.sizeCopied = length;
     }
 
     /**
      *  Helper method to format book price as currency especially when user inputs trailing zeros
      *  example: 8.50
      *
-     * @param price of the current book
-     * @return the formatted price.
+     * @param cents price of the current book in cents
+     * @param buffer the chars to write the formatted price to, from the start
+     * @return the length of the formatted price.
      */
 
-    private String formatPrice (double price){
-        DecimalFormat priceFormat = new DecimalFormat("0.00");
-        return priceFormat.format(price);
+    static int formatPrice(long cents, char[] buffer) {
+        int length = formatNumber(cents / 100, buffer);
+        buffer[length++] = '.';
+        buffer[length++] = (char) ('0' + cents / 10 % 10);
+        buffer[length++] = (char) ('0' + cents % 10);
+        return length;
     }
 
     /**
-     * Helper method to decrement book quantity when Sale button is pressed.
+     * Helper method to write a non-negative whole number in decimal digits.
      *
-     * @param quantity current quantity in stock of current book.
-     * @param context the context of the activity where update is happening.
-     * @return the quantity of books after the sale is complete.
+     * @param number the number to format
+     * @param buffer the chars to write the digits to, from the start
+     * @return the number of digits written.
      */
 
-    private String sellBook (int quantity, Context context) {
-        if (quantity == 0){
-            // If quantity is already 0, do not decrement. Show toast informing user that quantity
-            // cannot be less than 0.
-            Toast.makeText(context, R.string.quantity_less_than_zero, Toast.LENGTH_SHORT).show();
-            return String.valueOf(quantity);
+    static int formatNumber(long number, char[] buffer) {
+        // Count the digits first so they can be written from the last to the first
+        int length = 1;
+        for (long rest = number / 10; rest > 0; rest /= 10) {
+            length++;
+        }
+        for (int i = length - 1; i >= 0; i--) {
+            buffer[i] = (char) ('0' + number % 10);
+            number /= 10;
+        }
+        return length;
+    }
+
+    /**
+     * Helper method to show the outcome of a batch of sales made with the Sale buttons.
+     *
+     * @param ids the IDs of the books that were sold.
+     * @param result the bundle returned by {@link InventoryContract#METHOD_SELL_BATCH}, or null if
+     *               the sales failed.
+     */
+
+    private void showSaleResult(long[] ids, Bundle result) {
+        if (result == null) {
+            // If the sales failed, then there was an error with the update.
+            Toast.makeText(context, R.string.update_failed, Toast.LENGTH_SHORT).show();
+            notifyDataSetChanged();
+            return;
+        }
 
-            // Otherwise decrement the quantity by 1.
+        boolean[] sold = result.getBooleanArray(InventoryContract.EXTRA_SOLD);
+        int[] quantities = result.getIntArray(InventoryContract.EXTRA_QUANTITY);
+        boolean allSold = true;
+        for (int i = 0; i < ids.length; i++) {
+            allSold &= sold[i];
+
+            // Show the quantity the provider reported for the book
+            if (quantities[i] != -1) {
+                ContentValues values = new ContentValues();
+                values.put(InventoryEntry.COLUMN_QUANTITY, quantities[i]);
+                patchRow(ids[i], values);
+            }
+        }
+        notifyDataSetChanged();
+
+        if (allSold) {
+            // The sales went through, so we can display a toast.
+            Toast.makeText(context, R.string.sale_successful, Toast.LENGTH_SHORT).show();
         } else {
-            quantity--;
-            return String.valueOf(quantity);
+            // Otherwise some book ran out of stock in the meantime. Show toast informing user
+            // that quantity cannot be less than 0.
+            Toast.makeText(context, R.string.quantity_less_than_zero, Toast.LENGTH_SHORT).show();
         }
     }
 }
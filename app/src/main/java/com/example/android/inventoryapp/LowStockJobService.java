@@ -0,0 +1,219 @@
+package com.example.android.inventoryapp;
+
+import android.annotation.TargetApi;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.os.AsyncTask;
+import android.os.Build;
+import android.support.v4.app.NotificationCompat;
+import android.support.v4.app.NotificationManagerCompat;
+import android.util.Log;
+
+import com.example.android.inventoryapp.data.InventoryContract.InventoryEntry;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background job that periodically looks for books at or below their reorder threshold and posts
+ * a single notification listing them. The scan only reads the books that are low on stock, so it
+ * stays cheap however big the catalog grows. The notification is only posted again when the set
+ * of low-stock books changes, and removed once nothing needs to be reordered.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class LowStockJobService extends JobService {
+
+    private static final String LOG_TAG = LowStockJobService.class.getSimpleName();
+
+    /**
+     * Identifier of the job within the app
+     */
+    private static final int JOB_ID = 1;
+
+    /**
+     * Time between two scans
+     */
+    private static final long SCAN_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+    /**
+     * Identifier of the low-stock notification, reused so there is never more than one
+     */
+    private static final int NOTIFICATION_ID = 1;
+
+    private static final String CHANNEL_ID = "low_stock";
+
+    /**
+     * Maximum number of books listed in the expanded notification
+     */
+    private static final int MAX_LISTED_BOOKS = 5;
+
+    /**
+     * Preferences remembering the books in the notification last posted
+     */
+    private static final String PREFERENCES_NAME = "low_stock";
+    private static final String PREFERENCE_NOTIFIED_BOOKS = "notifiedBooks";
+
+    private static final String[] LOW_STOCK_PROJECTION = {
+            InventoryEntry.COLUMN_ID,
+            InventoryEntry.COLUMN_PRODUCT_NAME,
+            InventoryEntry.COLUMN_QUANTITY
+    };
+
+    /**
+     * Scan that is running, if any
+     */
+    private ScanTask scanTask;
+
+    /**
+     * Schedule the periodic low-stock scan, unless it is already scheduled. The job survives
+     * reboots.
+     */
+    public static void schedule(Context context) {
+        JobScheduler jobScheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        for (JobInfo job : jobScheduler.getAllPendingJobs()) {
+            if (job.getId() == JOB_ID) {
+                return;
+            }
+        }
+
+        JobInfo job = new JobInfo.Builder(JOB_ID,
+                new ComponentName(context, LowStockJobService.class))
+                .setPeriodic(SCAN_INTERVAL_MILLIS)
+                .setPersisted(true)
+                .build();
+        if (jobScheduler.schedule(job) != JobScheduler.RESULT_SUCCESS) {
+            Log.e(LOG_TAG, "Failed to schedule the low-stock scan");
+        }
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        // The job is started on the main thread, so query the provider in the background
+        scanTask = new ScanTask(params);
+        scanTask.execute();
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        if (scanTask != null) {
+            scanTask.cancel(false);
+        }
+        // Try again at the next period
+        return false;
+    }
+
+    /**
+     * Reads the low-stock books and updates the notification.
+     */
+    private class ScanTask extends AsyncTask<Void, Void, Void> {
+
+        private final JobParameters params;
+
+        ScanTask(JobParameters params) {
+            this.params = params;
+        }
+
+        @Override
+        protected Void doInBackground(Void... voids) {
+            Cursor cursor = getContentResolver().query(InventoryEntry.CONTENT_LOW_STOCK_URI,
+                    LOW_STOCK_PROJECTION, null, null, null);
+            if (cursor != null) {
+                try {
+                    if (!isCancelled()) {
+                        updateNotification(cursor);
+                    }
+                } finally {
+                    cursor.close();
+                }
+            }
+            return null;
+        }
+
+        @Override
+        protected void onPostExecute(Void result) {
+            jobFinished(params, false);
+        }
+    }
+
+    /**
+     * Post a notification listing the books in the cursor, or remove it if the cursor is empty.
+     */
+    private void updateNotification(Cursor cursor) {
+        NotificationManagerCompat notificationManager = NotificationManagerCompat.from(this);
+        SharedPreferences preferences = getSharedPreferences(PREFERENCES_NAME, MODE_PRIVATE);
+
+        if (cursor.getCount() == 0) {
+            notificationManager.cancel(NOTIFICATION_ID);
+            preferences.edit().remove(PREFERENCE_NOTIFIED_BOOKS).apply();
+            return;
+        }
+
+        // Collect the IDs of the low-stock books and the lines shown for the first of them
+        int idColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_ID);
+        int bookTitleColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_PRODUCT_NAME);
+        int quantityColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_QUANTITY);
+        StringBuilder bookIds = new StringBuilder();
+        NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle();
+        while (cursor.moveToNext()) {
+            bookIds.append(cursor.getLong(idColumnIndex)).append(',');
+            if (cursor.getPosition() < MAX_LISTED_BOOKS) {
+                style.addLine(getString(R.string.low_stock_notification_line,
+                        cursor.getString(bookTitleColumnIndex),
+                        cursor.getInt(quantityColumnIndex)));
+            }
+        }
+
+        // Don't post the same notification again every period
+        String notifiedBooks = bookIds.toString();
+        if (notifiedBooks.equals(preferences.getString(PREFERENCE_NOTIFIED_BOOKS, null))) {
+            return;
+        }
+
+        int count = cursor.getCount();
+        String title = getResources().getQuantityString(R.plurals.low_stock_notification_title,
+                count, count);
+        if (count > MAX_LISTED_BOOKS) {
+            style.setSummaryText(getString(R.string.low_stock_notification_more,
+                    count - MAX_LISTED_BOOKS));
+        }
+        style.setBigContentTitle(title);
+
+        createNotificationChannel();
+        PendingIntent contentIntent = PendingIntent.getActivity(this, 0,
+                new Intent(this, CatalogActivity.class), PendingIntent.FLAG_UPDATE_CURRENT);
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.stat_sys_warning)
+                .setContentTitle(title)
+                .setContentText(getString(R.string.low_stock_notification_text))
+                .setStyle(style)
+                .setNumber(count)
+                .setContentIntent(contentIntent)
+                .setAutoCancel(true)
+                .setOnlyAlertOnce(true);
+        notificationManager.notify(NOTIFICATION_ID, builder.build());
+        preferences.edit().putString(PREFERENCE_NOTIFIED_BOOKS, notifiedBooks).apply();
+    }
+
+    /**
+     * Create the notification channel for low-stock alerts, on systems that have channels
+     */
+    private void createNotificationChannel() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID,
+                    getString(R.string.low_stock_channel_name),
+                    NotificationManager.IMPORTANCE_DEFAULT);
+            getSystemService(NotificationManager.class).createNotificationChannel(channel);
+        }
+    }
+}
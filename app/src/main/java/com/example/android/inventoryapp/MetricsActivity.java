@@ -0,0 +1,156 @@
+package com.example.android.inventoryapp;
+
+import android.app.AlertDialog;
+import android.content.DialogInterface;
+import android.content.Intent;
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.widget.ListView;
+import android.widget.SimpleAdapter;
+
+import com.example.android.inventoryapp.data.InventoryContract;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Debug screen listing how often each provider operation has been called on each kind of URI
+ * and the 50th, 95th and 99th percentiles of its latency. Rows are ordered by the total time
+ * spent in the calls, so the operations worth optimizing come first. The slow-query log is set up
+ * and shared from here too.
+ */
+public class MetricsActivity extends AppCompatActivity {
+
+    // Keys of the values shown in each row
+    private static final String KEY_TITLE = "title";
+    private static final String KEY_DETAIL = "detail";
+
+    /**
+     * Slow query thresholds offered, in the order of R.array.slow_query_thresholds. Negative
+     * turns the slow-query log off.
+     */
+    private static final long[] SLOW_QUERY_THRESHOLDS_MILLIS = {-1, 0, 16, 50, 100, 500};
+
+    private final List<Map<String, String>> rows = new ArrayList<>();
+
+    private SimpleAdapter adapter;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_metrics);
+        setTitle(R.string.metrics_activity_title);
+
+        ListView metricsListView = (ListView) findViewById(R.id.list);
+        metricsListView.setEmptyView(findViewById(R.id.empty_view));
+        adapter = new SimpleAdapter(this, rows, android.R.layout.simple_list_item_2,
+                new String[]{KEY_TITLE, KEY_DETAIL},
+                new int[]{android.R.id.text1, android.R.id.text2});
+        metricsListView.setAdapter(adapter);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        showMetrics();
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_metrics, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        switch (item.getItemId()) {
+            case R.id.action_refresh:
+                showMetrics();
+                return true;
+            case R.id.action_slow_query_threshold:
+                chooseSlowQueryThreshold();
+                return true;
+            case R.id.action_share_slow_queries:
+                shareSlowQueries();
+                return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    /**
+     * Read the metrics from the provider and show them. Taking the snapshot only reads a few
+     * counters, so it is cheap enough for the main thread.
+     */
+    private void showMetrics() {
+        Bundle result = getContentResolver().call(InventoryContract.BASE_CONTENT_URI,
+                InventoryContract.METHOD_GET_METRICS, null, null);
+        ArrayList<Bundle> metrics = result == null ? null
+                : result.<Bundle>getParcelableArrayList(InventoryContract.EXTRA_METRICS);
+
+        rows.clear();
+        if (metrics != null) {
+            Collections.sort(metrics, new Comparator<Bundle>() {
+                @Override
+                public int compare(Bundle first, Bundle second) {
+                    long firstTotal = first.getLong(InventoryContract.METRIC_TOTAL_MICROS);
+                    long secondTotal = second.getLong(InventoryContract.METRIC_TOTAL_MICROS);
+                    return firstTotal > secondTotal ? -1 : firstTotal == secondTotal ? 0 : 1;
+                }
+            });
+            for (Bundle metric : metrics) {
+                Map<String, String> row = new HashMap<>();
+                row.put(KEY_TITLE, getString(R.string.metrics_title,
+                        metric.getString(InventoryContract.METRIC_OPERATION),
+                        metric.getString(InventoryContract.METRIC_URI)));
+                row.put(KEY_DETAIL, getString(R.string.metrics_detail,
+                        metric.getLong(InventoryContract.METRIC_COUNT),
+                        metric.getLong(InventoryContract.METRIC_ERRORS),
+                        toMillis(metric.getLong(InventoryContract.METRIC_P50_MICROS)),
+                        toMillis(metric.getLong(InventoryContract.METRIC_P95_MICROS)),
+                        toMillis(metric.getLong(InventoryContract.METRIC_P99_MICROS)),
+                        toMillis(metric.getLong(InventoryContract.METRIC_MAX_MICROS))));
+                rows.add(row);
+            }
+        }
+        adapter.notifyDataSetChanged();
+    }
+
+    /**
+     * Let the user pick the time from which queries are recorded in the slow-query log
+     */
+    private void chooseSlowQueryThreshold() {
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.action_slow_query_threshold)
+                .setItems(R.array.slow_query_thresholds, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        getContentResolver().call(InventoryContract.BASE_CONTENT_URI,
+                                InventoryContract.METHOD_SET_SLOW_QUERY_THRESHOLD,
+                                String.valueOf(SLOW_QUERY_THRESHOLDS_MILLIS[which]), null);
+                    }
+                })
+                .show();
+    }
+
+    /**
+     * Share the slow-query log as a text file
+     */
+    private void shareSlowQueries() {
+        Intent intent = new Intent(Intent.ACTION_SEND);
+        intent.setType(InventoryContract.SLOW_QUERIES_TYPE);
+        intent.putExtra(Intent.EXTRA_STREAM, InventoryContract.CONTENT_SLOW_QUERIES_URI);
+        intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        startActivity(Intent.createChooser(intent,
+                getString(R.string.action_share_slow_queries)));
+    }
+
+    private static double toMillis(long micros) {
+        return micros / 1000.0;
+    }
+}
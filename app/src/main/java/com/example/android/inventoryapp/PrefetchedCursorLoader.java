@@ -0,0 +1,176 @@
+package com.example.android.inventoryapp;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.CursorLoader;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.Trace;
+import android.util.Log;
+
+/**
+ * Cursor loader whose first load takes the cursor of a query started before the loader, so the
+ * query can run while the activity is still inflating its views instead of after it has
+ * started. Later loads query as a {@link CursorLoader} does.
+ */
+class PrefetchedCursorLoader extends CursorLoader {
+
+    private static final String LOG_TAG = PrefetchedCursorLoader.class.getSimpleName();
+
+    /**
+     * Query started ahead of the first load, or null once it has been taken
+     */
+    private volatile Prefetch prefetch;
+
+    /**
+     * Reloads when the prefetched cursor changes. Created here because a content observer needs
+     * the main thread, which the loads don't run on.
+     */
+    private final ForceLoadContentObserver prefetchObserver = new ForceLoadContentObserver();
+
+    /**
+     * @param prefetch the query started for the first load, on the same URI and projection
+     */
+    PrefetchedCursorLoader(Context context, Uri uri, String[] projection, Prefetch prefetch) {
+        super(context, uri, projection, null, null, null);
+        this.prefetch = prefetch;
+    }
+
+    @Override
+    public Cursor loadInBackground() {
+        Prefetch first = prefetch;
+        prefetch = null;
+        Cursor cursor = first == null ? null : first.take();
+        if (cursor == null) {
+            return super.loadInBackground();
+        }
+
+        // Watch the cursor as CursorLoader does with the cursors it queries itself
+        cursor.registerContentObserver(prefetchObserver);
+        return cursor;
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        Prefetch first = prefetch;
+        prefetch = null;
+        if (first != null) {
+            first.discard();
+        }
+    }
+
+    /**
+     * A query run on a background thread until a loader takes its cursor
+     */
+    static final class Prefetch implements Runnable {
+
+        private final ContentResolver resolver;
+        private final Uri uri;
+        private final String[] projection;
+
+        // Guarded by this
+        private Cursor cursor;
+        private boolean done;
+        private boolean discarded;
+
+        /**
+         * Set if the data of the cursor changed before a loader took it
+         */
+        private volatile boolean changed;
+
+        private final ContentObserver changeObserver = new ContentObserver(null) {
+            @Override
+            public void onChange(boolean selfChange) {
+                changed = true;
+            }
+        };
+
+        private Prefetch(ContentResolver resolver, Uri uri, String[] projection) {
+            this.resolver = resolver;
+            this.uri = uri;
+            this.projection = projection;
+        }
+
+        /**
+         * Start querying the given URI in the background
+         */
+        static Prefetch start(ContentResolver resolver, Uri uri, String[] projection) {
+            Prefetch prefetch = new Prefetch(resolver, uri, projection);
+            AsyncTask.THREAD_POOL_EXECUTOR.execute(prefetch);
+            return prefetch;
+        }
+
+        @Override
+        public void run() {
+            Cursor result = null;
+            Trace.beginSection("PrefetchedCursorLoader.prefetch");
+            try {
+                result = resolver.query(uri, projection, null, null, null);
+                if (result != null) {
+                    // Fill the cursor window here rather than on the loader thread
+                    result.getCount();
+                }
+            } catch (RuntimeException exception) {
+                // The loader queries again and reports the error
+                Log.w(LOG_TAG, "Prefetch of " + uri + " failed", exception);
+            } finally {
+                Trace.endSection();
+            }
+
+            synchronized (this) {
+                if (result != null) {
+                    if (discarded) {
+                        result.close();
+                    } else {
+                        result.registerContentObserver(changeObserver);
+                        cursor = result;
+                    }
+                }
+                done = true;
+                notifyAll();
+            }
+        }
+
+        /**
+         * Wait for the query and return its cursor. Return null if the query failed or its data
+         * changed meanwhile, in which case the loader has to query again.
+         */
+        synchronized Cursor take() {
+            while (!done) {
+                try {
+                    wait();
+                } catch (InterruptedException exception) {
+                    // Nobody takes the cursor any more, so close it now if the query delivered it
+                    // just before the interrupt, or else once the query completes
+                    discard();
+                    return null;
+                }
+            }
+            Cursor result = cursor;
+            cursor = null;
+            if (result == null) {
+                return null;
+            }
+            result.unregisterContentObserver(changeObserver);
+            if (changed) {
+                result.close();
+                return null;
+            }
+            return result;
+        }
+
+        /**
+         * Close the cursor of a query no loader is going to take, now or once it completes
+         */
+        synchronized void discard() {
+            discarded = true;
+            if (cursor != null) {
+                cursor.close();
+                cursor = null;
+            }
+        }
+    }
+}
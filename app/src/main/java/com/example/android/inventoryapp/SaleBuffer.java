@@ -0,0 +1,189 @@
+package com.example.android.inventoryapp;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.ResultReceiver;
+import android.util.LongSparseArray;
+
+import com.example.android.inventoryapp.data.InventoryContract;
+import com.example.android.inventoryapp.data.InventoryWriter;
+
+/**
+ * Collects sales made with the Sale button and writes them in batches. Every tap on the Sale
+ * button of a book is counted here and shown right away. The counts are merged per book and
+ * written with one {@link InventoryContract#METHOD_SELL_BATCH} call once
+ * {@link #FLUSH_DELAY_MILLIS} has passed since the first unwritten sale, or as soon as
+ * {@link #flush()} or {@link #flushBeforeLeaving()} is called.
+ * <p>
+ * A sale is only accepted while the quantity in stock minus the unwritten sales is above 0, and
+ * the provider only sells copies that are in stock, so the stock never goes below 0.
+ */
+class SaleBuffer {
+
+    /**
+     * Time to wait after the first unwritten sale before writing all of them
+     */
+    static final long FLUSH_DELAY_MILLIS = 500;
+
+    /**
+     * Receives changes to the unwritten sales on the main thread.
+     */
+    interface Listener {
+
+        /**
+         * Called when a sale was added and the quantities shown need to be updated
+         */
+        void onUnwrittenSalesChanged();
+
+        /**
+         * Called when a batch of sales has been written.
+         *
+         * @param ids    the IDs of the books that were sold
+         * @param result the bundle returned by {@link InventoryContract#METHOD_SELL_BATCH}, or
+         *               null if the write failed
+         */
+        void onSalesWritten(long[] ids, Bundle result);
+    }
+
+    private final Context context;
+
+    private final InventoryWriter inventoryWriter;
+
+    private final Listener listener;
+
+    private final Handler handler = new Handler();
+
+    /**
+     * Copies sold of each book that are waiting for the next batch, keyed by book ID
+     */
+    private final LongSparseArray<Integer> pendingSales = new LongSparseArray<>();
+
+    /**
+     * Copies sold of each book that are being written, keyed by book ID
+     */
+    private final LongSparseArray<Integer> writingSales = new LongSparseArray<>();
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    SaleBuffer(Context context, Listener listener) {
+        this.context = context;
+        inventoryWriter = new InventoryWriter(context);
+        this.listener = listener;
+    }
+
+    /**
+     * Return the number of copies of a book that were sold but are not in the database yet
+     */
+    int getUnwrittenSales(long id) {
+        return pendingSales.get(id, 0) + writingSales.get(id, 0);
+    }
+
+    /**
+     * Sell one copy of a book.
+     *
+     * @param id              the ID of the book
+     * @param quantityInStock the quantity of the book last read from the database
+     * @return false if no copy is left to sell
+     */
+    boolean sell(long id, int quantityInStock) {
+        if (quantityInStock - getUnwrittenSales(id) <= 0) {
+            return false;
+        }
+
+        // Start the batch window with the first sale, and let later sales join it
+        if (pendingSales.size() == 0) {
+            handler.postDelayed(flushRunnable, FLUSH_DELAY_MILLIS);
+        }
+        pendingSales.put(id, pendingSales.get(id, 0) + 1);
+
+        listener.onUnwrittenSalesChanged();
+        return true;
+    }
+
+    /**
+     * Write all pending sales now in a single transaction. The write is queued on the writer
+     * thread and this returns right away, so the sales are only in the database once
+     * {@link Listener#onSalesWritten(long[], Bundle)} is called.
+     */
+    void flush() {
+        final Bundle batch = takePendingSales();
+        if (batch == null) {
+            return;
+        }
+        inventoryWriter.call(InventoryContract.METHOD_SELL_BATCH, null, batch,
+                new InventoryWriter.Callback<Bundle>() {
+                    @Override
+                    public void onComplete(Bundle result) {
+                        onBatchWritten(batch, result);
+                    }
+                });
+    }
+
+    /**
+     * Write all pending sales now in a single transaction from the {@link SaleService}. Used when
+     * the activity is paused, after which the process may be killed as a background one before a
+     * queued write would run; the running service keeps it alive until the sales are written.
+     * Like {@link #flush()}, this returns right away.
+     */
+    void flushBeforeLeaving() {
+        final Bundle batch = takePendingSales();
+        if (batch == null) {
+            return;
+        }
+        SaleService.start(context, batch, new ResultReceiver(handler) {
+            @Override
+            protected void onReceiveResult(int resultCode, Bundle result) {
+                onBatchWritten(batch, result);
+            }
+        });
+    }
+
+    /**
+     * Move the pending sales to the sales being written and return them as the extras of a
+     * {@link InventoryContract#METHOD_SELL_BATCH} call, or null if there are none
+     */
+    private Bundle takePendingSales() {
+        handler.removeCallbacks(flushRunnable);
+        int books = pendingSales.size();
+        if (books == 0) {
+            return null;
+        }
+
+        long[] ids = new long[books];
+        int[] counts = new int[books];
+        for (int i = 0; i < books; i++) {
+            ids[i] = pendingSales.keyAt(i);
+            counts[i] = pendingSales.valueAt(i);
+            writingSales.put(ids[i], writingSales.get(ids[i], 0) + counts[i]);
+        }
+        pendingSales.clear();
+
+        Bundle batch = new Bundle();
+        batch.putLongArray(InventoryContract.EXTRA_IDS, ids);
+        batch.putIntArray(InventoryContract.EXTRA_COUNTS, counts);
+        return batch;
+    }
+
+    /**
+     * Forget the sales of a batch once its write is over, whether it went through or not
+     */
+    private void onBatchWritten(Bundle batch, Bundle result) {
+        long[] ids = batch.getLongArray(InventoryContract.EXTRA_IDS);
+        int[] counts = batch.getIntArray(InventoryContract.EXTRA_COUNTS);
+        for (int i = 0; i < ids.length; i++) {
+            int remaining = writingSales.get(ids[i], 0) - counts[i];
+            if (remaining > 0) {
+                writingSales.put(ids[i], remaining);
+            } else {
+                writingSales.remove(ids[i]);
+            }
+        }
+        listener.onSalesWritten(ids, result);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.android.inventoryapp;
+
+import android.app.IntentService;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.ResultReceiver;
+import android.util.Log;
+
+import com.example.android.inventoryapp.data.InventoryContract;
+import com.example.android.inventoryapp.data.InventoryContract.InventoryEntry;
+
+/**
+ * Writes the last batch of sales made before the catalog is left. While a started service runs,
+ * the system keeps its process alive rather than killing it as a background one, so the sales
+ * reach the database even if the user leaves the app right after the last tap.
+ * <p>
+ * The intent isn't redelivered: the process could die after the batch was committed but before
+ * the intent was finished, and selling the same copies twice is worse than losing the sales of
+ * a process the system killed anyway.
+ */
+public class SaleService extends IntentService {
+
+    private static final String LOG_TAG = SaleService.class.getSimpleName();
+
+    /**
+     * Extra holding the {@link ResultReceiver} told about the result of the batch
+     */
+    private static final String EXTRA_RESULT_RECEIVER = "resultReceiver";
+
+    public SaleService() {
+        super("SaleService");
+    }
+
+    /**
+     * Write a batch of sales.
+     *
+     * @param batch    the extras of a {@link InventoryContract#METHOD_SELL_BATCH} call
+     * @param receiver receives the bundle returned by the call, or null if the write failed
+     */
+    static void start(Context context, Bundle batch, ResultReceiver receiver) {
+        context.startService(new Intent(context, SaleService.class)
+                .putExtras(batch)
+                .putExtra(EXTRA_RESULT_RECEIVER, receiver));
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        if (intent == null) {
+            return;
+        }
+
+        Bundle batch = intent.getExtras();
+        ResultReceiver receiver = batch.getParcelable(EXTRA_RESULT_RECEIVER);
+        batch.remove(EXTRA_RESULT_RECEIVER);
+
+        Bundle result;
+        try {
+            result = getContentResolver().call(InventoryEntry.CONTENT_URI,
+                    InventoryContract.METHOD_SELL_BATCH, null, batch);
+        } catch (RuntimeException exception) {
+            Log.e(LOG_TAG, "Failed to write the sales", exception);
+            result = null;
+        }
+        receiver.send(0, result);
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.android.inventoryapp.data;
+
+import android.content.Context;
+import android.database.AbstractCursor;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.example.android.inventoryapp.data.InventoryContract.InventoryEntry;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * File holding the first books of the catalog, so the catalog can show them as it starts,
+ * before the database has answered. Each book takes a fixed number of bytes, so the file is
+ * memory-mapped and read in place, with nothing to parse.
+ * <p>
+ * The layout is a header of three ints: {@link #MAGIC}, {@link #FORMAT_VERSION} and the number of
+ * books. Each book follows as its ID and price in cents as longs, its quantity as an int, the
+ * length of its title as a short, and the title in {@link #TITLE_CHARS} UTF-16 chars, cut off
+ * if longer. The provider writes the file in the background after the books change.
+ */
+public final class CatalogSnapshot {
+
+    private static final String LOG_TAG = CatalogSnapshot.class.getSimpleName();
+
+    /**
+     * Number of books kept, a few screenfuls
+     */
+    static final int ROWS = 50;
+
+    private static final String FILE_NAME = "catalog_snapshot.bin";
+
+    // Header
+    private static final int MAGIC = 0x49435331;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 3 * 4;
+
+    // Layout of a book
+    private static final int TITLE_CHARS = 62;
+    private static final int ID_OFFSET = 0;
+    private static final int PRICE_OFFSET = 8;
+    private static final int QUANTITY_OFFSET = 16;
+    private static final int TITLE_LENGTH_OFFSET = 20;
+    private static final int TITLE_OFFSET = 22;
+    private static final int ROW_BYTES = TITLE_OFFSET + 2 * TITLE_CHARS;
+
+    /**
+     * Columns of the cursor over the snapshot
+     */
+    private static final String[] COLUMNS = {
+            InventoryEntry.COLUMN_ID,
+            InventoryEntry.COLUMN_PRODUCT_NAME,
+            InventoryEntry.COLUMN_PRICE,
+            InventoryEntry.COLUMN_QUANTITY
+    };
+
+    private CatalogSnapshot() {
+    }
+
+    /**
+     * Map the snapshot and return a cursor over its books, with the ID, title, price and
+     * quantity columns. Return null if there is no snapshot or it can't be read. Mapping the
+     * file doesn't read it, the pages of a book are read as it is shown.
+     */
+    public static Cursor open(Context context) {
+        File file = getFile(context);
+        if (!file.exists()) {
+            return null;
+        }
+        RandomAccessFile input = null;
+        try {
+            input = new RandomAccessFile(file, "r");
+            FileChannel channel = input.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC
+                    || buffer.getInt(4) != FORMAT_VERSION || buffer.getInt(8) < 0
+                    || buffer.limit() != HEADER_BYTES + buffer.getInt(8) * ROW_BYTES) {
+                Log.w(LOG_TAG, "Ignoring unreadable " + file);
+                return null;
+            }
+            // The mapping stays valid once the file is closed
+            return new SnapshotCursor(buffer, buffer.getInt(8));
+        } catch (IOException exception) {
+            Log.w(LOG_TAG, "Failed to map " + file, exception);
+            return null;
+        } finally {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException exception) {
+                    // Nothing left to do with it
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the first books of the catalog to the snapshot. The new snapshot replaces the old
+     * one in a single rename, so a reader maps either one or the other, never half of one.
+     */
+    static void write(Context context, SQLiteDatabase db) throws IOException {
+        ByteBuffer buffer;
+        Cursor cursor = db.query(InventoryEntry.TABLE_NAME, COLUMNS, null, null, null, null,
+                InventoryEntry._ID + " ASC", String.valueOf(ROWS));
+        try {
+            buffer = ByteBuffer.allocate(HEADER_BYTES + cursor.getCount() * ROW_BYTES);
+            buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(cursor.getCount());
+            while (cursor.moveToNext()) {
+                int row = HEADER_BYTES + cursor.getPosition() * ROW_BYTES;
+                String title = cursor.getString(1);
+                int titleLength = Math.min(title.length(), TITLE_CHARS);
+                buffer.putLong(row + ID_OFFSET, cursor.getLong(0));
+                buffer.putLong(row + PRICE_OFFSET, cursor.getLong(2));
+                buffer.putInt(row + QUANTITY_OFFSET, cursor.getInt(3));
+                buffer.putShort(row + TITLE_LENGTH_OFFSET, (short) titleLength);
+                for (int i = 0; i < titleLength; i++) {
+                    buffer.putChar(row + TITLE_OFFSET + 2 * i, title.charAt(i));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        File file = getFile(context);
+        File newFile = new File(file.getPath() + ".new");
+        FileOutputStream output = new FileOutputStream(newFile);
+        try {
+            output.write(buffer.array());
+            output.getFD().sync();
+        } finally {
+            output.close();
+        }
+        if (!newFile.renameTo(file)) {
+            throw new IOException("Failed to replace " + file);
+        }
+    }
+
+    static boolean exists(Context context) {
+        return getFile(context).exists();
+    }
+
+    static File getFile(Context context) {
+        return new File(context.getFilesDir(), FILE_NAME);
+    }
+
+    /**
+     * Read-only cursor over the books of a mapped snapshot
+     */
+    private static final class SnapshotCursor extends AbstractCursor {
+
+        private final ByteBuffer buffer;
+        private final int count;
+
+        SnapshotCursor(ByteBuffer buffer, int count) {
+            this.buffer = buffer;
+            this.count = count;
+        }
+
+        @Override
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public String[] getColumnNames() {
+            return COLUMNS;
+        }
+
+        @Override
+        public String getString(int column) {
+            if (column != 1) {
+                return String.valueOf(getLong(column));
+            }
+            int row = getRowOffset();
+            char[] title = new char[buffer.getShort(row + TITLE_LENGTH_OFFSET)];
+            for (int i = 0; i < title.length; i++) {
+                title[i] = buffer.getChar(row + TITLE_OFFSET + 2 * i);
+            }
+            return new String(title);
+        }
+
+        @Override
+        public short getShort(int column) {
+            return (short) getLong(column);
+        }
+
+        @Override
+        public int getInt(int column) {
+            return (int) getLong(column);
+        }
+
+        @Override
+        public long getLong(int column) {
+            int row = getRowOffset();
+            switch (column) {
+                case 0:
+                    return buffer.getLong(row + ID_OFFSET);
+                case 2:
+                    return buffer.getLong(row + PRICE_OFFSET);
+                case 3:
+                    return buffer.getInt(row + QUANTITY_OFFSET);
+                default:
+                    throw new IllegalArgumentException("Column " + column + " is not a number");
+            }
+        }
+
+        @Override
+        public float getFloat(int column) {
+            return getLong(column);
+        }
+
+        @Override
+        public double getDouble(int column) {
+            return getLong(column);
+        }
+
+        @Override
+        public boolean isNull(int column) {
+            return false;
+        }
+
+        private int getRowOffset() {
+            return HEADER_BYTES + getPosition() * ROW_BYTES;
+        }
+    }
+}
@@ -1,8 +1,14 @@
 package com.example.android.inventoryapp.data;
 
 import android.content.ContentResolver;
+import android.content.ContentUris;
 import android.net.Uri;
 import android.provider.BaseColumns;
+import android.text.TextUtils;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 
 public class InventoryContract {
 
@@ -30,6 +36,258 @@ public class InventoryContract {
      */
     public static final String PATH_INVENTORY = "inventory";
 
+    /**
+     * Possible path for notifications about changes to single books
+     */
+    public static final String PATH_INVENTORY_ROWS = "inventory_rows";
+
+    /**
+     * Query parameter of a row change notification listing the columns that changed, separated
+     * by commas
+     */
+    public static final String QUERY_PARAMETER_COLUMNS = "columns";
+
+    /**
+     * Path appended to the inventory content URI to search the inventory
+     */
+    public static final String PATH_SEARCH = "search";
+
+    /**
+     * Path appended to the inventory content URI to read the running totals of the inventory
+     */
+    public static final String PATH_SUMMARY = "summary";
+
+    /**
+     * Path appended to the inventory content URI to list the books that are low on stock
+     */
+    public static final String PATH_LOW_STOCK = "low_stock";
+
+    /**
+     * Possible path for the suppliers, also appended to the summary content URI to read the
+     * running totals of each supplier
+     */
+    public static final String PATH_SUPPLIERS = "suppliers";
+
+    /**
+     * Query parameter holding the text to search for. Each word matches titles and supplier
+     * names containing a word that starts with it.
+     */
+    public static final String QUERY_PARAMETER_QUERY = "q";
+
+    /**
+     * Query parameter limiting an inventory list query to a page of at most this many books.
+     * Paged queries are ordered by ID, or by the {@link #QUERY_PARAMETER_SORT} order and then
+     * by ID.
+     */
+    public static final String QUERY_PARAMETER_LIMIT = "limit";
+
+    /**
+     * Query parameter holding the ID of the last book of the previous page. A paged query with
+     * this parameter only returns books that come after it, so each page is found with an index
+     * seek no matter how deep into the catalog it is.
+     */
+    public static final String QUERY_PARAMETER_AFTER = "after";
+
+    /**
+     * Query parameter holding the sort column value of the last book of the previous page, along
+     * with {@link #QUERY_PARAMETER_AFTER}, when the pages are sorted
+     */
+    public static final String QUERY_PARAMETER_AFTER_KEY = "afterKey";
+
+    /**
+     * Query parameter ordering an inventory list query by title, price, quantity or last
+     * change, one of the SORT_ values. Without it books are ordered by ID, which is the order
+     * they were added in.
+     */
+    public static final String QUERY_PARAMETER_SORT = "sort";
+
+    /**
+     * Orders of {@link #QUERY_PARAMETER_SORT}. Books that changed last come first in
+     * {@link #SORT_RECENT}, the other orders are ascending. {@link #SORT_TITLE} orders by
+     * {@link InventoryEntry#COLUMN_TITLE_SORT_KEY}, so case, accents and leading articles are
+     * ignored.
+     */
+    public static final String SORT_TITLE = "title";
+    public static final String SORT_PRICE = "price";
+    public static final String SORT_QUANTITY = "quantity";
+    public static final String SORT_RECENT = "recent";
+
+    /**
+     * Query parameter limiting an inventory list query to the books of the supplier with this ID
+     */
+    public static final String QUERY_PARAMETER_SUPPLIER = "supplier";
+
+    /**
+     * Query parameter limiting an inventory list query to the books in stock,
+     * {@link #STOCK_IN}, or out of stock, {@link #STOCK_OUT}
+     */
+    public static final String QUERY_PARAMETER_STOCK = "stock";
+    public static final String STOCK_IN = "in";
+    public static final String STOCK_OUT = "out";
+
+    /**
+     * Query parameters limiting an inventory list query to the books priced at least, or at
+     * most, this many cents
+     */
+    public static final String QUERY_PARAMETER_MIN_PRICE = "minPrice";
+    public static final String QUERY_PARAMETER_MAX_PRICE = "maxPrice";
+
+    /**
+     * Possible path for the progress of file imports
+     */
+    public static final String PATH_IMPORTS = "imports";
+
+    /**
+     * Query parameter of a bulk insert URI holding the ID of the import the books come from
+     */
+    public static final String QUERY_PARAMETER_IMPORT = "import";
+
+    /**
+     * Query parameter of a bulk insert URI holding the number of records of the import file done
+     * once the books are written
+     */
+    public static final String QUERY_PARAMETER_RECORDS_DONE = "recordsDone";
+
+    /**
+     * Possible path for exporting the whole inventory as a file
+     */
+    public static final String PATH_EXPORT = "export";
+
+    /**
+     * Query parameter of the export URI holding the file format, {@link #FORMAT_CSV} (the
+     * default) or {@link #FORMAT_JSON}
+     */
+    public static final String QUERY_PARAMETER_FORMAT = "format";
+
+    /**
+     * CSV with a header line, in the format read by the import
+     */
+    public static final String FORMAT_CSV = "csv";
+
+    /**
+     * JSON lines, one object per book
+     */
+    public static final String FORMAT_JSON = "json";
+
+    /**
+     * Character set of the exported files
+     */
+    public static final String EXPORT_CHARSET = "UTF-8";
+
+    /**
+     * Provider method (passed to {@link android.content.ContentResolver#call}) that sells copies
+     * of a single book. The book ID is passed as the method argument and the number of copies as
+     * {@link #EXTRA_COUNT} (1 if absent). The stock is decremented in one statement and only if
+     * enough copies are in stock. The result holds {@link #EXTRA_SOLD} and {@link #EXTRA_QUANTITY}.
+     */
+    public static final String METHOD_SELL = "sell";
+
+    /**
+     * Provider method (passed to {@link android.content.ContentResolver#call}) that sells copies
+     * of several books in one transaction. The book IDs are passed as {@link #EXTRA_IDS} and the
+     * number of copies of each as {@link #EXTRA_COUNTS}. Each book is sold as with
+     * {@link #METHOD_SELL}. The result holds arrays in the same order as the IDs under
+     * {@link #EXTRA_SOLD} and {@link #EXTRA_QUANTITY}.
+     */
+    public static final String METHOD_SELL_BATCH = "sellBatch";
+
+    /**
+     * Number of copies to sell with {@link #METHOD_SELL}
+     */
+    public static final String EXTRA_COUNT = "count";
+
+    /**
+     * IDs of the books to sell with {@link #METHOD_SELL_BATCH}
+     */
+    public static final String EXTRA_IDS = "ids";
+
+    /**
+     * Number of copies of each book to sell with {@link #METHOD_SELL_BATCH}
+     */
+    public static final String EXTRA_COUNTS = "counts";
+
+    /**
+     * Whether the sale went through, returned by {@link #METHOD_SELL}
+     */
+    public static final String EXTRA_SOLD = "sold";
+
+    /**
+     * Quantity in stock after the call, or -1 if the book does not exist
+     */
+    public static final String EXTRA_QUANTITY = "quantity";
+
+    /**
+     * Provider method (passed to {@link android.content.ContentResolver#call}) that returns how
+     * often each provider operation has been called on each kind of URI since the process
+     * started, and how long the calls took. The result holds a list of bundles under
+     * {@link #EXTRA_METRICS}, one per operation and URI pattern that has been called, with the
+     * keys {@link #METRIC_OPERATION}, {@link #METRIC_URI}, {@link #METRIC_COUNT},
+     * {@link #METRIC_ERRORS}, {@link #METRIC_TOTAL_MICROS}, {@link #METRIC_MAX_MICROS} and the
+     * latency percentiles {@link #METRIC_P50_MICROS}, {@link #METRIC_P95_MICROS} and
+     * {@link #METRIC_P99_MICROS}.
+     */
+    public static final String METHOD_GET_METRICS = "metrics";
+
+    /**
+     * List of bundles returned by {@link #METHOD_GET_METRICS}
+     */
+    public static final String EXTRA_METRICS = "metrics";
+
+    /**
+     * Name of the provider operation, such as "query" or "insert"
+     */
+    public static final String METRIC_OPERATION = "operation";
+
+    /**
+     * URI pattern the calls were made on, such as "inventory/#"
+     */
+    public static final String METRIC_URI = "uri";
+
+    /**
+     * Number of calls, and the number of them that threw an exception
+     */
+    public static final String METRIC_COUNT = "count";
+    public static final String METRIC_ERRORS = "errors";
+
+    /**
+     * Time spent in all the calls and in the longest call, in microseconds
+     */
+    public static final String METRIC_TOTAL_MICROS = "totalMicros";
+    public static final String METRIC_MAX_MICROS = "maxMicros";
+
+    /**
+     * Latency percentiles in microseconds, each rounded up by at most a quarter
+     */
+    public static final String METRIC_P50_MICROS = "p50Micros";
+    public static final String METRIC_P95_MICROS = "p95Micros";
+    public static final String METRIC_P99_MICROS = "p99Micros";
+
+    /**
+     * Provider method (passed to {@link android.content.ContentResolver#call}) that sets the
+     * time from which queries are recorded in the slow-query log. The threshold in milliseconds
+     * is passed as the method argument, negative to turn the log off. The threshold is kept
+     * across restarts.
+     */
+    public static final String METHOD_SET_SLOW_QUERY_THRESHOLD = "setSlowQueryThreshold";
+
+    /**
+     * Possible path for the slow-query log
+     */
+    public static final String PATH_SLOW_QUERIES = "slow_queries";
+
+    /**
+     * The content URI to read the slow-query log as a text file, opened with
+     * {@link ContentResolver#openInputStream}. Each slow query is listed with the time it took,
+     * its arguments and its EXPLAIN QUERY PLAN output.
+     */
+    public static final Uri CONTENT_SLOW_QUERIES_URI =
+            Uri.withAppendedPath(BASE_CONTENT_URI, PATH_SLOW_QUERIES);
+
+    /**
+     * The MIME type of the {@link #CONTENT_SLOW_QUERIES_URI}
+     */
+    public static final String SLOW_QUERIES_TYPE = "text/plain";
+
     public static abstract class InventoryEntry implements BaseColumns {
 
         /**
@@ -37,6 +295,37 @@ public class InventoryContract {
          */
         public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_INVENTORY);
 
+        /**
+         * The URI under which changes to single books are announced, as
+         * "inventory_rows/&lt;id&gt;?columns=quantity,price". Adding or removing books, or changing
+         * several books at once, is announced on {@link InventoryContract#BASE_CONTENT_URI}
+         * instead. Keeping single book changes outside {@link #CONTENT_URI} means a sale doesn't
+         * reload every cursor over the whole catalog. Observe this URI with descendants to patch
+         * changed books in place.
+         */
+        public static final Uri CONTENT_ROWS_URI =
+                Uri.withAppendedPath(BASE_CONTENT_URI, PATH_INVENTORY_ROWS);
+
+        /**
+         * The content URI to search the inventory data in the provider
+         */
+        public static final Uri CONTENT_SEARCH_URI = Uri.withAppendedPath(CONTENT_URI, PATH_SEARCH);
+
+        /**
+         * The content URI to list the books whose quantity is at or below their reorder
+         * threshold, ordered by title. Only the low-stock books are read, so the cost of the
+         * query doesn't grow with the size of the catalog.
+         */
+        public static final Uri CONTENT_LOW_STOCK_URI =
+                Uri.withAppendedPath(CONTENT_URI, PATH_LOW_STOCK);
+
+        /**
+         * The content URI to export the whole inventory as a file, opened with
+         * {@link ContentResolver#openInputStream}. The file is written while it is read, so
+         * the export starts at once and doesn't need the whole catalog in memory.
+         */
+        public static final Uri CONTENT_EXPORT_URI = Uri.withAppendedPath(CONTENT_URI, PATH_EXPORT);
+
         /**
          * The MIME type of the {@link #CONTENT_URI} for a list of books
          */
@@ -49,15 +338,301 @@ public class InventoryContract {
         public static final String CONTENT_ITEM_TYPE =
                 ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_INVENTORY;
 
+        /**
+         * The MIME types of the {@link #CONTENT_EXPORT_URI} in CSV and in JSON lines
+         */
+        public static final String EXPORT_CSV_TYPE = "text/csv";
+        public static final String EXPORT_JSON_TYPE = "application/x-ndjson";
+
+        /**
+         * Build the content URI for one page of the inventory.
+         *
+         * @param pageSize the maximum number of books on the page
+         * @param afterId  the ID of the last book on the previous page, or -1 for the first page
+         */
+        public static Uri buildPageUri(int pageSize, long afterId) {
+            return appendPage(CONTENT_URI.buildUpon(), pageSize, afterId).build();
+        }
+
+        /**
+         * Build the content URI for one page of a list of books, which may be sorted and
+         * filtered.
+         *
+         * @param listUri  {@link #CONTENT_URI} or {@link #CONTENT_SEARCH_URI} with the sort,
+         *                 filter and search query parameters of the list
+         * @param pageSize the maximum number of books on the page
+         * @param afterKey the value of the sort column for the last book on the previous page,
+         *                 or null for the first page or when the list isn't sorted
+         * @param afterId  the ID of the last book on the previous page, or -1 for the first page
+         */
+        public static Uri buildPageUri(Uri listUri, int pageSize, String afterKey, long afterId) {
+            Uri.Builder builder = appendPage(listUri.buildUpon(), pageSize, afterId);
+            if (afterKey != null) {
+                builder.appendQueryParameter(QUERY_PARAMETER_AFTER_KEY, afterKey);
+            }
+            return builder.build();
+        }
+
+        /**
+         * Return the column books are ordered by in the given order, one of the SORT_ values, or
+         * the ID column if the order is null
+         */
+        public static String getSortColumn(String sort) {
+            if (sort == null) {
+                return _ID;
+            }
+            switch (sort) {
+                case SORT_TITLE:
+                    return COLUMN_TITLE_SORT_KEY;
+                case SORT_PRICE:
+                    return COLUMN_PRICE;
+                case SORT_QUANTITY:
+                    return COLUMN_QUANTITY;
+                case SORT_RECENT:
+                    return COLUMN_LAST_MODIFIED;
+                default:
+                    throw new IllegalArgumentException("Unknown sort order " + sort);
+            }
+        }
+
+        /**
+         * Build the content URI for one page of the books matching a search query.
+         *
+         * @param query    the text to search for
+         * @param pageSize the maximum number of books on the page
+         * @param afterId  the ID of the last book on the previous page, or -1 for the first page
+         */
+        public static Uri buildSearchPageUri(String query, int pageSize, long afterId) {
+            Uri.Builder builder = CONTENT_SEARCH_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_QUERY, query);
+            return appendPage(builder, pageSize, afterId).build();
+        }
+
+        /**
+         * Build the URI to bulk insert a chunk of books read from an import file. The progress
+         * of the import is saved in the same transaction as the books.
+         *
+         * @param importId    the ID of the import in {@link ImportEntry#CONTENT_URI}
+         * @param recordsDone the number of records of the file done once the chunk is written
+         */
+        public static Uri buildImportChunkUri(long importId, long recordsDone) {
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_IMPORT, String.valueOf(importId))
+                    .appendQueryParameter(QUERY_PARAMETER_RECORDS_DONE,
+                            String.valueOf(recordsDone))
+                    .build();
+        }
+
+        /**
+         * Build the content URI to export the inventory in the given format.
+         *
+         * @param format {@link #FORMAT_CSV} or {@link #FORMAT_JSON}
+         */
+        public static Uri buildExportUri(String format) {
+            return CONTENT_EXPORT_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_FORMAT, format)
+                    .build();
+        }
+
+        /**
+         * Build the URI announcing that some columns of a single book have changed.
+         *
+         * @param id      the ID of the book
+         * @param columns the names of the columns that changed
+         */
+        public static Uri buildRowChangeUri(long id, Collection<String> columns) {
+            return ContentUris.withAppendedId(CONTENT_ROWS_URI, id).buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_COLUMNS, TextUtils.join(",", columns))
+                    .build();
+        }
+
+        /**
+         * Return the names of the columns that changed, from a URI built by
+         * {@link #buildRowChangeUri(long, Collection)}. Return null if the URI doesn't say,
+         * in which case any column may have changed.
+         */
+        public static List<String> getChangedColumns(Uri rowChangeUri) {
+            String columns = rowChangeUri.getQueryParameter(QUERY_PARAMETER_COLUMNS);
+            return columns == null ? null : Arrays.asList(TextUtils.split(columns, ","));
+        }
+
+        private static Uri.Builder appendPage(Uri.Builder builder, int pageSize, long afterId) {
+            builder.appendQueryParameter(QUERY_PARAMETER_LIMIT, String.valueOf(pageSize));
+            if (afterId != -1) {
+                builder.appendQueryParameter(QUERY_PARAMETER_AFTER, String.valueOf(afterId));
+            }
+            return builder;
+        }
+
         // Table Name
         public static final String TABLE_NAME = "inventory";
 
+        // Name of the view adding the supplier name and phone number to each book. Books are
+        // read from the view and written to the table.
+        public static final String VIEW_NAME = "inventory_with_supplier";
+
+        // Name of the full-text index over the title and supplier name of each book. Its docid
+        // is the _ID of the book.
+        public static final String SEARCH_TABLE_NAME = "inventory_fts";
+
         // Column Names for inventory table
         public static final String COLUMN_ID = BaseColumns._ID;
         public static final String COLUMN_PRODUCT_NAME = "productName";
+        // Price of the book in cents, stored as an integer so money math is exact
         public static final String COLUMN_PRICE = "price";
+        // Number of copies in stock, stored as an integer
         public static final String COLUMN_QUANTITY = "quantity";
+        // ID of the supplier of the book in the suppliers table
+        public static final String COLUMN_SUPPLIER_ID = "supplier_id";
+        // Name and phone number of the supplier, joined in from the suppliers table. When a book
+        // is written with these two instead of a supplier ID, the provider finds the supplier
+        // with that name and phone number, adding it if there is none.
         public static final String COLUMN_SUPPLIER_NAME = "supplierName";
         public static final String COLUMN_SUPPLIER_PHONE_NUMBER = "supplierPhoneNumber";
+        // Quantity at or below which the book needs to be reordered, 0 by default
+        public static final String COLUMN_REORDER_THRESHOLD = "reorderThreshold";
+        // Stamp that changes whenever the book or its supplier changes, kept by the database.
+        // Stamps are only meant to be compared for equality.
+        public static final String COLUMN_VERSION = "version";
+        // Time of the last change of the book in milliseconds since the epoch, kept by the
+        // database. 0 for books that haven't changed since the column was added.
+        public static final String COLUMN_LAST_MODIFIED = "lastModified";
+        // Title folded for sorting, without case, accents or a leading article, kept by the
+        // provider. Books are sorted by title through this column.
+        public static final String COLUMN_TITLE_SORT_KEY = "titleSortKey";
+    }
+
+    /**
+     * Running totals of the inventory, kept up to date by the database as books are added,
+     * changed and deleted. Reading them costs the same no matter how many books there are.
+     * The totals are read only; they change with the books they are computed from.
+     */
+    public static abstract class SummaryEntry implements BaseColumns {
+
+        /**
+         * The content URI to read the totals of the whole inventory, as a single row
+         */
+        public static final Uri CONTENT_URI =
+                Uri.withAppendedPath(InventoryEntry.CONTENT_URI, PATH_SUMMARY);
+
+        /**
+         * The content URI to read the totals of each supplier, one row per supplier
+         */
+        public static final Uri CONTENT_SUPPLIERS_URI =
+                Uri.withAppendedPath(CONTENT_URI, PATH_SUPPLIERS);
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for the totals of the whole inventory
+         */
+        public static final String CONTENT_ITEM_TYPE = ContentResolver.CURSOR_ITEM_BASE_TYPE
+                + "/" + CONTENT_AUTHORITY + "/" + PATH_INVENTORY + "." + PATH_SUMMARY;
+
+        /**
+         * The MIME type of the {@link #CONTENT_SUPPLIERS_URI} for the totals of each supplier
+         */
+        public static final String CONTENT_SUPPLIERS_TYPE = ContentResolver.CURSOR_DIR_BASE_TYPE
+                + "/" + CONTENT_AUTHORITY + "/" + PATH_INVENTORY + "." + PATH_SUMMARY;
+
+        // Table Names
+        public static final String TABLE_NAME = "inventory_summary";
+        public static final String SUPPLIER_TABLE_NAME = "supplier_summary";
+
+        // Name of the view adding the supplier name to the totals of each supplier
+        public static final String SUPPLIER_VIEW_NAME = "supplier_summary_with_name";
+
+        // Column Names for the summary tables
+        // ID and name of the supplier the totals are for. Only in the supplier totals. Books
+        // without a supplier are counted under ID 0, with a null name.
+        public static final String COLUMN_SUPPLIER_ID = "supplier_id";
+        public static final String COLUMN_SUPPLIER_NAME = "supplierName";
+        // Number of different books
+        public static final String COLUMN_TITLE_COUNT = "titleCount";
+        // Number of copies in stock over all books
+        public static final String COLUMN_TOTAL_UNITS = "totalUnits";
+        // Value of the stock in cents, the price times the quantity summed over all books
+        public static final String COLUMN_TOTAL_VALUE = "totalValue";
+        // Number of books with no copies in stock
+        public static final String COLUMN_OUT_OF_STOCK_COUNT = "outOfStockCount";
+    }
+
+    /**
+     * Suppliers of the books. Each supplier is stored once and books refer to it by ID, so the
+     * phone number of a supplier is only checked when the supplier is added or changed.
+     */
+    public static abstract class SupplierEntry implements BaseColumns {
+
+        /**
+         * The content URI to access the suppliers in the provider
+         */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_SUPPLIERS);
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for a list of suppliers
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SUPPLIERS;
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for a single supplier
+         */
+        public static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SUPPLIERS;
+
+        /**
+         * Build the content URI for the books of a supplier, found through the index on the
+         * supplier ID of the books.
+         *
+         * @param supplierId the ID of the supplier
+         */
+        public static Uri buildInventoryUri(long supplierId) {
+            return ContentUris.withAppendedId(CONTENT_URI, supplierId).buildUpon()
+                    .appendPath(PATH_INVENTORY)
+                    .build();
+        }
+
+        // Table Name
+        public static final String TABLE_NAME = "suppliers";
+
+        // Column Names for suppliers table
+        public static final String COLUMN_ID = BaseColumns._ID;
+        // Name of the supplier. Names are compared without case.
+        public static final String COLUMN_NAME = "name";
+        public static final String COLUMN_PHONE_NUMBER = "phoneNumber";
+        // Number of times the name or phone number changed, kept by the database
+        public static final String COLUMN_VERSION = "version";
+    }
+
+    /**
+     * Progress of the file imports that haven't finished. An import is added when it starts and
+     * deleted when it is done, so any import left here was interrupted and can be resumed.
+     */
+    public static abstract class ImportEntry implements BaseColumns {
+
+        /**
+         * The content URI to access the imports in the provider
+         */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_IMPORTS);
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for a list of imports
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_IMPORTS;
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for a single import
+         */
+        public static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_IMPORTS;
+
+        // Table Name
+        public static final String TABLE_NAME = "imports";
+
+        // Column Names for imports table
+        public static final String COLUMN_ID = BaseColumns._ID;
+        // URI of the file being imported, unique among the imports
+        public static final String COLUMN_SOURCE_URI = "sourceUri";
+        // Number of records of the file done, including the header and skipped records
+        public static final String COLUMN_RECORDS_DONE = "recordsDone";
     }
 }
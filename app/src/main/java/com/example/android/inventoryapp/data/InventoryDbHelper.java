@@ -2,8 +2,12 @@ package com.example.android.inventoryapp.data;
 
 
 import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
 import android.util.Log;
 
 import com.example.android.inventoryapp.data.InventoryContract.InventoryEntry;
@@ -21,7 +25,7 @@ public class InventoryDbHelper extends SQLiteOpenHelper {
      * Database version. If the database schema is changed, the version must be incremented.
      */
 
-    public static final int DATABASE_VERSION = 1;
+    public static final int DATABASE_VERSION = 11;
 
     /**
      * SQL Statement to CREATE TABLE inventory
@@ -36,17 +40,648 @@ public class InventoryDbHelper extends SQLiteOpenHelper {
             + InventoryEntry.COLUMN_SUPPLIER_NAME + " TEXT, "
             + InventoryEntry.COLUMN_SUPPLIER_PHONE_NUMBER + " TEXT);";
 
+    /**
+     * Version 2: index the columns that books are looked up, searched and filtered by.
+     */
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(SQLiteDatabase db) {
+            db.execSQL("CREATE INDEX index_inventory_productName ON "
+                    + InventoryEntry.TABLE_NAME + " (" + InventoryEntry.COLUMN_PRODUCT_NAME + ")");
+            db.execSQL("CREATE INDEX index_inventory_supplierName ON "
+                    + InventoryEntry.TABLE_NAME + " (" + InventoryEntry.COLUMN_SUPPLIER_NAME + ")");
+            db.execSQL("CREATE INDEX index_inventory_quantity ON "
+                    + InventoryEntry.TABLE_NAME + " (" + InventoryEntry.COLUMN_QUANTITY + ")");
+        }
+    };
+
+    /**
+     * Version 3: full-text index over the title and supplier name of each book, kept in sync with
+     * the inventory table by triggers. Selling books only changes the quantity, so it doesn't
+     * touch the index.
+     */
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(SQLiteDatabase db) {
+            db.execSQL("CREATE VIRTUAL TABLE inventory_fts USING fts4(productName, supplierName)");
+            db.execSQL("INSERT INTO inventory_fts (docid, productName, supplierName)"
+                    + " SELECT _id, productName, supplierName FROM inventory");
+            db.execSQL("CREATE TRIGGER inventory_fts_insert AFTER INSERT ON inventory BEGIN"
+                    + " INSERT INTO inventory_fts (docid, productName, supplierName)"
+                    + " VALUES (NEW._id, NEW.productName, NEW.supplierName); END");
+            db.execSQL("CREATE TRIGGER inventory_fts_update"
+                    + " AFTER UPDATE OF productName, supplierName ON inventory BEGIN"
+                    + " UPDATE inventory_fts SET productName = NEW.productName,"
+                    + " supplierName = NEW.supplierName WHERE docid = OLD._id; END");
+            db.execSQL("CREATE TRIGGER inventory_fts_delete AFTER DELETE ON inventory BEGIN"
+                    + " DELETE FROM inventory_fts WHERE docid = OLD._id; END");
+        }
+    };
+
+    /**
+     * Version 4: store the price as a whole number of cents and the quantity as an integer.
+     * SQLite can't change the type of a column, so the rows are copied into a new table, which
+     * then replaces the old one. The step runs inside the upgrade transaction, so it is atomic:
+     * an interrupted upgrade leaves the version 3 table untouched and starts over.
+     */
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE inventory_v4 ("
+                    + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "productName TEXT NOT NULL, "
+                    + "price INTEGER NOT NULL, "
+                    + "quantity INTEGER NOT NULL DEFAULT 0, "
+                    + "supplierName TEXT, "
+                    + "supplierPhoneNumber TEXT)");
+            db.execSQL("INSERT INTO inventory_v4"
+                    + " (_id, productName, price, quantity, supplierName, supplierPhoneNumber)"
+                    + " SELECT _id, productName, CAST(ROUND(price * 100) AS INTEGER),"
+                    + " CAST(quantity AS INTEGER), supplierName, supplierPhoneNumber"
+                    + " FROM inventory");
+            copySequence(db, "inventory_v4");
+
+            // Replace the old table. Dropping it also drops its indexes and triggers, so they
+            // are created again on the new table. The search index keeps its rows, since the IDs
+            // don't change.
+            db.execSQL("DROP TABLE inventory");
+            db.execSQL("ALTER TABLE inventory_v4 RENAME TO inventory");
+            db.execSQL("CREATE INDEX index_inventory_productName ON inventory (productName)");
+            db.execSQL("CREATE INDEX index_inventory_supplierName ON inventory (supplierName)");
+            db.execSQL("CREATE INDEX index_inventory_quantity ON inventory (quantity)");
+            db.execSQL("CREATE TRIGGER inventory_fts_insert AFTER INSERT ON inventory BEGIN"
+                    + " INSERT INTO inventory_fts (docid, productName, supplierName)"
+                    + " VALUES (NEW._id, NEW.productName, NEW.supplierName); END");
+            db.execSQL("CREATE TRIGGER inventory_fts_update"
+                    + " AFTER UPDATE OF productName, supplierName ON inventory BEGIN"
+                    + " UPDATE inventory_fts SET productName = NEW.productName,"
+                    + " supplierName = NEW.supplierName WHERE docid = OLD._id; END");
+            db.execSQL("CREATE TRIGGER inventory_fts_delete AFTER DELETE ON inventory BEGIN"
+                    + " DELETE FROM inventory_fts WHERE docid = OLD._id; END");
+        }
+    };
+
+    /**
+     * Version 5: running totals of the whole inventory and of each supplier, so the dashboard
+     * figures are read from a single row instead of scanning every book. Triggers on the inventory
+     * table add the values of each new book, subtract the values of each deleted book, and apply
+     * the difference when the price, quantity or supplier of a book changes. Books without a
+     * supplier are counted under an empty supplier name.
+     */
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE inventory_summary ("
+                    + "_id INTEGER PRIMARY KEY CHECK (_id = 1), "
+                    + "titleCount INTEGER NOT NULL, "
+                    + "totalUnits INTEGER NOT NULL, "
+                    + "totalValue INTEGER NOT NULL, "
+                    + "outOfStockCount INTEGER NOT NULL)");
+            db.execSQL("CREATE TABLE supplier_summary ("
+                    + "supplierName TEXT PRIMARY KEY NOT NULL, "
+                    + "titleCount INTEGER NOT NULL DEFAULT 0, "
+                    + "totalUnits INTEGER NOT NULL DEFAULT 0, "
+                    + "totalValue INTEGER NOT NULL DEFAULT 0, "
+                    + "outOfStockCount INTEGER NOT NULL DEFAULT 0)");
+
+            // Start from the totals of the books already in the inventory
+            db.execSQL("INSERT INTO inventory_summary"
+                    + " (_id, titleCount, totalUnits, totalValue, outOfStockCount)"
+                    + " SELECT 1, COUNT(*), IFNULL(SUM(quantity), 0),"
+                    + " IFNULL(SUM(price * quantity), 0), IFNULL(SUM(quantity <= 0), 0)"
+                    + " FROM inventory");
+            db.execSQL("INSERT INTO supplier_summary"
+                    + " (supplierName, titleCount, totalUnits, totalValue, outOfStockCount)"
+                    + " SELECT IFNULL(supplierName, ''), COUNT(*), SUM(quantity),"
+                    + " SUM(price * quantity), SUM(quantity <= 0)"
+                    + " FROM inventory GROUP BY IFNULL(supplierName, '')");
+
+            db.execSQL("CREATE TRIGGER inventory_summary_insert AFTER INSERT ON inventory BEGIN"
+                    + " UPDATE inventory_summary SET titleCount = titleCount + 1,"
+                    + " totalUnits = totalUnits + NEW.quantity,"
+                    + " totalValue = totalValue + NEW.price * NEW.quantity,"
+                    + " outOfStockCount = outOfStockCount + (NEW.quantity <= 0);"
+                    + " INSERT OR IGNORE INTO supplier_summary (supplierName)"
+                    + " VALUES (IFNULL(NEW.supplierName, ''));"
+                    + " UPDATE supplier_summary SET titleCount = titleCount + 1,"
+                    + " totalUnits = totalUnits + NEW.quantity,"
+                    + " totalValue = totalValue + NEW.price * NEW.quantity,"
+                    + " outOfStockCount = outOfStockCount + (NEW.quantity <= 0)"
+                    + " WHERE supplierName = IFNULL(NEW.supplierName, ''); END");
+            db.execSQL("CREATE TRIGGER inventory_summary_delete AFTER DELETE ON inventory BEGIN"
+                    + " UPDATE inventory_summary SET titleCount = titleCount - 1,"
+                    + " totalUnits = totalUnits - OLD.quantity,"
+                    + " totalValue = totalValue - OLD.price * OLD.quantity,"
+                    + " outOfStockCount = outOfStockCount - (OLD.quantity <= 0);"
+                    + " UPDATE supplier_summary SET titleCount = titleCount - 1,"
+                    + " totalUnits = totalUnits - OLD.quantity,"
+                    + " totalValue = totalValue - OLD.price * OLD.quantity,"
+                    + " outOfStockCount = outOfStockCount - (OLD.quantity <= 0)"
+                    + " WHERE supplierName = IFNULL(OLD.supplierName, '');"
+                    + " DELETE FROM supplier_summary"
+                    + " WHERE supplierName = IFNULL(OLD.supplierName, '') AND titleCount = 0; END");
+            db.execSQL("CREATE TRIGGER inventory_summary_update"
+                    + " AFTER UPDATE OF price, quantity, supplierName ON inventory BEGIN"
+                    + " UPDATE inventory_summary SET"
+                    + " totalUnits = totalUnits - OLD.quantity + NEW.quantity,"
+                    + " totalValue = totalValue - OLD.price * OLD.quantity"
+                    + " + NEW.price * NEW.quantity,"
+                    + " outOfStockCount = outOfStockCount - (OLD.quantity <= 0)"
+                    + " + (NEW.quantity <= 0);"
+                    + " UPDATE supplier_summary SET titleCount = titleCount - 1,"
+                    + " totalUnits = totalUnits - OLD.quantity,"
+                    + " totalValue = totalValue - OLD.price * OLD.quantity,"
+                    + " outOfStockCount = outOfStockCount - (OLD.quantity <= 0)"
+                    + " WHERE supplierName = IFNULL(OLD.supplierName, '');"
+                    + " INSERT OR IGNORE INTO supplier_summary (supplierName)"
+                    + " VALUES (IFNULL(NEW.supplierName, ''));"
+                    + " UPDATE supplier_summary SET titleCount = titleCount + 1,"
+                    + " totalUnits = totalUnits + NEW.quantity,"
+                    + " totalValue = totalValue + NEW.price * NEW.quantity,"
+                    + " outOfStockCount = outOfStockCount + (NEW.quantity <= 0)"
+                    + " WHERE supplierName = IFNULL(NEW.supplierName, '');"
+                    + " DELETE FROM supplier_summary"
+                    + " WHERE supplierName = IFNULL(OLD.supplierName, '') AND titleCount = 0; END");
+        }
+    };
+
+    /**
+     * Version 6: per-book reorder threshold. A book is low on stock once its quantity is at or
+     * below its threshold, which defaults to 0 so a book is reordered when it sells out. The
+     * low-stock books are indexed on their own, see
+     * {@link #createLowStockIndex(SQLiteDatabase, String)}.
+     */
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(SQLiteDatabase db) {
+            db.execSQL("ALTER TABLE inventory ADD COLUMN"
+                    + " reorderThreshold INTEGER NOT NULL DEFAULT 0");
+            createLowStockIndex(db, "productName");
+        }
+    };
+
+    /**
+     * Version 7: suppliers in their own table. Each distinct supplier name and phone number is
+     * stored once, names compared without case, and books refer to their supplier by ID. The
+     * inventory table is rebuilt without the supplier columns, copying the rows as in
+     * {@link #MIGRATION_3_4}, atomically inside the upgrade transaction. Its indexes and
+     * triggers are created again, now taking the supplier name from the suppliers table, and the
+     * supplier totals are keyed by supplier ID. Views join the supplier name and phone number back
+     * onto the books and the supplier totals, so readers still get the same columns.
+     */
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE suppliers ("
+                    + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "name TEXT NOT NULL COLLATE NOCASE, "
+                    + "phoneNumber TEXT NOT NULL)");
+            db.execSQL("CREATE UNIQUE INDEX index_suppliers_name_phoneNumber"
+                    + " ON suppliers (name, phoneNumber)");
+
+            // One supplier per distinct name and phone number, named as first seen
+            db.execSQL("INSERT OR IGNORE INTO suppliers (name, phoneNumber)"
+                    + " SELECT TRIM(supplierName), IFNULL(TRIM(supplierPhoneNumber), '')"
+                    + " FROM inventory WHERE TRIM(supplierName) <> '' ORDER BY _id");
+
+            db.execSQL("CREATE TABLE inventory_v7 ("
+                    + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "productName TEXT NOT NULL, "
+                    + "price INTEGER NOT NULL, "
+                    + "quantity INTEGER NOT NULL DEFAULT 0, "
+                    + "reorderThreshold INTEGER NOT NULL DEFAULT 0, "
+                    + "supplier_id INTEGER REFERENCES suppliers (_id))");
+
+            // Look up the supplier of each book through the supplier index
+            db.execSQL("INSERT INTO inventory_v7"
+                    + " (_id, productName, price, quantity, reorderThreshold, supplier_id)"
+                    + " SELECT inventory._id, productName, price, quantity, reorderThreshold,"
+                    + " suppliers._id FROM inventory LEFT JOIN suppliers"
+                    + " ON suppliers.name = TRIM(supplierName)"
+                    + " AND suppliers.phoneNumber = IFNULL(TRIM(supplierPhoneNumber), '')");
+            copySequence(db, "inventory_v7");
+
+            // Replace the old table, which also drops its indexes and triggers
+            db.execSQL("DROP TABLE inventory");
+            db.execSQL("ALTER TABLE inventory_v7 RENAME TO inventory");
+            db.execSQL("CREATE INDEX index_inventory_productName ON inventory (productName)");
+            db.execSQL("CREATE INDEX index_inventory_quantity ON inventory (quantity)");
+            db.execSQL("CREATE INDEX index_inventory_supplierId ON inventory (supplier_id)");
+            createLowStockIndex(db, "productName");
+
+            // Keep the search index in sync, including when a supplier is renamed. The search
+            // index keeps its rows, since the IDs don't change.
+            db.execSQL("CREATE TRIGGER inventory_fts_insert AFTER INSERT ON inventory BEGIN"
+                    + " INSERT INTO inventory_fts (docid, productName, supplierName)"
+                    + " VALUES (NEW._id, NEW.productName,"
+                    + " (SELECT name FROM suppliers WHERE _id = NEW.supplier_id)); END");
+            db.execSQL("CREATE TRIGGER inventory_fts_update"
+                    + " AFTER UPDATE OF productName, supplier_id ON inventory BEGIN"
+                    + " UPDATE inventory_fts SET productName = NEW.productName,"
+                    + " supplierName = (SELECT name FROM suppliers WHERE _id = NEW.supplier_id)"
+                    + " WHERE docid = OLD._id; END");
+            db.execSQL("CREATE TRIGGER inventory_fts_delete AFTER DELETE ON inventory BEGIN"
+                    + " DELETE FROM inventory_fts WHERE docid = OLD._id; END");
+            db.execSQL("CREATE TRIGGER suppliers_fts_update AFTER UPDATE OF name ON suppliers"
+                    + " BEGIN UPDATE inventory_fts SET supplierName = NEW.name"
+                    + " WHERE docid IN (SELECT _id FROM inventory WHERE supplier_id = NEW._id);"
+                    + " END");
+
+            // Key the supplier totals by supplier ID, 0 for books without a supplier
+            db.execSQL("DROP TABLE supplier_summary");
+            db.execSQL("CREATE TABLE supplier_summary ("
+                    + "supplier_id INTEGER PRIMARY KEY NOT NULL, "
+                    + "titleCount INTEGER NOT NULL DEFAULT 0, "
+                    + "totalUnits INTEGER NOT NULL DEFAULT 0, "
+                    + "totalValue INTEGER NOT NULL DEFAULT 0, "
+                    + "outOfStockCount INTEGER NOT NULL DEFAULT 0)");
+            db.execSQL("INSERT INTO supplier_summary"
+                    + " (supplier_id, titleCount, totalUnits, totalValue, outOfStockCount)"
+                    + " SELECT IFNULL(supplier_id, 0), COUNT(*), SUM(quantity),"
+                    + " SUM(price * quantity), SUM(quantity <= 0)"
+                    + " FROM inventory GROUP BY IFNULL(supplier_id, 0)");
+            db.execSQL("CREATE TRIGGER inventory_summary_insert AFTER INSERT ON inventory BEGIN"
+                    + " UPDATE inventory_summary SET titleCount = titleCount + 1,"
+                    + " totalUnits = totalUnits + NEW.quantity,"
+                    + " totalValue = totalValue + NEW.price * NEW.quantity,"
+                    + " outOfStockCount = outOfStockCount + (NEW.quantity <= 0);"
+                    + " INSERT OR IGNORE INTO supplier_summary (supplier_id)"
+                    + " VALUES (IFNULL(NEW.supplier_id, 0));"
+                    + " UPDATE supplier_summary SET titleCount = titleCount + 1,"
+                    + " totalUnits = totalUnits + NEW.quantity,"
+                    + " totalValue = totalValue + NEW.price * NEW.quantity,"
+                    + " outOfStockCount = outOfStockCount + (NEW.quantity <= 0)"
+                    + " WHERE supplier_id = IFNULL(NEW.supplier_id, 0); END");
+            db.execSQL("CREATE TRIGGER inventory_summary_delete AFTER DELETE ON inventory BEGIN"
+                    + " UPDATE inventory_summary SET titleCount = titleCount - 1,"
+                    + " totalUnits = totalUnits - OLD.quantity,"
+                    + " totalValue = totalValue - OLD.price * OLD.quantity,"
+                    + " outOfStockCount = outOfStockCount - (OLD.quantity <= 0);"
+                    + " UPDATE supplier_summary SET titleCount = titleCount - 1,"
+                    + " totalUnits = totalUnits - OLD.quantity,"
+                    + " totalValue = totalValue - OLD.price * OLD.quantity,"
+                    + " outOfStockCount = outOfStockCount - (OLD.quantity <= 0)"
+                    + " WHERE supplier_id = IFNULL(OLD.supplier_id, 0);"
+                    + " DELETE FROM supplier_summary"
+                    + " WHERE supplier_id = IFNULL(OLD.supplier_id, 0) AND titleCount = 0; END");
+            db.execSQL("CREATE TRIGGER inventory_summary_update"
+                    + " AFTER UPDATE OF price, quantity, supplier_id ON inventory BEGIN"
+                    + " UPDATE inventory_summary SET"
+                    + " totalUnits = totalUnits - OLD.quantity + NEW.quantity,"
+                    + " totalValue = totalValue - OLD.price * OLD.quantity"
+                    + " + NEW.price * NEW.quantity,"
+                    + " outOfStockCount = outOfStockCount - (OLD.quantity <= 0)"
+                    + " + (NEW.quantity <= 0);"
+                    + " UPDATE supplier_summary SET titleCount = titleCount - 1,"
+                    + " totalUnits = totalUnits - OLD.quantity,"
+                    + " totalValue = totalValue - OLD.price * OLD.quantity,"
+                    + " outOfStockCount = outOfStockCount - (OLD.quantity <= 0)"
+                    + " WHERE supplier_id = IFNULL(OLD.supplier_id, 0);"
+                    + " INSERT OR IGNORE INTO supplier_summary (supplier_id)"
+                    + " VALUES (IFNULL(NEW.supplier_id, 0));"
+                    + " UPDATE supplier_summary SET titleCount = titleCount + 1,"
+                    + " totalUnits = totalUnits + NEW.quantity,"
+                    + " totalValue = totalValue + NEW.price * NEW.quantity,"
+                    + " outOfStockCount = outOfStockCount + (NEW.quantity <= 0)"
+                    + " WHERE supplier_id = IFNULL(NEW.supplier_id, 0);"
+                    + " DELETE FROM supplier_summary"
+                    + " WHERE supplier_id = IFNULL(OLD.supplier_id, 0) AND titleCount = 0; END");
+
+            // Give readers the supplier name and phone number of each book and supplier total
+            db.execSQL("CREATE VIEW inventory_with_supplier AS SELECT inventory._id AS _id,"
+                    + " productName, price, quantity, reorderThreshold, supplier_id,"
+                    + " suppliers.name AS supplierName,"
+                    + " suppliers.phoneNumber AS supplierPhoneNumber"
+                    + " FROM inventory LEFT JOIN suppliers ON suppliers._id = supplier_id");
+            db.execSQL("CREATE VIEW supplier_summary_with_name AS SELECT"
+                    + " supplier_summary.supplier_id AS supplier_id,"
+                    + " suppliers.name AS supplierName, titleCount, totalUnits, totalValue,"
+                    + " outOfStockCount FROM supplier_summary"
+                    + " LEFT JOIN suppliers ON suppliers._id = supplier_summary.supplier_id");
+        }
+    };
+
+    /**
+     * Version 8: progress of the file imports that are running. The number of records done is
+     * written in the same transaction as the books imported with them, so an import interrupted
+     * at any point resumes right after the last book written.
+     */
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE imports ("
+                    + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "sourceUri TEXT NOT NULL UNIQUE, "
+                    + "recordsDone INTEGER NOT NULL DEFAULT 0)");
+        }
+    };
+
+    /**
+     * Version 9: version stamps, so a copy of a book kept outside the database can be checked
+     * for changes without comparing every column. Triggers count the changes of each book and
+     * each supplier. A book's stamp combines both counts, since the supplier name and phone
+     * number are read with the book. Changing the supplier of a book counts as a change of the
+     * book, so two different suppliers can't give the same stamp.
+     */
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(SQLiteDatabase db) {
+            db.execSQL("ALTER TABLE inventory ADD COLUMN version INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE suppliers ADD COLUMN version INTEGER NOT NULL DEFAULT 0");
+
+            // The triggers only watch the columns readers see, so the update of the version
+            // doesn't fire them again, nor the search and summary triggers
+            db.execSQL("CREATE TRIGGER inventory_version AFTER UPDATE OF productName, price,"
+                    + " quantity, reorderThreshold, supplier_id ON inventory BEGIN"
+                    + " UPDATE inventory SET version = OLD.version + 1 WHERE _id = NEW._id; END");
+            db.execSQL("CREATE TRIGGER suppliers_version AFTER UPDATE OF name, phoneNumber"
+                    + " ON suppliers BEGIN"
+                    + " UPDATE suppliers SET version = OLD.version + 1 WHERE _id = NEW._id; END");
+
+            // The book count goes in the high 32 bits of the stamp, the supplier count in the
+            // low ones
+            db.execSQL("DROP VIEW inventory_with_supplier");
+            db.execSQL("CREATE VIEW inventory_with_supplier AS SELECT inventory._id AS _id,"
+                    + " productName, price, quantity, reorderThreshold, supplier_id,"
+                    + " suppliers.name AS supplierName,"
+                    + " suppliers.phoneNumber AS supplierPhoneNumber,"
+                    + " (inventory.version << 32) + IFNULL(suppliers.version, 0) AS version"
+                    + " FROM inventory LEFT JOIN suppliers ON suppliers._id = supplier_id");
+        }
+    };
+
+    /**
+     * Version 10: the time of the last change of each book, and the indexes the catalog is
+     * sorted and filtered with. Each sort column has an index of its own, for the whole catalog,
+     * and one after the supplier ID, for the books of one supplier. Either way the books come out
+     * of the index already sorted, so a page is read without sorting the catalog first.
+     */
+    static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(SQLiteDatabase db) {
+            db.execSQL("ALTER TABLE inventory ADD COLUMN lastModified INTEGER NOT NULL DEFAULT 0");
+
+            // Stamp the time along with the version, in the same update
+            db.execSQL("DROP TRIGGER inventory_version");
+            db.execSQL("CREATE TRIGGER inventory_version AFTER UPDATE OF productName, price,"
+                    + " quantity, reorderThreshold, supplier_id ON inventory BEGIN"
+                    + " UPDATE inventory SET version = OLD.version + 1,"
+                    + " lastModified = " + SQL_NOW_MILLIS + " WHERE _id = NEW._id; END");
+            db.execSQL("CREATE TRIGGER inventory_inserted AFTER INSERT ON inventory BEGIN"
+                    + " UPDATE inventory SET lastModified = " + SQL_NOW_MILLIS
+                    + " WHERE _id = NEW._id; END");
+
+            db.execSQL("CREATE INDEX index_inventory_price ON inventory (price)");
+            db.execSQL("CREATE INDEX index_inventory_lastModified ON inventory (lastModified)");
+            db.execSQL("CREATE INDEX index_inventory_supplierId_productName"
+                    + " ON inventory (supplier_id, productName)");
+            db.execSQL("CREATE INDEX index_inventory_supplierId_price"
+                    + " ON inventory (supplier_id, price)");
+            db.execSQL("CREATE INDEX index_inventory_supplierId_quantity"
+                    + " ON inventory (supplier_id, quantity)");
+            db.execSQL("CREATE INDEX index_inventory_supplierId_lastModified"
+                    + " ON inventory (supplier_id, lastModified)");
+
+            // Readers need the time to page through the books that changed last
+            db.execSQL("DROP VIEW inventory_with_supplier");
+            db.execSQL("CREATE VIEW inventory_with_supplier AS SELECT inventory._id AS _id,"
+                    + " productName, price, quantity, reorderThreshold, supplier_id,"
+                    + " suppliers.name AS supplierName,"
+                    + " suppliers.phoneNumber AS supplierPhoneNumber,"
+                    + " (inventory.version << 32) + IFNULL(suppliers.version, 0) AS version,"
+                    + " lastModified"
+                    + " FROM inventory LEFT JOIN suppliers ON suppliers._id = supplier_id");
+        }
+    };
+
+    /**
+     * Version 11: the title sort key of each book, see {@link TitleSortKey}. The key can't be
+     * computed in SQL, so the provider writes it along with the title, and existing books get
+     * theirs here. Titles are sorted through the key's indexes from now on, which replace the
+     * index on the supplier ID and title, and the low-stock index is rebuilt over the key.
+     */
+    static final Migration MIGRATION_10_11 = new Migration(10, 11) {
+        @Override
+        public void migrate(SQLiteDatabase db) {
+            db.execSQL("ALTER TABLE inventory ADD COLUMN titleSortKey TEXT NOT NULL DEFAULT ''");
+
+            // Setting only the key fires none of the triggers, so the books keep their version
+            // and time of last change
+            SQLiteStatement setSortKey = db.compileStatement(
+                    "UPDATE inventory SET titleSortKey = ? WHERE _id = ?");
+            Cursor cursor = db.rawQuery("SELECT _id, productName FROM inventory", null);
+            try {
+                while (cursor.moveToNext()) {
+                    setSortKey.bindString(1, TitleSortKey.of(cursor.getString(1)));
+                    setSortKey.bindLong(2, cursor.getLong(0));
+                    setSortKey.executeUpdateDelete();
+                }
+            } finally {
+                cursor.close();
+                setSortKey.close();
+            }
+
+            db.execSQL("CREATE INDEX index_inventory_titleSortKey ON inventory (titleSortKey)");
+            db.execSQL("CREATE INDEX index_inventory_supplierId_titleSortKey"
+                    + " ON inventory (supplier_id, titleSortKey)");
+            db.execSQL("DROP INDEX index_inventory_supplierId_productName");
+            db.execSQL("DROP INDEX IF EXISTS " + LOW_STOCK_INDEX_NAME);
+            createLowStockIndex(db, "titleSortKey");
+
+            db.execSQL("DROP VIEW inventory_with_supplier");
+            db.execSQL("CREATE VIEW inventory_with_supplier AS SELECT inventory._id AS _id,"
+                    + " productName, price, quantity, reorderThreshold, supplier_id,"
+                    + " suppliers.name AS supplierName,"
+                    + " suppliers.phoneNumber AS supplierPhoneNumber,"
+                    + " (inventory.version << 32) + IFNULL(suppliers.version, 0) AS version,"
+                    + " lastModified, titleSortKey"
+                    + " FROM inventory LEFT JOIN suppliers ON suppliers._id = supplier_id");
+        }
+    };
+
+    /**
+     * All schema steps, in the order they are applied
+     */
+    static final Migration[] MIGRATIONS = {
+            MIGRATION_1_2,
+            MIGRATION_2_3,
+            MIGRATION_3_4,
+            MIGRATION_4_5,
+            MIGRATION_5_6,
+            MIGRATION_6_7,
+            MIGRATION_7_8,
+            MIGRATION_8_9,
+            MIGRATION_9_10,
+            MIGRATION_10_11
+    };
+
+    /**
+     * SQL expression of the current time in milliseconds since the epoch
+     */
+    private static final String SQL_NOW_MILLIS =
+            "CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)";
+
+    /**
+     * Name of the partial index holding only the books that are low on stock
+     */
+    static final String LOW_STOCK_INDEX_NAME = "index_inventory_lowStock";
+
+    /**
+     * Number of pages written to the write-ahead log before SQLite folds it back into the
+     * database file. Larger values mean fewer checkpoints during bursts of sales or imports at
+     * the cost of a bigger log file.
+     */
+    private static final int WAL_AUTOCHECKPOINT_PAGES = 1000;
+
+    /**
+     * Upper bound for the size of the write-ahead log file left on disk after a checkpoint
+     */
+    private static final long WAL_JOURNAL_SIZE_LIMIT_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * Time after which a pooled connection that hasn't been used is closed, releasing its page
+     * cache. The catalog loader and the writer thread keep their connections busy while the app
+     * is in use, so only the connections of a finished burst of reads are closed.
+     */
+    private static final long IDLE_CONNECTION_TIMEOUT_MILLIS = 30 * 1000;
+
+    /**
+     * Compiled statements for the hot writes, kept for as long as the database stays open
+     */
+    private InventoryStatements statements;
+
     // Public constructor of InventoryDbHelper
     public InventoryDbHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, DATABASE_NAME);
+    }
+
+    // Constructor used by tests to open a database under another file name
+    InventoryDbHelper(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+
+        // Open the database in write-ahead logging mode. Readers get their own connections from
+        // the pool and see the last committed state, so the catalog loader never waits behind a
+        // sale or an import, and writers never wait behind the loader.
+        setWriteAheadLoggingEnabled(true);
+
+        // The number of connections in the pool is set by the system for WAL databases and can't
+        // be changed by apps, but from API 27 the idle ones can be closed
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+            setIdleConnectionTimeout(IDLE_CONNECTION_TIMEOUT_MILLIS);
+        }
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        // Check that books only refer to suppliers that exist
+        db.setForeignKeyConstraintsEnabled(true);
+
+        // In WAL mode a commit only needs the log to be synced at checkpoints, which keeps each
+        // write transaction cheap while still never corrupting the database.
+        db.execSQL("PRAGMA synchronous = NORMAL");
+
+        // These pragmas report their new value, so they must be run as queries
+        DatabaseUtils.stringForQuery(db,
+                "PRAGMA wal_autocheckpoint = " + WAL_AUTOCHECKPOINT_PAGES, null);
+        DatabaseUtils.stringForQuery(db,
+                "PRAGMA journal_size_limit = " + WAL_JOURNAL_SIZE_LIMIT_BYTES, null);
     }
 
     public void onCreate(SQLiteDatabase db) {
+        // Create the version 1 schema, then bring it up to date with the same steps used to
+        // upgrade existing databases, so new and upgraded databases always end up identical.
         db.execSQL(SQL_CREATE_INVENTORY_TABLE);
         Log.i(LOG_TAG, SQL_CREATE_INVENTORY_TABLE);
+        migrate(db, 1, DATABASE_VERSION);
     }
 
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        migrate(db, oldVersion, newVersion);
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        // A database created before the system was updated to a version supporting partial
+        // indexes doesn't have the low-stock index yet
+        if (!db.isReadOnly()) {
+            createLowStockIndex(db, InventoryEntry.COLUMN_TITLE_SORT_KEY);
+        }
+    }
+
+    /**
+     * Return the compiled statements of the writable database, opening it if needed. The
+     * statements are compiled once and reused by every write until the database is closed.
+     */
+    synchronized InventoryStatements getStatements() {
+        SQLiteDatabase db = getWritableDatabase();
+        if (statements == null || statements.getDatabase() != db) {
+            statements = new InventoryStatements(db);
+        }
+        return statements;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (statements != null) {
+            statements.close();
+            statements = null;
+        }
+        super.close();
+    }
+
+    /**
+     * Create the partial index over the books whose quantity is at or below their reorder
+     * threshold. The index only holds those books, so the low-stock scan reads as many entries as
+     * there are books to reorder, however big the catalog is, and sales of well stocked books
+     * don't touch it. Partial indexes need SQLite 3.8.0, which ships with Lollipop; on older
+     * systems the low-stock query falls back to scanning the table.
+     *
+     * @param column the column the books are ordered by in the index, the title before version
+     *               11 and the title sort key since
+     */
+    static void createLowStockIndex(SQLiteDatabase db, String column) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS " + LOW_STOCK_INDEX_NAME
+                    + " ON inventory (" + column + ") WHERE quantity <= reorderThreshold");
+        }
+    }
+
+    /**
+     * Keep handing out IDs after the highest one ever used in the inventory table, not just the
+     * highest one left, once the given copy of the table replaces it. Copying rows with their
+     * IDs already gave the copy a sequence row if it has any rows; it only gets one here if not.
+     */
+    private static void copySequence(SQLiteDatabase db, String copyTable) {
+        db.execSQL("UPDATE sqlite_sequence SET seq = MAX(seq, (SELECT seq FROM sqlite_sequence"
+                + " WHERE name = 'inventory')) WHERE name = ?", new Object[]{copyTable});
+        db.execSQL("INSERT INTO sqlite_sequence (name, seq) SELECT ?, seq FROM sqlite_sequence"
+                + " WHERE name = 'inventory' AND NOT EXISTS (SELECT 1 FROM sqlite_sequence"
+                + " WHERE name = ?)", new Object[]{copyTable, copyTable});
+    }
+
+    /**
+     * Apply the schema steps in {@link #MIGRATIONS} one after another to take the database from
+     * one version to another.
+     *
+     * @param db          the database to upgrade
+     * @param fromVersion the current version of the database
+     * @param toVersion   the version to upgrade to
+     */
+    static void migrate(SQLiteDatabase db, int fromVersion, int toVersion) {
+        int version = fromVersion;
+        for (Migration migration : MIGRATIONS) {
+            if (migration.startVersion == version && migration.endVersion <= toVersion) {
+                Log.i(LOG_TAG, "Migrating database from version " + migration.startVersion
+                        + " to " + migration.endVersion);
+                migration.migrate(db);
+                version = migration.endVersion;
+            }
+        }
 
+        // If the steps didn't reach the requested version, there is a gap in MIGRATIONS
+        if (version != toVersion) {
+            throw new IllegalStateException("No migration path from version " + fromVersion
+                    + " to " + toVersion);
+        }
     }
 }
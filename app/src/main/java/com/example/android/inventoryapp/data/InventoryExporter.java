@@ -0,0 +1,193 @@
+package com.example.android.inventoryapp.data;
+
+import android.content.ContentProvider;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import com.example.android.inventoryapp.data.InventoryContract.InventoryEntry;
+
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+
+/**
+ * Writes the whole catalog into the pipe returned by {@link InventoryProvider#openFile}, as CSV
+ * or as JSON lines. Books are read in pages ordered by ID, each found with an index seek after
+ * the last book of the page before, and written out as they are read, so the export never holds
+ * more than one page in memory however big the catalog is.
+ * <p>
+ * The CSV file has the columns the importer reads, with prices in dollars, so it can be imported
+ * again. JSON lines hold one object per book, with prices in cents as stored.
+ */
+class InventoryExporter implements ContentProvider.PipeDataWriter<String> {
+
+    private static final String LOG_TAG = InventoryExporter.class.getSimpleName();
+
+    /**
+     * Number of books read per query
+     */
+    static final int PAGE_SIZE = 500;
+
+    /**
+     * Columns written for each book, in this order
+     */
+    private static final String[] EXPORT_COLUMNS = {
+            InventoryEntry.COLUMN_ID,
+            InventoryEntry.COLUMN_PRODUCT_NAME,
+            InventoryEntry.COLUMN_PRICE,
+            InventoryEntry.COLUMN_QUANTITY,
+            InventoryEntry.COLUMN_REORDER_THRESHOLD,
+            InventoryEntry.COLUMN_SUPPLIER_NAME,
+            InventoryEntry.COLUMN_SUPPLIER_PHONE_NUMBER
+    };
+
+    // Positions of the columns in EXPORT_COLUMNS
+    private static final int ID = 0;
+    private static final int PRICE = 2;
+    private static final int QUANTITY = 3;
+    private static final int REORDER_THRESHOLD = 4;
+
+    private final SQLiteDatabase db;
+
+    InventoryExporter(SQLiteDatabase db) {
+        this.db = db;
+    }
+
+    /**
+     * Write the catalog into the pipe.
+     *
+     * @param format {@link InventoryContract#FORMAT_CSV} or {@link InventoryContract#FORMAT_JSON}
+     */
+    @Override
+    public void writeDataToPipe(ParcelFileDescriptor output, Uri uri, String mimeType,
+                                Bundle opts, String format) {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(output.getFileDescriptor()), InventoryContract.EXPORT_CHARSET),
+                16 * 1024);
+        boolean json = InventoryContract.FORMAT_JSON.equals(format);
+        RuntimeException failure = null;
+        try {
+            if (!json) {
+                // The header names the columns the importer reads, without the ID
+                for (int i = 1; i < EXPORT_COLUMNS.length; i++) {
+                    if (i > 1) {
+                        writer.write(',');
+                    }
+                    writer.write(EXPORT_COLUMNS[i]);
+                }
+                writer.write("\r\n");
+            }
+
+            long lastId = 0;
+            while (true) {
+                Cursor page = db.query(InventoryEntry.VIEW_NAME, EXPORT_COLUMNS,
+                        InventoryEntry._ID + " > ?", new String[]{String.valueOf(lastId)},
+                        null, null, InventoryEntry._ID + " ASC", String.valueOf(PAGE_SIZE));
+                try {
+                    if (!page.moveToFirst()) {
+                        break;
+                    }
+                    do {
+                        if (json) {
+                            writeJsonLine(writer, page);
+                        } else {
+                            writeCsvRecord(writer, page);
+                        }
+                        lastId = page.getLong(ID);
+                    } while (page.moveToNext());
+                } finally {
+                    page.close();
+                }
+            }
+            writer.flush();
+        } catch (IOException exception) {
+            // The reader closed its end of the pipe before the end
+            Log.w(LOG_TAG, "Export of " + uri + " stopped early", exception);
+        } catch (RuntimeException exception) {
+            // The catalog couldn't be read. This runs on a pool thread, where the exception
+            // would crash the process, so the reader is told the export failed instead.
+            Log.e(LOG_TAG, "Export of " + uri + " failed", exception);
+            failure = exception;
+        } finally {
+            try {
+                writer.close();
+            } catch (IOException exception) {
+                // The pipe is already closed
+            }
+        }
+
+        // Only once the writer is done with the pipe
+        if (failure != null) {
+            try {
+                output.closeWithError(failure.toString());
+            } catch (IOException exception) {
+                // The reader closed its end of the pipe already
+            }
+        }
+    }
+
+    private static void writeCsvRecord(Writer writer, Cursor book) throws IOException {
+        for (int i = 1; i < EXPORT_COLUMNS.length; i++) {
+            if (i > 1) {
+                writer.write(',');
+            }
+            if (i == PRICE) {
+                writer.write(BigDecimal.valueOf(book.getLong(i), 2).toPlainString());
+            } else if (i == QUANTITY || i == REORDER_THRESHOLD) {
+                writer.write(Long.toString(book.getLong(i)));
+            } else {
+                writeCsvField(writer, book.getString(i));
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    /**
+     * Write a text field, quoted if it holds a comma, a quote or a line break
+     */
+    private static void writeCsvField(Writer writer, String field) throws IOException {
+        if (field == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < field.length() && !quote; i++) {
+            char c = field.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(field);
+            return;
+        }
+        writer.write('"');
+        writer.write(field.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private static void writeJsonLine(Writer writer, Cursor book) throws IOException {
+        writer.write('{');
+        for (int i = 0; i < EXPORT_COLUMNS.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(JSONObject.quote(EXPORT_COLUMNS[i]));
+            writer.write(':');
+            if (book.isNull(i)) {
+                writer.write("null");
+            } else if (i == ID || i == PRICE || i == QUANTITY || i == REORDER_THRESHOLD) {
+                writer.write(Long.toString(book.getLong(i)));
+            } else {
+                writer.write(JSONObject.quote(book.getString(i)));
+            }
+        }
+        writer.write("}\n");
+    }
+}
@@ -1,16 +1,46 @@
 package com.example.android.inventoryapp.data;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.ParcelFileDescriptor;
+import android.os.Process;
+import android.os.Trace;
+import android.provider.OpenableColumns;
 import android.text.TextUtils;
 import android.util.Log;
+import android.util.SparseArray;
 
+import com.example.android.inventoryapp.data.InventoryContract.ImportEntry;
 import com.example.android.inventoryapp.data.InventoryContract.InventoryEntry;
+import com.example.android.inventoryapp.data.InventoryContract.SummaryEntry;
+import com.example.android.inventoryapp.data.InventoryContract.SupplierEntry;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 public class InventoryProvider extends ContentProvider {
 
@@ -24,6 +54,85 @@ public class InventoryProvider extends ContentProvider {
      */
     private static final int INVENTORY_ID = 101;
 
+    /**
+     * URI matcher code for the content URI for a full-text search of the inventory table
+     */
+    private static final int INVENTORY_SEARCH = 102;
+
+    /**
+     * URI matcher code for the content URI for the totals of the whole inventory
+     */
+    private static final int INVENTORY_SUMMARY = 103;
+
+    /**
+     * URI matcher code for the content URI for the totals of each supplier
+     */
+    private static final int INVENTORY_SUMMARY_SUPPLIERS = 104;
+
+    /**
+     * URI matcher code for the content URI for the books that are low on stock
+     */
+    private static final int INVENTORY_LOW_STOCK = 105;
+
+    /**
+     * URI matcher code for the content URI to export the whole inventory as a file
+     */
+    private static final int INVENTORY_EXPORT = 106;
+
+    /**
+     * URI matcher code for the content URI for the suppliers table
+     */
+    private static final int SUPPLIERS = 200;
+
+    /**
+     * URI matcher code for the content URI for a single supplier
+     */
+    private static final int SUPPLIER_ID = 201;
+
+    /**
+     * URI matcher code for the content URI for the books of a single supplier
+     */
+    private static final int SUPPLIER_INVENTORY = 202;
+
+    /**
+     * URI matcher code for the content URI for the slow-query log
+     */
+    private static final int SLOW_QUERIES = 400;
+
+    /**
+     * URI matcher code for the content URI for the imports table
+     */
+    private static final int IMPORTS = 300;
+
+    /**
+     * URI matcher code for the content URI for a single import
+     */
+    private static final int IMPORT_ID = 301;
+
+    /**
+     * Selection of the books that are low on stock. It is the condition of the low-stock partial
+     * index, word for word, so SQLite reads the books from that index.
+     */
+    static final String LOW_STOCK_SELECTION =
+            InventoryEntry.COLUMN_QUANTITY + " <= " + InventoryEntry.COLUMN_REORDER_THRESHOLD;
+
+    /**
+     * Memory budget of the books kept in the record cache. A record takes about 200 bytes, so
+     * this holds the last thousand or so books listed or viewed.
+     */
+    private static final int RECORD_CACHE_BYTES = 256 * 1024;
+
+    /**
+     * Number of books read when the database is warmed up, about the first page of the catalog
+     */
+    private static final int WARM_UP_ROWS = 50;
+
+    /**
+     * Delay before the catalog snapshot is written after a change, so a burst of changes such as
+     * an import or a run of sales writes it once
+     */
+    private static final long SNAPSHOT_DELAY_MILLIS = 2000;
+
     /**
      * UriMatcher object to match a content URI to a corresponding code.
      * The input passed into the constructor represents the code to return for the root URI.
@@ -31,16 +140,56 @@ public class InventoryProvider extends ContentProvider {
      */
     private static final UriMatcher uriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
 
+    /**
+     * URI path of each match code, reported with the metrics of the calls on it
+     */
+    private static final SparseArray<String> matchPaths = new SparseArray<>();
+
+    /**
+     * Codes under which the metrics of the provider methods are recorded, since they have no URI
+     */
+    private static final int METHOD_SELL = 900;
+    private static final int METHOD_SELL_BATCH = 901;
+
+    /**
+     * Add a URI pattern under the content authority to the matcher, and remember its path for
+     * the metrics
+     */
+    private static void addUri(String path, int code) {
+        uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, path, code);
+        matchPaths.put(code, path);
+    }
+
     // Static initializer. This is run the first time anything is called from this calss.
     static {
-        // The calls to addURI() go here, for all of the content URI patterns that the provider
+        // The calls to addUri() go here, for all of the content URI patterns that the provider
         // should recognize. All paths added to the UriMatcher have a coresponding code to return
         // when a match is found
 
-        uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
-                InventoryContract.PATH_INVENTORY, INVENTORY);
-        uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
-                InventoryContract.PATH_INVENTORY + "/#", INVENTORY_ID);
+        addUri(InventoryContract.PATH_INVENTORY, INVENTORY);
+        addUri(InventoryContract.PATH_INVENTORY + "/#", INVENTORY_ID);
+        addUri(InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_SEARCH,
+                INVENTORY_SEARCH);
+        addUri(InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_SUMMARY,
+                INVENTORY_SUMMARY);
+        addUri(InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_SUMMARY + "/"
+                + InventoryContract.PATH_SUPPLIERS, INVENTORY_SUMMARY_SUPPLIERS);
+        addUri(InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_LOW_STOCK,
+                INVENTORY_LOW_STOCK);
+        addUri(InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_EXPORT,
+                INVENTORY_EXPORT);
+        addUri(InventoryContract.PATH_SUPPLIERS, SUPPLIERS);
+        addUri(InventoryContract.PATH_SUPPLIERS + "/#", SUPPLIER_ID);
+        addUri(InventoryContract.PATH_SUPPLIERS + "/#/" + InventoryContract.PATH_INVENTORY,
+                SUPPLIER_INVENTORY);
+        addUri(InventoryContract.PATH_IMPORTS, IMPORTS);
+        addUri(InventoryContract.PATH_IMPORTS + "/#", IMPORT_ID);
+        addUri(InventoryContract.PATH_SLOW_QUERIES, SLOW_QUERIES);
+
+        // Calls on no URI, such as batches, and the provider methods
+        matchPaths.put(UriMatcher.NO_MATCH, "*");
+        matchPaths.put(METHOD_SELL, "call/" + InventoryContract.METHOD_SELL);
+        matchPaths.put(METHOD_SELL_BATCH, "call/" + InventoryContract.METHOD_SELL_BATCH);
     }
 
     /**
@@ -53,34 +202,184 @@ public class InventoryProvider extends ContentProvider {
      */
     private InventoryDbHelper dbHelper;
 
+    /**
+     * Set while {@link #applyBatch(ArrayList)} runs on the current thread. Null when no batch is
+     * in progress, otherwise true once one of the operations has changed the data. Change
+     * notifications raised during the batch are held back and sent once when it commits.
+     */
+    private final ThreadLocal<Boolean> pendingBatchNotification = new ThreadLocal<>();
+
+    /**
+     * Number and latency of the calls to each entry point, by match code
+     */
+    private final ProviderMetrics metrics = createMetrics();
+
+    /**
+     * Log of the queries that took longer than the threshold
+     */
+    private SlowQueryLog slowQueryLog;
+
+    /**
+     * Books read lately, to answer single book queries without reading the database
+     */
+    private final InventoryRecordCache recordCache = new InventoryRecordCache(RECORD_CACHE_BYTES);
+
+    /**
+     * Handler of the background thread the {@link CatalogSnapshot} is written on
+     */
+    private Handler snapshotHandler;
+
+    private final Runnable snapshotWriter = new Runnable() {
+        @Override
+        public void run() {
+            writeSnapshot();
+        }
+    };
+
+    private static ProviderMetrics createMetrics() {
+        int[] codes = new int[matchPaths.size()];
+        String[] paths = new String[matchPaths.size()];
+        for (int i = 0; i < codes.length; i++) {
+            // The keys of a SparseArray are in ascending order
+            codes[i] = matchPaths.keyAt(i);
+            paths[i] = matchPaths.valueAt(i);
+        }
+        return new ProviderMetrics(codes, paths);
+    }
+
     @Override
     public boolean onCreate() {
-        dbHelper = new InventoryDbHelper(getContext());
+        Trace.beginSection("InventoryProvider.onCreate");
+        try {
+            dbHelper = new InventoryDbHelper(getContext());
+            slowQueryLog = new SlowQueryLog(getContext());
+
+            HandlerThread snapshotThread = new HandlerThread("CatalogSnapshot",
+                    Process.THREAD_PRIORITY_BACKGROUND);
+            snapshotThread.start();
+            snapshotHandler = new Handler(snapshotThread.getLooper());
+
+            // The provider is created as the process starts, before the first activity. Open the
+            // database while that activity inflates its views, so its first query doesn't wait
+            // for the database to be opened and upgraded.
+            AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    warmUp();
+                }
+            });
+        } finally {
+            Trace.endSection();
+        }
         return true;
     }
 
     /**
-     * Perform the query for the given URI. Use the given projection, selection, selection arguments, and sort order.
+     * Open the database, then read the first books so their pages are in memory and their
+     * records cached. A query that comes in meanwhile waits for the database to be open, which
+     * it would have to do anyway. Errors are logged and left for that query to report.
      */
+    private void warmUp() {
+        try {
+            Trace.beginSection("InventoryProvider.openDatabase");
+            try {
+                dbHelper.getStatements();
+            } finally {
+                Trace.endSection();
+            }
+
+            Trace.beginSection("InventoryProvider.readFirstBooks");
+            try {
+                queryTable(dbHelper.getReadableDatabase(), InventoryEntry.VIEW_NAME,
+                        InventoryRecord.COLUMNS, null, null, InventoryEntry._ID + " ASC",
+                        String.valueOf(WARM_UP_ROWS)).close();
+            } finally {
+                Trace.endSection();
+            }
+
+            // Write the first snapshot, after an install or an upgrade
+            if (!CatalogSnapshot.exists(getContext())) {
+                snapshotHandler.post(snapshotWriter);
+            }
+        } catch (SQLiteException exception) {
+            Log.e(LOG_TAG, "Failed to warm up the database", exception);
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_COMPLETE) {
+            recordCache.trim(0);
+        } else if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_LOW) {
+            recordCache.trim(50);
+        }
+    }
+
     @Override
     public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
                         String sortOrder) {
+        long start = System.nanoTime();
+        int match = uriMatcher.match(uri);
+        boolean failed = true;
+        try {
+            Cursor cursor = performQuery(match, uri, projection, selection, selectionArgs,
+                    sortOrder);
+            // A cursor only runs its query when first asked for its rows, so count them now
+            // to measure the query. The count is kept, so the caller doesn't run it again.
+            cursor.getCount();
+            failed = false;
+            return cursor;
+        } finally {
+            metrics.record(ProviderMetrics.QUERY, match, start, failed);
+        }
+    }
+
+    /**
+     * Perform the query for the given URI. Use the given projection, selection, selection arguments, and sort order.
+     */
+    private Cursor performQuery(int match, Uri uri, String[] projection, String selection,
+                                String[] selectionArgs, String sortOrder) {
         // Get readable database
         SQLiteDatabase database = dbHelper.getReadableDatabase();
 
         // This cursor will hold the result of the query
         Cursor cursor;
 
-        // Figure out if the URI matcher can match the URI to a specific code
-        int match = uriMatcher.match(uri);
+        // The URI matcher has matched the URI to a specific code
         switch (match) {
             case INVENTORY:
                 // For the INVENTORY code, query the inventory table directly with the given
                 // projection, selection, selection arguments, and sort order. The cursor
                 // could contain multiple rows of the inventory table.
-                cursor = database.query(InventoryContract.InventoryEntry.TABLE_NAME, projection, selection,
-                        selectionArgs, null, null, sortOrder);
+                cursor = queryInventoryList(database, uri, projection, selection, selectionArgs,
+                        sortOrder);
                 break;
+            case INVENTORY_SEARCH:
+                // For the INVENTORY_SEARCH code, only return the books whose title or supplier
+                // name contains words starting with the words of the search query. The full-text
+                // index finds the matching IDs, which are then looked up in the inventory table.
+                String matchQuery = buildMatchQuery(
+                        uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_QUERY));
+                if (matchQuery == null) {
+                    // Nothing to search for, so nothing matches
+                    selection = "0";
+                    selectionArgs = null;
+                } else {
+                    selection = DatabaseUtils.concatenateWhere(selection, InventoryEntry._ID
+                            + " IN (SELECT docid FROM " + InventoryEntry.SEARCH_TABLE_NAME
+                            + " WHERE " + InventoryEntry.SEARCH_TABLE_NAME + " MATCH ?)");
+                    selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                            new String[]{matchQuery});
+                }
+                cursor = queryInventoryList(database, uri, projection, selection, selectionArgs,
+                        sortOrder);
+
+                // Search results can change whenever any book changes, so watch the whole
+                // inventory rather than the search URI
+                cursor.setNotificationUri(getContext().getContentResolver(),
+                        InventoryEntry.CONTENT_URI);
+                return cursor;
             case INVENTORY_ID:
                 // For the INVENTORY_ID code, extract out the ID from the URI.
                 // For an example URI such as "content://com.example.android.inventoryapp/inventory/3",
@@ -90,14 +389,102 @@ public class InventoryProvider extends ContentProvider {
                 // For every "?" in the selection, we need to have an element in the selection
                 // arguments that will fill in the "?". Since we have 1 question mark in the
                 // selection, we have 1 String in the selection arguments' String array.
-                selection = InventoryEntry._ID + "=?";
-                selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
+                long id = ContentUris.parseId(uri);
 
-                // This will perform a query on the inventory table where the _id equals 3 to return a
-                // Cursor containing that row of the table.
-                cursor = database.query(InventoryEntry.TABLE_NAME, projection, selection, selectionArgs,
-                        null, null, sortOrder);
+                // A book listed or viewed lately is answered from the record cache, without
+                // reading the database
+                cursor = queryRecordCache(id, projection, selection, sortOrder);
+                if (cursor == null) {
+                    selection = InventoryEntry._ID + "=?";
+                    selectionArgs = new String[]{String.valueOf(id)};
+
+                    // This will perform a query on the inventory table where the _id equals 3 to
+                    // return a Cursor containing that row of the table, with the supplier joined in.
+                    cursor = queryTable(database, InventoryEntry.VIEW_NAME, projection,
+                            selection, selectionArgs, sortOrder, null);
+                }
+
+                // Changes to a single book are announced under its row URI rather than under
+                // the inventory content URI, so watch that one
+                cursor.setNotificationUri(getContext().getContentResolver(),
+                        ContentUris.withAppendedId(InventoryEntry.CONTENT_ROWS_URI, id));
+                return cursor;
+            case INVENTORY_LOW_STOCK:
+                // For the INVENTORY_LOW_STOCK code, only return the books at or below their
+                // reorder threshold, by title in the order of the low-stock index
+                selection = DatabaseUtils.concatenateWhere(selection, LOW_STOCK_SELECTION);
+                if (sortOrder == null) {
+                    sortOrder = InventoryEntry.COLUMN_TITLE_SORT_KEY + " ASC";
+                }
+                cursor = queryTable(database, InventoryEntry.VIEW_NAME, projection,
+                        selection, selectionArgs, sortOrder, null);
+
+                // Sales are announced under row URIs, so watch everything under the base URI
+                cursor.setNotificationUri(getContext().getContentResolver(),
+                        InventoryContract.BASE_CONTENT_URI);
+                return cursor;
+            case INVENTORY_SUMMARY:
+            case INVENTORY_SUMMARY_SUPPLIERS:
+                // For the summary codes, read the running totals the database keeps for the
+                // whole inventory or for each supplier. No books are scanned.
+                if (match == INVENTORY_SUMMARY) {
+                    cursor = queryTable(database, SummaryEntry.TABLE_NAME, projection,
+                            selection, selectionArgs, sortOrder, null);
+                } else {
+                    if (sortOrder == null) {
+                        sortOrder = SummaryEntry.COLUMN_SUPPLIER_NAME + " ASC";
+                    }
+                    cursor = queryTable(database, SummaryEntry.SUPPLIER_VIEW_NAME, projection,
+                            selection, selectionArgs, sortOrder, null);
+                }
+
+                // The totals change with any book, including changes announced under a row URI,
+                // so watch everything under the base content URI
+                cursor.setNotificationUri(getContext().getContentResolver(),
+                        InventoryContract.BASE_CONTENT_URI);
+                return cursor;
+            case SUPPLIERS:
+                // For the SUPPLIERS code, query the suppliers table directly
+                cursor = queryTable(database, SupplierEntry.TABLE_NAME, projection,
+                        selection, selectionArgs, sortOrder, null);
                 break;
+            case SUPPLIER_ID:
+                // For the SUPPLIER_ID code, return the single supplier with the ID in the URI
+                selection = SupplierEntry._ID + "=?";
+                selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
+                cursor = queryTable(database, SupplierEntry.TABLE_NAME, projection,
+                        selection, selectionArgs, sortOrder, null);
+                break;
+            case SUPPLIER_INVENTORY:
+                // For the SUPPLIER_INVENTORY code, return the books of the supplier with the ID
+                // in the URI. They are found through the index on the supplier ID of the books.
+                selection = DatabaseUtils.concatenateWhere(selection,
+                        InventoryEntry.COLUMN_SUPPLIER_ID + "=?");
+                selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                        new String[]{uri.getPathSegments().get(1)});
+                cursor = queryTable(database, InventoryEntry.VIEW_NAME, projection,
+                        selection, selectionArgs, sortOrder, null);
+
+                // Sales are announced under row URIs, so watch everything under the base URI
+                cursor.setNotificationUri(getContext().getContentResolver(),
+                        InventoryContract.BASE_CONTENT_URI);
+                return cursor;
+            case IMPORTS:
+                // For the IMPORTS code, query the imports table directly. The progress of an
+                // import is only of interest to the importer, so no notification URI is set.
+                return queryTable(database, ImportEntry.TABLE_NAME, projection,
+                        selection, selectionArgs, sortOrder, null);
+            case IMPORT_ID:
+                selection = ImportEntry._ID + "=?";
+                selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
+                return queryTable(database, ImportEntry.TABLE_NAME, projection,
+                        selection, selectionArgs, sortOrder, null);
+            case INVENTORY_EXPORT:
+                // Apps receiving the export ask for its name and size. The size isn't known
+                // until the file has been written, so it is left out.
+                return queryOpenableFile(projection, "inventory." + getExportFormat(uri));
+            case SLOW_QUERIES:
+                return queryOpenableFile(projection, "slow_queries.txt");
             default:
                 throw new IllegalArgumentException("Cannot query unknown URI " + uri);
         }
@@ -111,14 +498,239 @@ public class InventoryProvider extends ContentProvider {
     }
 
     /**
-     * Insert new data into the provider with the given ContentValues.
+     * Query a table or view. The query is run before returning, and recorded in the slow-query
+     * log with its plan if it took too long. Books read with all their columns are added to the
+     * record cache.
+     */
+    private Cursor queryTable(SQLiteDatabase database, String table, String[] projection,
+                              String selection, String[] selectionArgs, String sortOrder,
+                              String limit) {
+        String sql = SQLiteQueryBuilder.buildQueryString(false, table, projection, selection,
+                null, null, sortOrder, limit);
+        long generation = recordCache.getGeneration();
+        long start = System.nanoTime();
+        Cursor cursor = database.rawQuery(sql, selectionArgs);
+        // SQLite only runs the query when the rows are first counted
+        cursor.getCount();
+        long nanos = System.nanoTime() - start;
+        if (slowQueryLog.isSlow(nanos)) {
+            slowQueryLog.record(database, sql, selectionArgs, nanos);
+        }
+        if (InventoryEntry.VIEW_NAME.equals(table)) {
+            recordCache.putAll(cursor, generation);
+        }
+        return cursor;
+    }
+
+    /**
+     * Answer a query for a single book from the record cache. Return null if the book isn't
+     * cached, or if the query asks for more than a cached record holds.
+     */
+    private Cursor queryRecordCache(long id, String[] projection, String selection,
+                                    String sortOrder) {
+        if (projection == null || selection != null || sortOrder != null) {
+            return null;
+        }
+        int[] columns = new int[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            columns[i] = Arrays.asList(InventoryRecord.COLUMNS).indexOf(projection[i]);
+            if (columns[i] == -1) {
+                return null;
+            }
+        }
+
+        InventoryRecord record = recordCache.get(id);
+        if (record == null) {
+            return null;
+        }
+        Object[] row = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            row[i] = record.getValue(columns[i]);
+        }
+        MatrixCursor cursor = new MatrixCursor(projection, 1);
+        cursor.addRow(row);
+        return cursor;
+    }
+
+    /**
+     * Query a list of books from the inventory table, sorted, filtered and paged as the URI
+     * asks.
      */
+    private Cursor queryInventoryList(SQLiteDatabase database, Uri uri, String[] projection,
+                                      String selection, String[] selectionArgs, String sortOrder) {
+        ListQuery query = buildListQuery(uri, selection, selectionArgs, sortOrder);
+        return queryTable(database, InventoryEntry.VIEW_NAME, projection,
+                query.selection, query.selectionArgs, query.sortOrder, query.limit);
+    }
+
+    /**
+     * Selection, order and limit of a query on {@link InventoryEntry#VIEW_NAME}
+     */
+    static final class ListQuery {
+        final String selection;
+        final String[] selectionArgs;
+        final String sortOrder;
+        final String limit;
+
+        ListQuery(String selection, String[] selectionArgs, String sortOrder, String limit) {
+            this.selection = selection;
+            this.selectionArgs = selectionArgs;
+            this.sortOrder = sortOrder;
+            this.limit = limit;
+        }
+    }
+
+    /**
+     * Add the sort, filters and page asked for by the query parameters of a list URI to the
+     * selection and order of the query.
+     * <p>
+     * Each sort has an index over its column, and one over the supplier ID and its column for the
+     * supplier filter, so the books are read in order from that index. The other filters are
+     * checked on each book as it is read. They are written with a unary plus, which keeps SQLite
+     * from reading the books through the index of the filter column instead and then sorting
+     * them all to find the first page. Pages start after the sort key and ID of the last book of
+     * the previous page, which is an index seek however deep into the list the page is.
+     */
+    static ListQuery buildListQuery(Uri uri, String selection, String[] selectionArgs,
+                                    String sortOrder) {
+        String sort = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_SORT);
+        String sortColumn = InventoryEntry.getSortColumn(sort);
+        boolean descending = InventoryContract.SORT_RECENT.equals(sort);
+        String direction = descending ? " DESC" : " ASC";
+
+        String supplier = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_SUPPLIER);
+        if (supplier != null) {
+            selection = DatabaseUtils.concatenateWhere(selection,
+                    InventoryEntry.COLUMN_SUPPLIER_ID + " = ?");
+            selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                    new String[]{String.valueOf(parseNonNegativeLong(supplier, uri))});
+        }
+
+        String stock = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_STOCK);
+        if (stock != null) {
+            String quantity = filterColumn(InventoryEntry.COLUMN_QUANTITY, sortColumn);
+            if (InventoryContract.STOCK_IN.equals(stock)) {
+                selection = DatabaseUtils.concatenateWhere(selection, quantity + " > 0");
+            } else if (InventoryContract.STOCK_OUT.equals(stock)) {
+                selection = DatabaseUtils.concatenateWhere(selection, quantity + " <= 0");
+            } else {
+                throw new IllegalArgumentException("Invalid query parameter " + stock + " in "
+                        + uri);
+            }
+        }
+
+        // Selection arguments are bound as text, and a column written with + has no affinity to
+        // turn them into numbers, so the parsed prices are written into the SQL instead
+        String price = filterColumn(InventoryEntry.COLUMN_PRICE, sortColumn);
+        String minPrice = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_MIN_PRICE);
+        if (minPrice != null) {
+            selection = DatabaseUtils.concatenateWhere(selection,
+                    price + " >= " + parseNonNegativeLong(minPrice, uri));
+        }
+        String maxPrice = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_MAX_PRICE);
+        if (maxPrice != null) {
+            selection = DatabaseUtils.concatenateWhere(selection,
+                    price + " <= " + parseNonNegativeLong(maxPrice, uri));
+        }
+
+        String limit = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_LIMIT);
+        if (limit != null || sort != null) {
+            if (sortOrder != null) {
+                throw new IllegalArgumentException("Sorted and paged queries are ordered by the "
+                        + InventoryContract.QUERY_PARAMETER_SORT + " parameter " + uri);
+            }
+            sortOrder = sort == null
+                    ? InventoryEntry._ID + direction
+                    : sortColumn + direction + ", " + InventoryEntry._ID + direction;
+        }
+
+        String after = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_AFTER);
+        if (limit != null) {
+            limit = String.valueOf(parsePositiveInt(limit, uri));
+            if (after != null) {
+                String afterId = String.valueOf(Long.parseLong(after));
+                if (sort == null) {
+                    selection = DatabaseUtils.concatenateWhere(selection,
+                            InventoryEntry._ID + " > ?");
+                    selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                            new String[]{afterId});
+                } else {
+                    String afterKey = uri.getQueryParameter(
+                            InventoryContract.QUERY_PARAMETER_AFTER_KEY);
+                    if (afterKey == null) {
+                        throw new IllegalArgumentException("Sorted pages start after a "
+                                + InventoryContract.QUERY_PARAMETER_AFTER_KEY + " " + uri);
+                    }
+
+                    // The first comparison is the index seek, the others skip the books
+                    // with the same key up to the last book of the previous page
+                    String comesAfter = descending ? " < ?" : " > ?";
+                    selection = DatabaseUtils.concatenateWhere(selection, sortColumn
+                            + (descending ? " <= ?" : " >= ?") + " AND (" + sortColumn
+                            + comesAfter + " OR " + InventoryEntry._ID + comesAfter + ")");
+                    selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                            new String[]{afterKey, afterKey, afterId});
+                }
+            }
+        }
+        return new ListQuery(selection, selectionArgs, sortOrder, limit);
+    }
+
+    /**
+     * Return the column to compare in a filter, written so that SQLite doesn't read the books
+     * through its index unless it is the sort column
+     */
+    private static String filterColumn(String column, String sortColumn) {
+        return column.equals(sortColumn) ? column : "+" + column;
+    }
+
+    /**
+     * Turn what the user typed into a full-text MATCH expression that finds every book with
+     * words starting with each of the typed words. Characters with a special meaning in MATCH
+     * expressions are dropped. Return null if nothing searchable was typed.
+     */
+    static String buildMatchQuery(String query) {
+        if (query == null) {
+            return null;
+        }
+
+        StringBuilder matchQuery = new StringBuilder();
+        for (String word : query.split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                if (matchQuery.length() > 0) {
+                    matchQuery.append(' ');
+                }
+                matchQuery.append(word).append('*');
+            }
+        }
+        return matchQuery.length() == 0 ? null : matchQuery.toString();
+    }
+
     @Override
     public Uri insert(Uri uri, ContentValues contentValues) {
-        final int match = uriMatcher.match(uri);
+        long start = System.nanoTime();
+        int match = uriMatcher.match(uri);
+        boolean failed = true;
+        try {
+            Uri newUri = performInsert(match, uri, contentValues);
+            failed = false;
+            return newUri;
+        } finally {
+            metrics.record(ProviderMetrics.INSERT, match, start, failed);
+        }
+    }
+
+    /**
+     * Insert new data into the provider with the given ContentValues.
+     */
+    private Uri performInsert(int match, Uri uri, ContentValues contentValues) {
         switch (match) {
             case INVENTORY:
                 return insertInventory(uri, contentValues);
+            case SUPPLIERS:
+                return insertSupplier(uri, contentValues);
+            case IMPORTS:
+                return insertImport(uri, contentValues);
             default:
                 throw new IllegalArgumentException("Insertion is not supported for " + uri);
         }
@@ -130,6 +742,185 @@ public class InventoryProvider extends ContentProvider {
      */
     private Uri insertInventory(Uri uri, ContentValues values) {
 
+        // Check that all the book attributes are present and valid
+        validateInventory(values);
+
+        // gets the compiled statements of the database in write mode
+        InventoryStatements statements = dbHelper.getStatements();
+        SQLiteDatabase db = statements.getDatabase();
+
+        // Find or add the supplier and insert the book in one transaction
+        long id;
+        db.beginTransactionNonExclusive();
+        try {
+            // insert the values
+            id = insertBook(statements, values, getSupplierId(db, values, null));
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        // If the ID is -1, then the insertion failed. Log an error and return null.
+        if (id == -1) {
+            Log.e(LOG_TAG, "Failed to insert row for " + uri);
+            return null;
+        }
+
+        // Notify all listeners that the list of books has changed
+        notifyInventoryListChanged();
+
+        // Return the new URI with the ID (of the newly inserted row) appended at the end
+        return ContentUris.withAppendedId(uri, id);
+    }
+
+    @Override
+    public int bulkInsert(Uri uri, ContentValues[] values) {
+        long start = System.nanoTime();
+        int match = uriMatcher.match(uri);
+        boolean failed = true;
+        try {
+            int rowsInserted = performBulkInsert(match, uri, values);
+            failed = false;
+            return rowsInserted;
+        } finally {
+            metrics.record(ProviderMetrics.BULK_INSERT, match, start, failed);
+        }
+    }
+
+    /**
+     * Insert a batch of new data into the provider with the given ContentValues.
+     */
+    private int performBulkInsert(int match, Uri uri, ContentValues[] values) {
+        switch (match) {
+            case INVENTORY:
+                return bulkInsertInventory(uri, values);
+            default:
+                throw new IllegalArgumentException("Insertion is not supported for " + uri);
+        }
+    }
+
+    /**
+     * Insert several books into the database inside a single transaction. Every row is validated
+     * before anything is written, so one bad row rejects the whole batch. Listeners are notified
+     * once after the transaction commits. Return the number of rows that were inserted.
+     * <p>
+     * If the URI was built by {@link InventoryEntry#buildImportChunkUri(long, long)}, the
+     * progress of the import is saved in the same transaction.
+     */
+    private int bulkInsertInventory(Uri uri, ContentValues[] values) {
+
+        // Check every book before touching the database
+        for (ContentValues value : values) {
+            validateInventory(value);
+        }
+
+        String importId = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_IMPORT);
+        String recordsDone = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_RECORDS_DONE);
+        if ((importId == null) != (recordsDone == null)) {
+            throw new IllegalArgumentException("Import chunk requires the records done " + uri);
+        }
+
+        // gets the compiled statements of the database in write mode
+        InventoryStatements statements = dbHelper.getStatements();
+        SQLiteDatabase db = statements.getDatabase();
+
+        // Track the number of rows that were inserted
+        int rowsInserted = 0;
+
+        // Suppliers already looked up in this batch, so books of the same supplier only look it
+        // up once
+        Map<String, Long> supplierIds = new HashMap<>();
+
+        // Insert all rows in one transaction so the batch costs a single journal commit.
+        // The transaction is non-exclusive so readers keep going while it runs.
+        db.beginTransactionNonExclusive();
+        try {
+            // Every book is written by the same compiled statement, so the SQL is never parsed
+            // again
+            for (ContentValues value : values) {
+                long id = insertBook(statements, value, getSupplierId(db, value, supplierIds));
+                if (id == -1) {
+                    Log.e(LOG_TAG, "Failed to insert row for " + uri);
+                } else {
+                    rowsInserted++;
+                }
+            }
+
+            // Save how far the import got along with its books
+            if (importId != null) {
+                db.execSQL("UPDATE " + ImportEntry.TABLE_NAME
+                                + " SET " + ImportEntry.COLUMN_RECORDS_DONE + " = ?"
+                                + " WHERE " + ImportEntry._ID + " = ?",
+                        new Object[]{Long.parseLong(recordsDone), Long.parseLong(importId)});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        // If 1 or more rows were inserted, then notify all listeners once for the whole batch
+        if (rowsInserted != 0) {
+            notifyInventoryListChanged();
+        }
+
+        return rowsInserted;
+    }
+
+    /**
+     * Apply a batch of insert, update and delete operations inside a single transaction. Either
+     * all operations are applied or none of them are. Listeners are notified once after the
+     * transaction commits instead of once per operation.
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            ContentProviderResult[] results = performApplyBatch(operations);
+            failed = false;
+            return results;
+        } finally {
+            metrics.record(ProviderMetrics.APPLY_BATCH, UriMatcher.NO_MATCH, start, failed);
+        }
+    }
+
+    private ContentProviderResult[] performApplyBatch(
+            ArrayList<ContentProviderOperation> operations) throws OperationApplicationException {
+        // gets the database in write mode
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+
+        ContentProviderResult[] results;
+        boolean dataChanged;
+
+        pendingBatchNotification.set(false);
+        db.beginTransactionNonExclusive();
+        try {
+            results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            dataChanged = pendingBatchNotification.get();
+            pendingBatchNotification.remove();
+        }
+
+        // Notify all listeners once for the whole batch. The records cached while the batch
+        // ran may have been read before it committed, so they are all dropped.
+        if (dataChanged) {
+            notifyInventoryChanged();
+        }
+
+        return results;
+    }
+
+    /**
+     * Check that the given content values describe a complete and valid book. Throws an
+     * {@link IllegalArgumentException} naming the first attribute that is missing or invalid.
+     *
+     * @param values the book attributes to be inserted
+     */
+    public static void validateInventory(ContentValues values) {
+
         // Check that the title is not null
         String title = values.getAsString(InventoryEntry.COLUMN_PRODUCT_NAME);
         if (title == null || title.isEmpty()) {
@@ -137,7 +928,7 @@ public class InventoryProvider extends ContentProvider {
         }
 
         // Check that Price is not null and is not negative
-        Double price = values.getAsDouble(InventoryEntry.COLUMN_PRICE);
+        Long price = getPriceInCents(values);
         if (price == null || price < 0) {
             throw new IllegalArgumentException("Book requires a valid price");
         }
@@ -148,54 +939,247 @@ public class InventoryProvider extends ContentProvider {
             throw new IllegalArgumentException("Book requires valid quantity");
         }
 
+        // Check that the book has a supplier, given by ID or by name and phone number. The
+        // phone number is checked when a new supplier is added.
+        if (values.containsKey(InventoryEntry.COLUMN_SUPPLIER_ID)) {
+            if (values.getAsLong(InventoryEntry.COLUMN_SUPPLIER_ID) == null) {
+                throw new IllegalArgumentException("Book requires a valid supplier");
+            }
+        } else {
+            validateSupplierReference(values);
+        }
+
+        // The reorder threshold is optional, but if given it must not be negative
+        if (values.containsKey(InventoryEntry.COLUMN_REORDER_THRESHOLD)) {
+            Integer reorderThreshold = values.getAsInteger(InventoryEntry.COLUMN_REORDER_THRESHOLD);
+            if (reorderThreshold == null || reorderThreshold < 0) {
+                throw new IllegalArgumentException("Book requires valid reorder threshold");
+            }
+        }
+    }
+
+    /**
+     * Check that the content values give a supplier by both its name and phone number.
+     */
+    private static void validateSupplierReference(ContentValues values) {
+
         // Check that the supplier name is not null
         String supplierName = values.getAsString(InventoryEntry.COLUMN_SUPPLIER_NAME);
-        if (supplierName == null || supplierName.isEmpty()) {
+        if (supplierName == null || supplierName.trim().isEmpty()) {
             throw new IllegalArgumentException("Book requires supplier name");
         }
 
-        // Check that the supplier phone number is not null and is a valid phone number
-        String supplierPhoneNumber = values.getAsString(InventoryEntry.COLUMN_SUPPLIER_PHONE_NUMBER);
-        if (!isValidPhoneNumber(supplierPhoneNumber)) {
+        // Check that the supplier phone number is not null
+        if (values.getAsString(InventoryEntry.COLUMN_SUPPLIER_PHONE_NUMBER) == null) {
             throw new IllegalArgumentException("Book requires supplier phone number");
         }
+    }
 
-        // gets the database in write mode
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
+    /**
+     * Insert a validated book with the compiled insert statement, given the ID of its supplier.
+     * Must be called inside a transaction. Return the ID of the new book, or -1 on failure.
+     */
+    private static long insertBook(InventoryStatements statements, ContentValues values,
+                                   long supplierId) {
+        String title = values.getAsString(InventoryEntry.COLUMN_PRODUCT_NAME);
+        Long reorderThreshold = values.getAsLong(InventoryEntry.COLUMN_REORDER_THRESHOLD);
+        return statements.insertBook(title, getPriceInCents(values),
+                values.getAsLong(InventoryEntry.COLUMN_QUANTITY),
+                reorderThreshold == null ? 0 : reorderThreshold, supplierId,
+                TitleSortKey.of(title));
+    }
 
-        // insert the values
-        long id = db.insert(InventoryEntry.TABLE_NAME, null, values);
+    /**
+     * Return the content values to write for a book, with the supplier name and phone number
+     * replaced by the ID of the supplier. The supplier is looked up by its name and phone number
+     * through the supplier index, and added if there is none, in which case its phone number is
+     * checked. Must be called inside a transaction.
+     *
+     * @param db          the database being written
+     * @param values      the content values of the book, which are left unchanged
+     * @param supplierIds suppliers already looked up, keyed by name and phone number, or null
+     */
+    private static ContentValues resolveSupplier(SQLiteDatabase db, ContentValues values,
+                                                 Map<String, Long> supplierIds) {
+        if (!values.containsKey(InventoryEntry.COLUMN_SUPPLIER_NAME)) {
+            return values;
+        }
+        ContentValues resolved = new ContentValues(values);
+        resolved.remove(InventoryEntry.COLUMN_SUPPLIER_NAME);
+        resolved.remove(InventoryEntry.COLUMN_SUPPLIER_PHONE_NUMBER);
+        resolved.put(InventoryEntry.COLUMN_SUPPLIER_ID, getSupplierId(db, values, supplierIds));
+        return resolved;
+    }
 
-        // If the ID is -1, then the insertion failed. Log an error and return null.
-        if (id == -1) {
-            Log.e(LOG_TAG, "Failed to insert row for " + uri);
-            return null;
+    /**
+     * Return the ID of the supplier of a book, given either by ID or by name and phone number
+     * as in {@link #resolveSupplier(SQLiteDatabase, ContentValues, Map)}. Return null if the
+     * content values don't give a supplier.
+     */
+    private static Long getSupplierId(SQLiteDatabase db, ContentValues values,
+                                      Map<String, Long> supplierIds) {
+        if (!values.containsKey(InventoryEntry.COLUMN_SUPPLIER_NAME)) {
+            return values.getAsLong(InventoryEntry.COLUMN_SUPPLIER_ID);
         }
+        String name = values.getAsString(InventoryEntry.COLUMN_SUPPLIER_NAME).trim();
+        String phoneNumber = values.getAsString(InventoryEntry.COLUMN_SUPPLIER_PHONE_NUMBER).trim();
 
-        // Notify all listeners that the data has changed for the inventory content URI
-        getContext().getContentResolver().notifyChange(uri, null);
+        String key = name + '\n' + phoneNumber;
+        Long supplierId = supplierIds == null ? null : supplierIds.get(key);
+        if (supplierId == null) {
+            supplierId = findOrInsertSupplier(db, name, phoneNumber);
+            if (supplierIds != null) {
+                supplierIds.put(key, supplierId);
+            }
+        }
+        return supplierId;
+    }
 
-        // Return the new URI with the ID (of the newly inserted row) appended at the end
+    /**
+     * Return the ID of the supplier with the given name and phone number, adding the supplier if
+     * there is none. The phone number is only checked when a supplier is added.
+     */
+    private static long findOrInsertSupplier(SQLiteDatabase db, String name, String phoneNumber) {
+        SQLiteStatement lookup = db.compileStatement("SELECT " + SupplierEntry._ID
+                + " FROM " + SupplierEntry.TABLE_NAME
+                + " WHERE " + SupplierEntry.COLUMN_NAME + " = ?"
+                + " AND " + SupplierEntry.COLUMN_PHONE_NUMBER + " = ?");
+        try {
+            lookup.bindString(1, name);
+            lookup.bindString(2, phoneNumber);
+            return lookup.simpleQueryForLong();
+        } catch (SQLiteDoneException exception) {
+            // There is no such supplier yet
+        } finally {
+            lookup.close();
+        }
+
+        ContentValues supplier = new ContentValues();
+        supplier.put(SupplierEntry.COLUMN_NAME, name);
+        supplier.put(SupplierEntry.COLUMN_PHONE_NUMBER, phoneNumber);
+        validateSupplier(supplier);
+        return db.insertOrThrow(SupplierEntry.TABLE_NAME, null, supplier);
+    }
+
+    /**
+     * Insert a supplier into the database with the given content values. If a supplier with the
+     * same name and phone number exists, return its URI instead.
+     */
+    private Uri insertSupplier(Uri uri, ContentValues values) {
+        validateSupplier(values);
+
+        long id = findOrInsertSupplier(dbHelper.getWritableDatabase(),
+                values.getAsString(SupplierEntry.COLUMN_NAME).trim(),
+                values.getAsString(SupplierEntry.COLUMN_PHONE_NUMBER).trim());
+
+        notifyInventoryListChanged();
         return ContentUris.withAppendedId(uri, id);
     }
 
     /**
-     * Updates the data at the given selection and selection arguments, with the new ContentValues.
+     * Start tracking the import of a file. If the file is already being imported, return the
+     * URI of that import instead, so the caller picks up where it stopped.
      */
+    private Uri insertImport(Uri uri, ContentValues values) {
+        String sourceUri = values.getAsString(ImportEntry.COLUMN_SOURCE_URI);
+        if (sourceUri == null || sourceUri.isEmpty()) {
+            throw new IllegalArgumentException("Import requires a source URI");
+        }
+
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        ContentValues newImport = new ContentValues();
+        newImport.put(ImportEntry.COLUMN_SOURCE_URI, sourceUri);
+        long id = db.insertWithOnConflict(ImportEntry.TABLE_NAME, null, newImport,
+                SQLiteDatabase.CONFLICT_IGNORE);
+        if (id == -1) {
+            id = DatabaseUtils.longForQuery(db, "SELECT " + ImportEntry._ID
+                    + " FROM " + ImportEntry.TABLE_NAME
+                    + " WHERE " + ImportEntry.COLUMN_SOURCE_URI + " = ?", new String[]{sourceUri});
+        }
+        return ContentUris.withAppendedId(uri, id);
+    }
+
+    /**
+     * Update the supplier with the given ID with the given content values. Books refer to their
+     * supplier by ID, so this is the only row written however many books the supplier has.
+     * Return the number of suppliers updated.
+     */
+    private int updateSupplier(long id, ContentValues values) {
+        if (values.containsKey(SupplierEntry.COLUMN_NAME)) {
+            String name = values.getAsString(SupplierEntry.COLUMN_NAME);
+            if (name == null || name.trim().isEmpty()) {
+                throw new IllegalArgumentException("Supplier requires a name");
+            }
+        }
+        if (values.containsKey(SupplierEntry.COLUMN_PHONE_NUMBER)) {
+            if (!isValidPhoneNumber(values.getAsString(SupplierEntry.COLUMN_PHONE_NUMBER))) {
+                throw new IllegalArgumentException("Supplier requires a valid phone number");
+            }
+        }
+        if (values.size() == 0) {
+            return 0;
+        }
+
+        int rowsUpdated = dbHelper.getWritableDatabase().update(SupplierEntry.TABLE_NAME,
+                values, SupplierEntry._ID + "=?", new String[]{String.valueOf(id)});
+
+        // The supplier name and phone number show up with every book of the supplier
+        if (rowsUpdated != 0) {
+            notifySupplierChanged(id);
+        }
+        return rowsUpdated;
+    }
+
+    /**
+     * Check that the given content values describe a valid supplier.
+     */
+    private static void validateSupplier(ContentValues values) {
+
+        // Check that the name is not null
+        String name = values.getAsString(SupplierEntry.COLUMN_NAME);
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("Supplier requires a name");
+        }
+
+        // Check that the phone number is not null and is a valid phone number
+        if (!isValidPhoneNumber(values.getAsString(SupplierEntry.COLUMN_PHONE_NUMBER))) {
+            throw new IllegalArgumentException("Supplier requires a valid phone number");
+        }
+    }
+
     @Override
     public int update(Uri uri, ContentValues contentValues, String selection,
                       String[] selectionArgs) {
-        final int match = uriMatcher.match(uri);
+        long start = System.nanoTime();
+        int match = uriMatcher.match(uri);
+        boolean failed = true;
+        try {
+            int rowsUpdated = performUpdate(match, uri, contentValues, selection, selectionArgs);
+            failed = false;
+            return rowsUpdated;
+        } finally {
+            metrics.record(ProviderMetrics.UPDATE, match, start, failed);
+        }
+    }
+
+    /**
+     * Updates the data at the given selection and selection arguments, with the new ContentValues.
+     */
+    private int performUpdate(int match, Uri uri, ContentValues contentValues, String selection,
+                              String[] selectionArgs) {
         switch (match) {
             case INVENTORY:
-                return updateInventory(uri, contentValues, selection, selectionArgs);
+                return updateInventory(uri, contentValues, selection, selectionArgs, -1);
             case INVENTORY_ID:
                 // For the INVENTORY_ID code, extract out the ID from the URI,
                 // so we know which row to update. Selection will be "_id=?" and selection
                 // arguments will be a String array containing the actual ID.
+                long id = ContentUris.parseId(uri);
                 selection = InventoryEntry._ID + "=?";
-                selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
-                return updateInventory(uri, contentValues, selection, selectionArgs);
+                selectionArgs = new String[]{String.valueOf(id)};
+                return updateInventory(uri, contentValues, selection, selectionArgs, id);
+            case SUPPLIER_ID:
+                return updateSupplier(ContentUris.parseId(uri), contentValues);
             default:
                 throw new IllegalArgumentException("Update is not supported for " + uri);
         }
@@ -204,9 +1188,11 @@ public class InventoryProvider extends ContentProvider {
     /**
      * Update inventory in the database with the given content values. Apply the changes to the rows
      * specified in the selection and selection arguments (which could be 0 or 1 or more books).
-     * Return the number of rows that were successfully updated.
+     * If a single book is updated by ID, pass its ID so that only that book is announced as
+     * changed, otherwise pass -1. Return the number of rows that were successfully updated.
      */
-    private int updateInventory(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+    private int updateInventory(Uri uri, ContentValues values, String selection, String[] selectionArgs,
+                                long id) {
 
         // If the {@link InventoryEntry#COLUMN_PRODUCT_NAME} key is present,
         // check that the name value is not null.
@@ -225,7 +1211,7 @@ public class InventoryProvider extends ContentProvider {
         if (values.containsKey(InventoryEntry.COLUMN_PRICE)) {
 
             // Check that Price is not null and is a positive value
-            Double price = values.getAsDouble(InventoryEntry.COLUMN_PRICE);
+            Long price = getPriceInCents(values);
             if (price == null || price < 0) {
                 throw new IllegalArgumentException("Book requires a valid price");
             }
@@ -242,25 +1228,42 @@ public class InventoryProvider extends ContentProvider {
             }
         }
 
-        // If the {@link InventoryEntry#COLUMN_SUPPLIER_NAME} key is present,
-        // check that the price value is valid.
-        if (values.containsKey(InventoryEntry.COLUMN_SUPPLIER_NAME)) {
-
-            // Check that the supplier name is not null
-            String supplierName = values.getAsString(InventoryEntry.COLUMN_SUPPLIER_NAME);
-            if (supplierName == null || supplierName.isEmpty()) {
-                throw new IllegalArgumentException("Book requires supplier name");
+        // If the {@link InventoryEntry#COLUMN_SUPPLIER_ID} key is present,
+        // check that the supplier ID is not null.
+        if (values.containsKey(InventoryEntry.COLUMN_SUPPLIER_ID)) {
+            if (values.getAsLong(InventoryEntry.COLUMN_SUPPLIER_ID) == null) {
+                throw new IllegalArgumentException("Book requires a valid supplier");
             }
         }
 
-        // If the {@link InventoryEntry#COLUMN_SUPPLIER_PHONE_NUMBER} key is present,
-        // check that the price value is valid.
-        if (values.containsKey(InventoryEntry.COLUMN_SUPPLIER_PHONE_NUMBER)) {
+        // If the {@link InventoryEntry#COLUMN_SUPPLIER_NAME} or
+        // {@link InventoryEntry#COLUMN_SUPPLIER_PHONE_NUMBER} key is present, check that the
+        // supplier is given by both.
+        if (values.containsKey(InventoryEntry.COLUMN_SUPPLIER_NAME)
+                || values.containsKey(InventoryEntry.COLUMN_SUPPLIER_PHONE_NUMBER)) {
+            validateSupplierReference(values);
+        }
 
-            // Check that the supplier phone number is not null and is a valid phone number
-            String supplierPhoneNumber = values.getAsString(InventoryEntry.COLUMN_SUPPLIER_PHONE_NUMBER);
-            if (!isValidPhoneNumber(supplierPhoneNumber)) {
-                throw new IllegalArgumentException("Book requires supplier phone number");
+        // If the {@link InventoryEntry#COLUMN_REORDER_THRESHOLD} key is present,
+        // check that the reorder threshold is valid.
+        if (values.containsKey(InventoryEntry.COLUMN_REORDER_THRESHOLD)) {
+
+            // Check that the reorder threshold is not null and is not negative
+            Integer reorderThreshold = values.getAsInteger(InventoryEntry.COLUMN_REORDER_THRESHOLD);
+            if (reorderThreshold == null || reorderThreshold < 0) {
+                throw new IllegalArgumentException("Book requires valid reorder threshold");
+            }
+        }
+
+        // The title sort key is kept by the provider, so it follows the title and is never
+        // taken from the caller, as on insert
+        if (values.containsKey(InventoryEntry.COLUMN_PRODUCT_NAME)
+                || values.containsKey(InventoryEntry.COLUMN_TITLE_SORT_KEY)) {
+            values = new ContentValues(values);
+            values.remove(InventoryEntry.COLUMN_TITLE_SORT_KEY);
+            if (values.containsKey(InventoryEntry.COLUMN_PRODUCT_NAME)) {
+                values.put(InventoryEntry.COLUMN_TITLE_SORT_KEY, TitleSortKey.of(
+                        values.getAsString(InventoryEntry.COLUMN_PRODUCT_NAME)));
             }
         }
 
@@ -269,32 +1272,69 @@ public class InventoryProvider extends ContentProvider {
             return 0;
         }
 
-        // gets the database in write mode
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        // gets the compiled statements of the database in write mode
+        InventoryStatements statements = dbHelper.getStatements();
+        SQLiteDatabase db = statements.getDatabase();
 
-        // update the values
-        int rowsUpdated = db.update(InventoryEntry.TABLE_NAME, values, selection, selectionArgs);
+        // Find or add the supplier and update the books in one transaction
+        int rowsUpdated;
+        db.beginTransactionNonExclusive();
+        try {
+            if (id != -1 && values.size() == 1
+                    && values.containsKey(InventoryEntry.COLUMN_QUANTITY)) {
+                // Stock changes of a single book are the most common update, so they use a
+                // compiled statement
+                rowsUpdated = statements.setQuantity(id,
+                        values.getAsLong(InventoryEntry.COLUMN_QUANTITY)) ? 1 : 0;
+            } else if (id != -1 && values.size() == 1
+                    && values.containsKey(InventoryEntry.COLUMN_PRICE)) {
+                rowsUpdated = statements.updatePrice(id, getPriceInCents(values)) ? 1 : 0;
+            } else {
+                // update the values
+                rowsUpdated = db.update(InventoryEntry.TABLE_NAME,
+                        resolveSupplier(db, values, null), selection, selectionArgs);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
 
         // If 1 or more rows were updated, then notify all listeners that the data at the
         // given URI has changed
         if (rowsUpdated != 0) {
-            // Notify all listeners that the data has changed for the inventory content URI
-            getContext().getContentResolver().notifyChange(uri, null);
+            if (id != -1) {
+                // Only this book changed, and only in the columns that were updated
+                notifyBookChanged(id, values.keySet());
+            } else {
+                // Notify all listeners that the data has changed for the inventory content URI
+                notifyInventoryChanged();
+            }
         }
 
         return rowsUpdated;
     }
 
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        long start = System.nanoTime();
+        int match = uriMatcher.match(uri);
+        boolean failed = true;
+        try {
+            int rowsDeleted = performDelete(match, uri, selection, selectionArgs);
+            failed = false;
+            return rowsDeleted;
+        } finally {
+            metrics.record(ProviderMetrics.DELETE, match, start, failed);
+        }
+    }
+
     /**
      * Delete the data at the given selection and selection arguments.
      */
-    @Override
-    public int delete(Uri uri, String selection, String[] selectionArgs) {
+    private int performDelete(int match, Uri uri, String selection, String[] selectionArgs) {
         // Get writable database
         SQLiteDatabase database = dbHelper.getWritableDatabase();
 
-        final int match = uriMatcher.match(uri);
-
         // Track the number of rows that were deleted
         int rowsDeleted;
 
@@ -304,11 +1344,35 @@ public class InventoryProvider extends ContentProvider {
                 rowsDeleted = database.delete(InventoryEntry.TABLE_NAME, selection, selectionArgs);
                 break;
             case INVENTORY_ID:
-                // Delete a single row given by the ID in the URI
-                selection = InventoryEntry._ID + "=?";
+                // Delete a single row given by the ID in the URI, with the compiled statement
+                long id = ContentUris.parseId(uri);
+                InventoryStatements statements = dbHelper.getStatements();
+                database.beginTransactionNonExclusive();
+                try {
+                    rowsDeleted = statements.deleteBook(id) ? 1 : 0;
+                    database.setTransactionSuccessful();
+                } finally {
+                    database.endTransaction();
+                }
+                if (rowsDeleted != 0) {
+                    notifyBookDeleted(id);
+                }
+                return rowsDeleted;
+            case SUPPLIER_ID:
+                // Delete a single supplier given by the ID in the URI. A supplier still
+                // referred to by books can't be deleted.
+                selection = SupplierEntry._ID + "=?";
                 selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
-                rowsDeleted = database.delete(InventoryEntry.TABLE_NAME, selection, selectionArgs);
-                break;
+                rowsDeleted = database.delete(SupplierEntry.TABLE_NAME, selection, selectionArgs);
+                if (rowsDeleted != 0) {
+                    notifyInventoryListChanged();
+                }
+                return rowsDeleted;
+            case IMPORT_ID:
+                // Forget a finished import. Nothing but the importer watches imports.
+                selection = ImportEntry._ID + "=?";
+                selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
+                return database.delete(ImportEntry.TABLE_NAME, selection, selectionArgs);
             default:
                 throw new IllegalArgumentException("Deletion is not supported for " + uri);
         }
@@ -316,11 +1380,124 @@ public class InventoryProvider extends ContentProvider {
         // If 1 or more rows were deleted, then notify all listeners that the data at the
         // given URI has changed
         if (rowsDeleted != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyInventoryChanged();
         }
         return rowsDeleted;
     }
 
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        // Reading the metrics isn't recorded, so it doesn't change what it reads
+        if (InventoryContract.METHOD_GET_METRICS.equals(method)) {
+            return metrics.snapshot();
+        }
+
+        int code = UriMatcher.NO_MATCH;
+        if (InventoryContract.METHOD_SELL.equals(method)) {
+            code = METHOD_SELL;
+        } else if (InventoryContract.METHOD_SELL_BATCH.equals(method)) {
+            code = METHOD_SELL_BATCH;
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Bundle result = performCall(method, arg, extras);
+            failed = false;
+            return result;
+        } finally {
+            metrics.record(ProviderMetrics.CALL, code, start, failed);
+        }
+    }
+
+    /**
+     * Handle the provider methods declared in {@link InventoryContract}.
+     */
+    private Bundle performCall(String method, String arg, Bundle extras) {
+        // Switching on a null string would throw a NullPointerException
+        if (method == null) {
+            throw new IllegalArgumentException("Unknown method " + method);
+        }
+        Bundle result = new Bundle();
+        switch (method) {
+            case InventoryContract.METHOD_SELL: {
+                // The book ID is passed as the argument, the number of copies in the extras
+                long[] ids = {Long.parseLong(arg)};
+                int[] counts = {extras == null ? 1 : extras.getInt(InventoryContract.EXTRA_COUNT, 1)};
+                boolean[] sold = new boolean[1];
+                int[] quantities = new int[1];
+                sellInventory(ids, counts, sold, quantities);
+                result.putBoolean(InventoryContract.EXTRA_SOLD, sold[0]);
+                result.putInt(InventoryContract.EXTRA_QUANTITY, quantities[0]);
+                return result;
+            }
+            case InventoryContract.METHOD_SELL_BATCH: {
+                // The book IDs and the number of copies of each are passed in the extras
+                long[] ids = extras == null ? null : extras.getLongArray(InventoryContract.EXTRA_IDS);
+                int[] counts = extras == null ? null : extras.getIntArray(InventoryContract.EXTRA_COUNTS);
+                if (ids == null || counts == null || ids.length != counts.length) {
+                    throw new IllegalArgumentException("Sale batch requires a count for each book");
+                }
+                boolean[] sold = new boolean[ids.length];
+                int[] quantities = new int[ids.length];
+                sellInventory(ids, counts, sold, quantities);
+                result.putBooleanArray(InventoryContract.EXTRA_SOLD, sold);
+                result.putIntArray(InventoryContract.EXTRA_QUANTITY, quantities);
+                return result;
+            }
+            case InventoryContract.METHOD_SET_SLOW_QUERY_THRESHOLD:
+                // The threshold in milliseconds is passed as the argument
+                slowQueryLog.setThresholdMillis(Long.parseLong(arg));
+                return result;
+            default:
+                throw new IllegalArgumentException("Unknown method " + method);
+        }
+    }
+
+    /**
+     * Sell copies of one or more books in a single transaction. The stock of each book is
+     * decremented by a single conditional UPDATE, so concurrent sales of the same book can neither
+     * lose an update nor take the stock below 0. A book without enough copies in stock is not
+     * sold, which doesn't stop the sale of the other books.
+     *
+     * @param ids        the IDs of the books to sell
+     * @param counts     the number of copies to sell of each book
+     * @param sold       filled with whether the sale of each book went through
+     * @param quantities filled with the resulting quantity of each book, or -1 if it doesn't exist
+     */
+    private void sellInventory(long[] ids, int[] counts, boolean[] sold, int[] quantities) {
+
+        // Check that a positive number of copies is being sold
+        for (int count : counts) {
+            if (count <= 0) {
+                throw new IllegalArgumentException("Sale requires a positive number of books");
+            }
+        }
+
+        // gets the compiled statements of the database in write mode
+        InventoryStatements statements = dbHelper.getStatements();
+        SQLiteDatabase db = statements.getDatabase();
+
+        // Decrement and read back the new quantities in one transaction so the values returned
+        // are the ones these sales produced
+        db.beginTransactionNonExclusive();
+        try {
+            for (int i = 0; i < ids.length; i++) {
+                sold[i] = statements.adjustQuantity(ids[i], -counts[i]);
+                quantities[i] = statements.queryQuantity(ids[i]);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        // Notify all listeners about each book that was sold
+        for (int i = 0; i < ids.length; i++) {
+            if (sold[i]) {
+                notifyBookChanged(ids[i], Collections.singleton(InventoryEntry.COLUMN_QUANTITY));
+            }
+        }
+    }
+
     /**
      * Returns the MIME type of data for the content URI.
      */
@@ -329,14 +1506,259 @@ public class InventoryProvider extends ContentProvider {
         final int match = uriMatcher.match(uri);
         switch (match) {
             case INVENTORY:
+            case INVENTORY_SEARCH:
+            case INVENTORY_LOW_STOCK:
+            case SUPPLIER_INVENTORY:
                 return InventoryEntry.CONTENT_LIST_TYPE;
             case INVENTORY_ID:
                 return InventoryEntry.CONTENT_ITEM_TYPE;
+            case INVENTORY_SUMMARY:
+                return SummaryEntry.CONTENT_ITEM_TYPE;
+            case INVENTORY_SUMMARY_SUPPLIERS:
+                return SummaryEntry.CONTENT_SUPPLIERS_TYPE;
+            case SUPPLIERS:
+                return SupplierEntry.CONTENT_LIST_TYPE;
+            case SUPPLIER_ID:
+                return SupplierEntry.CONTENT_ITEM_TYPE;
+            case IMPORTS:
+                return ImportEntry.CONTENT_LIST_TYPE;
+            case IMPORT_ID:
+                return ImportEntry.CONTENT_ITEM_TYPE;
+            case INVENTORY_EXPORT:
+                return InventoryContract.FORMAT_JSON.equals(getExportFormat(uri))
+                        ? InventoryEntry.EXPORT_JSON_TYPE : InventoryEntry.EXPORT_CSV_TYPE;
+            case SLOW_QUERIES:
+                return InventoryContract.SLOW_QUERIES_TYPE;
             default:
                 throw new IllegalStateException("Unknown URI " + uri + " with match " + match);
         }
     }
 
+    /**
+     * Open the export file of the inventory, or the slow-query log. The file is a pipe: a
+     * background thread writes the books into it as the caller reads them, so the caller can
+     * start reading at once and neither side holds the whole catalog in memory.
+     */
+    @Override
+    public ParcelFileDescriptor openFile(Uri uri, String mode) throws FileNotFoundException {
+        long start = System.nanoTime();
+        int match = uriMatcher.match(uri);
+        boolean failed = true;
+        try {
+            if (match != INVENTORY_EXPORT && match != SLOW_QUERIES) {
+                throw new FileNotFoundException("No file for URI " + uri);
+            }
+            if (!"r".equals(mode)) {
+                throw new FileNotFoundException("Export can only be opened for reading " + uri);
+            }
+            ParcelFileDescriptor pipe;
+            if (match == INVENTORY_EXPORT) {
+                pipe = openReliablePipe(uri, getType(uri), getExportFormat(uri),
+                        new InventoryExporter(dbHelper.getReadableDatabase()));
+            } else {
+                pipe = openReliablePipe(uri, getType(uri), null, slowQueryLog);
+            }
+            failed = false;
+            return pipe;
+        } finally {
+            // Only opening the pipe is measured, the file is written while it is read
+            metrics.record(ProviderMetrics.OPEN_FILE, match, start, failed);
+        }
+    }
+
+    /**
+     * Return the read end of a pipe that the writer fills on a background thread, as
+     * {@link #openPipeHelper} does. The pipe is a reliable one, so when the writer fails and
+     * closes its end with {@link ParcelFileDescriptor#closeWithError(String)}, the reader gets an
+     * IOException from {@link ParcelFileDescriptor#checkError()} instead of taking the
+     * truncated file for a complete one.
+     */
+    static <T> ParcelFileDescriptor openReliablePipe(final Uri uri, final String mimeType,
+                                                     final T args,
+                                                     final PipeDataWriter<T> writer)
+            throws FileNotFoundException {
+        final ParcelFileDescriptor[] pipe;
+        try {
+            pipe = ParcelFileDescriptor.createReliablePipe();
+        } catch (IOException exception) {
+            throw new FileNotFoundException("Failed to create a pipe for " + uri);
+        }
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                writer.writeDataToPipe(pipe[1], uri, mimeType, null, args);
+                try {
+                    // Tells the reader the file is complete, unless the writer closed its end
+                    // with an error already
+                    pipe[1].close();
+                } catch (IOException exception) {
+                    Log.w(LOG_TAG, "Failed to close the pipe of " + uri, exception);
+                }
+            }
+        });
+        return pipe[0];
+    }
+
+    /**
+     * Return the format of the export URI, {@link InventoryContract#FORMAT_CSV} if the URI
+     * doesn't say.
+     */
+    private static String getExportFormat(Uri uri) {
+        String format = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_FORMAT);
+        if (format == null) {
+            return InventoryContract.FORMAT_CSV;
+        }
+        if (!InventoryContract.FORMAT_CSV.equals(format)
+                && !InventoryContract.FORMAT_JSON.equals(format)) {
+            throw new IllegalArgumentException("Unknown export format " + uri);
+        }
+        return format;
+    }
+
+    /**
+     * Return the display name of a file written through a pipe, in the columns of
+     * {@link OpenableColumns} that are asked for.
+     */
+    private static Cursor queryOpenableFile(String[] projection, String displayName) {
+        if (projection == null) {
+            projection = new String[]{OpenableColumns.DISPLAY_NAME, OpenableColumns.SIZE};
+        }
+        MatrixCursor cursor = new MatrixCursor(projection, 1);
+        Object[] row = new Object[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            if (OpenableColumns.DISPLAY_NAME.equals(projection[i])) {
+                row[i] = displayName;
+            }
+        }
+        cursor.addRow(row);
+        return cursor;
+    }
+
+    /**
+     * Return the price in the given content values as a whole number of cents. Fractional
+     * prices are rejected, since they are most likely prices in dollars.
+     */
+    private static Long getPriceInCents(ContentValues values) {
+        Object price = values.get(InventoryEntry.COLUMN_PRICE);
+        if (price instanceof Double || price instanceof Float) {
+            throw new IllegalArgumentException("Book price must be given in cents");
+        }
+        return values.getAsLong(InventoryEntry.COLUMN_PRICE);
+    }
+
+    /**
+     * Parse a query parameter that must hold a positive number.
+     */
+    private static int parsePositiveInt(String value, Uri uri) {
+        try {
+            int number = Integer.parseInt(value);
+            if (number > 0) {
+                return number;
+            }
+        } catch (NumberFormatException exception) {
+            // Fall through to the error below
+        }
+        throw new IllegalArgumentException("Invalid query parameter " + value + " in " + uri);
+    }
+
+    /**
+     * Parse a query parameter that must hold a number of 0 or more.
+     */
+    private static long parseNonNegativeLong(String value, Uri uri) {
+        try {
+            long number = Long.parseLong(value);
+            if (number >= 0) {
+                return number;
+            }
+        } catch (NumberFormatException exception) {
+            // Fall through to the error below
+        }
+        throw new IllegalArgumentException("Invalid query parameter " + value + " in " + uri);
+    }
+
+    /**
+     * Notify all listeners that several books changed at once. As it isn't known which books
+     * changed, every cached record is dropped.
+     */
+    private void notifyInventoryChanged() {
+        recordCache.removeAll();
+        notifyInventoryListChanged();
+    }
+
+    /**
+     * Notify all listeners that a book was deleted, and drop its cached record
+     */
+    private void notifyBookDeleted(long id) {
+        recordCache.remove(id);
+        notifyInventoryListChanged();
+    }
+
+    /**
+     * Notify all listeners that the name or phone number of a supplier changed, and drop the
+     * cached records of its books
+     */
+    private void notifySupplierChanged(long supplierId) {
+        recordCache.removeSupplier(supplierId);
+        notifyInventoryListChanged();
+    }
+
+    /**
+     * Notify all listeners that books were added or removed. No cached record is dropped, so
+     * the caller drops those of the books that changed. The notification is sent on the base
+     * content URI so that it reaches list, search and single book cursors alike. While a batch
+     * is being applied on this thread the notification is held back until the batch commits.
+     */
+    private void notifyInventoryListChanged() {
+        if (pendingBatchNotification.get() != null) {
+            pendingBatchNotification.set(true);
+            return;
+        }
+        scheduleSnapshot();
+        getContext().getContentResolver().notifyChange(InventoryContract.BASE_CONTENT_URI, null);
+    }
+
+    /**
+     * Notify all listeners that the given columns of a single book have changed. The
+     * notification is sent on the row URI of the book, which is outside the inventory content
+     * URI, so list cursors are not reloaded and can patch the book in place instead. The cached
+     * record of the book is dropped. Inside a batch this falls back to a single
+     * {@link #notifyInventoryChanged()} when the batch commits.
+     */
+    private void notifyBookChanged(long id, Collection<String> columns) {
+        recordCache.remove(id);
+        if (pendingBatchNotification.get() != null) {
+            pendingBatchNotification.set(true);
+            return;
+        }
+        scheduleSnapshot();
+        getContext().getContentResolver().notifyChange(
+                InventoryEntry.buildRowChangeUri(id, columns), null);
+    }
+
+    /**
+     * Write the catalog snapshot once the books have stopped changing for
+     * {@link #SNAPSHOT_DELAY_MILLIS}
+     */
+    private void scheduleSnapshot() {
+        snapshotHandler.removeCallbacks(snapshotWriter);
+        snapshotHandler.postDelayed(snapshotWriter, SNAPSHOT_DELAY_MILLIS);
+    }
+
+    /**
+     * Write the catalog snapshot from the database. Errors are logged, the catalog then starts
+     * from the previous snapshot, or from the database alone.
+     */
+    private void writeSnapshot() {
+        Trace.beginSection("InventoryProvider.writeSnapshot");
+        try {
+            CatalogSnapshot.write(getContext(), dbHelper.getReadableDatabase());
+        } catch (IOException | SQLiteException exception) {
+            Log.e(LOG_TAG, "Failed to write the catalog snapshot", exception);
+        } finally {
+            Trace.endSection();
+        }
+    }
+
     /**
      * Validates that phone numbers are properly formatted
      * <p>
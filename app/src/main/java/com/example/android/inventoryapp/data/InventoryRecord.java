@@ -0,0 +1,205 @@
+package com.example.android.inventoryapp.data;
+
+import android.database.Cursor;
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import com.example.android.inventoryapp.data.InventoryContract.InventoryEntry;
+
+/**
+ * Immutable copy of a book as read from {@link InventoryEntry#VIEW_NAME}, with its supplier
+ * joined in. Being immutable, a record can be kept in the {@link InventoryRecordCache} and
+ * handed to any thread without copying it. Being parcelable, it can be handed to another screen
+ * in an intent, which tells from its {@link #getVersion() version} whether the book changed since.
+ */
+public final class InventoryRecord implements Parcelable {
+
+    /**
+     * Columns a record is made of, in the order of {@link #getValue(int)}
+     */
+    public static final String[] COLUMNS = {
+            InventoryEntry.COLUMN_ID,
+            InventoryEntry.COLUMN_PRODUCT_NAME,
+            InventoryEntry.COLUMN_PRICE,
+            InventoryEntry.COLUMN_QUANTITY,
+            InventoryEntry.COLUMN_REORDER_THRESHOLD,
+            InventoryEntry.COLUMN_SUPPLIER_ID,
+            InventoryEntry.COLUMN_SUPPLIER_NAME,
+            InventoryEntry.COLUMN_SUPPLIER_PHONE_NUMBER,
+            InventoryEntry.COLUMN_VERSION
+    };
+
+    public static final Creator<InventoryRecord> CREATOR = new Creator<InventoryRecord>() {
+        @Override
+        public InventoryRecord createFromParcel(Parcel in) {
+            return new InventoryRecord(in.readLong(), in.readString(), in.readLong(),
+                    in.readInt(), in.readInt(), in.readLong(), in.readString(), in.readString(),
+                    in.readLong());
+        }
+
+        @Override
+        public InventoryRecord[] newArray(int size) {
+            return new InventoryRecord[size];
+        }
+    };
+
+    private final long id;
+    private final String productName;
+    private final long price;
+    private final int quantity;
+    private final int reorderThreshold;
+    private final long supplierId;
+    private final String supplierName;
+    private final String supplierPhoneNumber;
+    private final long version;
+
+    /**
+     * @param price   the price in cents
+     * @param version the {@link InventoryEntry#COLUMN_VERSION} stamp of the book
+     */
+    public InventoryRecord(long id, String productName, long price, int quantity,
+                           int reorderThreshold, long supplierId, String supplierName,
+                           String supplierPhoneNumber, long version) {
+        this.id = id;
+        this.productName = productName;
+        this.price = price;
+        this.quantity = quantity;
+        this.reorderThreshold = reorderThreshold;
+        this.supplierId = supplierId;
+        this.supplierName = supplierName;
+        this.supplierPhoneNumber = supplierPhoneNumber;
+        this.version = version;
+    }
+
+    /**
+     * Read the book at the current position of the cursor, which must have all the
+     * {@link #COLUMNS}
+     */
+    public static InventoryRecord fromCursor(Cursor cursor) {
+        int[] columnIndexes = new int[COLUMNS.length];
+        for (int i = 0; i < columnIndexes.length; i++) {
+            columnIndexes[i] = cursor.getColumnIndexOrThrow(COLUMNS[i]);
+        }
+        return fromCursor(cursor, columnIndexes);
+    }
+
+    /**
+     * Read the book at the current position of the cursor
+     *
+     * @param columnIndexes the index in the cursor of each of the {@link #COLUMNS}
+     */
+    static InventoryRecord fromCursor(Cursor cursor, int[] columnIndexes) {
+        return new InventoryRecord(
+                cursor.getLong(columnIndexes[0]),
+                cursor.getString(columnIndexes[1]),
+                cursor.getLong(columnIndexes[2]),
+                cursor.getInt(columnIndexes[3]),
+                cursor.getInt(columnIndexes[4]),
+                cursor.getLong(columnIndexes[5]),
+                cursor.getString(columnIndexes[6]),
+                cursor.getString(columnIndexes[7]),
+                cursor.getLong(columnIndexes[8]));
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    /**
+     * Return the price in cents
+     */
+    public long getPrice() {
+        return price;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public int getReorderThreshold() {
+        return reorderThreshold;
+    }
+
+    public long getSupplierId() {
+        return supplierId;
+    }
+
+    public String getSupplierName() {
+        return supplierName;
+    }
+
+    public String getSupplierPhoneNumber() {
+        return supplierPhoneNumber;
+    }
+
+    /**
+     * Return the stamp of the book when it was read. The book or its supplier changed since if
+     * the stamp in the database is different.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Return the value of the column at the given position of {@link #COLUMNS}, as a cursor
+     * over the record would
+     */
+    Object getValue(int column) {
+        switch (column) {
+            case 0:
+                return id;
+            case 1:
+                return productName;
+            case 2:
+                return price;
+            case 3:
+                return quantity;
+            case 4:
+                return reorderThreshold;
+            case 5:
+                return supplierId;
+            case 6:
+                return supplierName;
+            case 7:
+                return supplierPhoneNumber;
+            case 8:
+                return version;
+            default:
+                throw new IllegalArgumentException("Unknown column " + column);
+        }
+    }
+
+    /**
+     * Return roughly how many bytes of the heap the record takes, with its strings
+     */
+    int getSizeInBytes() {
+        // Object header and fields, then each string with its character array
+        return 72 + sizeOf(productName) + sizeOf(supplierName) + sizeOf(supplierPhoneNumber);
+    }
+
+    private static int sizeOf(String string) {
+        return string == null ? 0 : 40 + 2 * string.length();
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel out, int flags) {
+        out.writeLong(id);
+        out.writeString(productName);
+        out.writeLong(price);
+        out.writeInt(quantity);
+        out.writeInt(reorderThreshold);
+        out.writeLong(supplierId);
+        out.writeString(supplierName);
+        out.writeString(supplierPhoneNumber);
+        out.writeLong(version);
+    }
+}
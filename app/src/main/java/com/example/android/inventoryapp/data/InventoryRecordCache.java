@@ -0,0 +1,120 @@
+package com.example.android.inventoryapp.data;
+
+import android.database.Cursor;
+import android.util.LruCache;
+
+import java.util.Map;
+
+/**
+ * Keeps the books read lately as {@link InventoryRecord}s, so a book that was just listed or
+ * viewed can be looked up by ID again without reading the database. The least recently used
+ * records are dropped once the records take more than the memory budget.
+ * <p>
+ * The cache is filled from the cursors the provider hands out and emptied of a record as soon as
+ * the provider announces that it changed. A cursor read before a change could still hold the old
+ * values once the change is announced, so every invalidation counts as a new generation, and a
+ * cursor is only cached if no invalidation happened since its query started.
+ */
+class InventoryRecordCache {
+
+    /**
+     * Most rows cached from a single cursor, so a query over the whole inventory neither churns
+     * the cache nor moves the cursor window away from its first rows
+     */
+    private static final int FILL_LIMIT = 200;
+
+    private final LruCache<Long, InventoryRecord> records;
+
+    /**
+     * Number of invalidations so far. Guarded by this.
+     */
+    private long generation;
+
+    /**
+     * @param maxBytes the memory budget of the cached records
+     */
+    InventoryRecordCache(int maxBytes) {
+        records = new LruCache<Long, InventoryRecord>(maxBytes) {
+            @Override
+            protected int sizeOf(Long id, InventoryRecord record) {
+                return record.getSizeInBytes();
+            }
+        };
+    }
+
+    /**
+     * Return the cached record of the book, or null if it isn't cached
+     */
+    InventoryRecord get(long id) {
+        return records.get(id);
+    }
+
+    /**
+     * Return the current generation, to be read before running a query whose cursor is then
+     * passed to {@link #putAll(Cursor, long)}
+     */
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Cache the books of the cursor, if it has all the {@link InventoryRecord#COLUMNS} and no
+     * invalidation happened since the given generation. The cursor is left before its first row.
+     */
+    synchronized void putAll(Cursor cursor, long queryGeneration) {
+        if (queryGeneration != generation) {
+            return;
+        }
+
+        int[] columnIndexes = new int[InventoryRecord.COLUMNS.length];
+        for (int i = 0; i < columnIndexes.length; i++) {
+            columnIndexes[i] = cursor.getColumnIndex(InventoryRecord.COLUMNS[i]);
+            if (columnIndexes[i] == -1) {
+                return;
+            }
+        }
+
+        int count = Math.min(cursor.getCount(), FILL_LIMIT);
+        for (int position = 0; position < count && cursor.moveToPosition(position); position++) {
+            InventoryRecord record = InventoryRecord.fromCursor(cursor, columnIndexes);
+            records.put(record.getId(), record);
+        }
+        cursor.moveToPosition(-1);
+    }
+
+    /**
+     * Drop the record of a book that changed or was deleted
+     */
+    synchronized void remove(long id) {
+        generation++;
+        records.remove(id);
+    }
+
+    /**
+     * Drop the records of the books of a supplier whose name or phone number changed
+     */
+    synchronized void removeSupplier(long supplierId) {
+        generation++;
+        for (Map.Entry<Long, InventoryRecord> entry : records.snapshot().entrySet()) {
+            if (entry.getValue().getSupplierId() == supplierId) {
+                records.remove(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Drop every record, when it isn't known which books changed
+     */
+    synchronized void removeAll() {
+        generation++;
+        records.evictAll();
+    }
+
+    /**
+     * Drop the least recently used records until the rest take at most the given share of the
+     * memory budget, to give memory back when the system runs low
+     */
+    void trim(int percent) {
+        records.trimToSize(records.maxSize() * percent / 100);
+    }
+}
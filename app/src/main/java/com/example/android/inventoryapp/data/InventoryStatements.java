@@ -0,0 +1,192 @@
+package com.example.android.inventoryapp.data;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.android.inventoryapp.data.InventoryContract.InventoryEntry;
+
+/**
+ * Compiled statements for the writes the provider makes most often. Each statement is compiled
+ * the first time it is used and kept until the database is closed, and the values are bound
+ * straight from primitives, so a hot write neither builds SQL text nor fills
+ * {@link android.content.ContentValues}.
+ * <p>
+ * A statement holds its bound values until it runs, so it can't be shared by two threads at
+ * once. Every method must therefore be called inside a write transaction: the database only lets
+ * one thread hold a write transaction at a time, which keeps the statements to one thread too.
+ */
+class InventoryStatements {
+
+    private static final String SQL_INSERT_BOOK = "INSERT INTO " + InventoryEntry.TABLE_NAME
+            + " (" + InventoryEntry.COLUMN_PRODUCT_NAME + ", " + InventoryEntry.COLUMN_PRICE
+            + ", " + InventoryEntry.COLUMN_QUANTITY + ", " + InventoryEntry.COLUMN_REORDER_THRESHOLD
+            + ", " + InventoryEntry.COLUMN_SUPPLIER_ID + ", " + InventoryEntry.COLUMN_TITLE_SORT_KEY
+            + ") VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String SQL_SET_QUANTITY = "UPDATE " + InventoryEntry.TABLE_NAME
+            + " SET " + InventoryEntry.COLUMN_QUANTITY + " = ?"
+            + " WHERE " + InventoryEntry._ID + " = ?";
+
+    // The stock is only changed if it doesn't go below 0
+    private static final String SQL_ADJUST_QUANTITY = "UPDATE " + InventoryEntry.TABLE_NAME
+            + " SET " + InventoryEntry.COLUMN_QUANTITY + " = "
+            + InventoryEntry.COLUMN_QUANTITY + " + ?"
+            + " WHERE " + InventoryEntry._ID + " = ?"
+            + " AND " + InventoryEntry.COLUMN_QUANTITY + " >= ?";
+
+    private static final String SQL_UPDATE_PRICE = "UPDATE " + InventoryEntry.TABLE_NAME
+            + " SET " + InventoryEntry.COLUMN_PRICE + " = ?"
+            + " WHERE " + InventoryEntry._ID + " = ?";
+
+    private static final String SQL_DELETE_BOOK = "DELETE FROM " + InventoryEntry.TABLE_NAME
+            + " WHERE " + InventoryEntry._ID + " = ?";
+
+    private static final String SQL_QUERY_QUANTITY = "SELECT " + InventoryEntry.COLUMN_QUANTITY
+            + " FROM " + InventoryEntry.TABLE_NAME
+            + " WHERE " + InventoryEntry._ID + " = ?";
+
+    private final SQLiteDatabase db;
+
+    private SQLiteStatement insertBook;
+    private SQLiteStatement setQuantity;
+    private SQLiteStatement adjustQuantity;
+    private SQLiteStatement updatePrice;
+    private SQLiteStatement deleteBook;
+    private SQLiteStatement queryQuantity;
+
+    InventoryStatements(SQLiteDatabase db) {
+        this.db = db;
+    }
+
+    /**
+     * The database the statements run against
+     */
+    SQLiteDatabase getDatabase() {
+        return db;
+    }
+
+    /**
+     * Insert a book that has already been validated.
+     *
+     * @param titleSortKey the sort key of the title, see {@link TitleSortKey}
+     * @return the ID of the new book, or -1 if it couldn't be inserted
+     */
+    long insertBook(String title, long priceInCents, long quantity, long reorderThreshold,
+                    long supplierId, String titleSortKey) {
+        checkInTransaction();
+        if (insertBook == null) {
+            insertBook = db.compileStatement(SQL_INSERT_BOOK);
+        }
+        insertBook.bindString(1, title);
+        insertBook.bindLong(2, priceInCents);
+        insertBook.bindLong(3, quantity);
+        insertBook.bindLong(4, reorderThreshold);
+        insertBook.bindLong(5, supplierId);
+        insertBook.bindString(6, titleSortKey);
+        return insertBook.executeInsert();
+    }
+
+    /**
+     * Set the number of copies of a book in stock.
+     *
+     * @return whether the book exists
+     */
+    boolean setQuantity(long id, long quantity) {
+        checkInTransaction();
+        if (setQuantity == null) {
+            setQuantity = db.compileStatement(SQL_SET_QUANTITY);
+        }
+        setQuantity.bindLong(1, quantity);
+        setQuantity.bindLong(2, id);
+        return setQuantity.executeUpdateDelete() != 0;
+    }
+
+    /**
+     * Add to or take from the stock of a book in one statement, so concurrent changes can't be
+     * lost. Nothing is taken if the stock would go below 0.
+     *
+     * @param delta the number of copies to add, negative to take copies
+     * @return whether the stock was changed
+     */
+    boolean adjustQuantity(long id, long delta) {
+        checkInTransaction();
+        if (adjustQuantity == null) {
+            adjustQuantity = db.compileStatement(SQL_ADJUST_QUANTITY);
+        }
+        adjustQuantity.bindLong(1, delta);
+        adjustQuantity.bindLong(2, id);
+        adjustQuantity.bindLong(3, -delta);
+        return adjustQuantity.executeUpdateDelete() != 0;
+    }
+
+    /**
+     * Set the price of a book.
+     *
+     * @return whether the book exists
+     */
+    boolean updatePrice(long id, long priceInCents) {
+        checkInTransaction();
+        if (updatePrice == null) {
+            updatePrice = db.compileStatement(SQL_UPDATE_PRICE);
+        }
+        updatePrice.bindLong(1, priceInCents);
+        updatePrice.bindLong(2, id);
+        return updatePrice.executeUpdateDelete() != 0;
+    }
+
+    /**
+     * Delete a book.
+     *
+     * @return whether the book existed
+     */
+    boolean deleteBook(long id) {
+        checkInTransaction();
+        if (deleteBook == null) {
+            deleteBook = db.compileStatement(SQL_DELETE_BOOK);
+        }
+        deleteBook.bindLong(1, id);
+        return deleteBook.executeUpdateDelete() != 0;
+    }
+
+    /**
+     * Return the number of copies of a book in stock, or -1 if there is no such book.
+     */
+    int queryQuantity(long id) {
+        checkInTransaction();
+        if (queryQuantity == null) {
+            queryQuantity = db.compileStatement(SQL_QUERY_QUANTITY);
+        }
+        queryQuantity.bindLong(1, id);
+        try {
+            return (int) queryQuantity.simpleQueryForLong();
+        } catch (SQLiteDoneException exception) {
+            return -1;
+        }
+    }
+
+    /**
+     * Release the compiled statements
+     */
+    void close() {
+        SQLiteStatement[] statements = {insertBook, setQuantity, adjustQuantity, updatePrice,
+                deleteBook, queryQuantity};
+        for (SQLiteStatement statement : statements) {
+            if (statement != null) {
+                statement.close();
+            }
+        }
+        insertBook = null;
+        setQuantity = null;
+        adjustQuantity = null;
+        updatePrice = null;
+        deleteBook = null;
+        queryQuantity = null;
+    }
+
+    private void checkInTransaction() {
+        if (!db.inTransaction()) {
+            throw new IllegalStateException("Compiled statements must run in a transaction");
+        }
+    }
+}
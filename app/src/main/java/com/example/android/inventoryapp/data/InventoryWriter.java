@@ -0,0 +1,146 @@
+package com.example.android.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Performs writes to the {@link InventoryProvider} on a background thread and delivers their
+ * results on the main thread, so the UI never waits on SQLite. All writers share one thread,
+ * which applies the writes in the order they were made.
+ * <p>
+ * A write the provider rejects (for example a book without a title) is logged and reported to the
+ * callback with the same result the provider returns for a failed write: a null URI, 0 rows, or a
+ * null bundle.
+ */
+public class InventoryWriter {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = InventoryWriter.class.getSimpleName();
+
+    /**
+     * Receives the result of a write on the main thread.
+     *
+     * @param <T> the type of result of the write
+     */
+    public interface Callback<T> {
+        void onComplete(T result);
+    }
+
+    /**
+     * Thread shared by all writers
+     */
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    return new Thread(runnable, "InventoryWriter");
+                }
+            });
+
+    private final ContentResolver contentResolver;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public InventoryWriter(Context context) {
+        contentResolver = context.getApplicationContext().getContentResolver();
+    }
+
+    /**
+     * Insert a row in the background. The callback receives the URI of the new row.
+     */
+    public void insert(final Uri uri, final ContentValues values, Callback<Uri> callback) {
+        submit(new Callable<Uri>() {
+            @Override
+            public Uri call() {
+                return contentResolver.insert(uri, values);
+            }
+        }, null, callback);
+    }
+
+    /**
+     * Update rows in the background. The callback receives the number of rows updated.
+     */
+    public void update(final Uri uri, final ContentValues values, final String selection,
+                       final String[] selectionArgs, Callback<Integer> callback) {
+        submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return contentResolver.update(uri, values, selection, selectionArgs);
+            }
+        }, 0, callback);
+    }
+
+    /**
+     * Delete rows in the background. The callback receives the number of rows deleted.
+     */
+    public void delete(final Uri uri, final String selection, final String[] selectionArgs,
+                       Callback<Integer> callback) {
+        submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return contentResolver.delete(uri, selection, selectionArgs);
+            }
+        }, 0, callback);
+    }
+
+    /**
+     * Call a provider method declared in {@link InventoryContract} in the background. The
+     * callback receives the bundle the method returns.
+     */
+    public void call(final String method, final String arg, final Bundle extras,
+                     Callback<Bundle> callback) {
+        submit(new Callable<Bundle>() {
+            @Override
+            public Bundle call() {
+                return contentResolver.call(InventoryContract.InventoryEntry.CONTENT_URI, method,
+                        arg, extras);
+            }
+        }, null, callback);
+    }
+
+    /**
+     * Run a write on the writer thread and post its result to the callback on the main thread.
+     *
+     * @param write         the write to perform
+     * @param failureResult the result to report if the provider rejects the write
+     * @param callback      the callback to receive the result, or null if nobody is interested
+     */
+    private <T> void submit(final Callable<T> write, final T failureResult,
+                            final Callback<T> callback) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                T result;
+                try {
+                    result = write.call();
+                } catch (Exception exception) {
+                    Log.e(LOG_TAG, "Write to the inventory failed", exception);
+                    result = failureResult;
+                }
+
+                if (callback != null) {
+                    final T deliveredResult = result;
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            callback.onComplete(deliveredResult);
+                        }
+                    });
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.android.inventoryapp.data;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * A single step of the inventory database schema, taking the database from
+ * {@link #startVersion} to {@link #endVersion}. Steps are applied in order by
+ * {@link InventoryDbHelper}, both when upgrading an existing database and when creating a new one,
+ * so a step must never be changed once it has shipped. Add a new step instead.
+ */
+public abstract class Migration {
+
+    /**
+     * The schema version this step upgrades from
+     */
+    public final int startVersion;
+
+    /**
+     * The schema version this step upgrades to
+     */
+    public final int endVersion;
+
+    public Migration(int startVersion, int endVersion) {
+        this.startVersion = startVersion;
+        this.endVersion = endVersion;
+    }
+
+    /**
+     * Apply this step. It runs inside the upgrade transaction opened by the
+     * {@link android.database.sqlite.SQLiteOpenHelper}, so it must not manage transactions itself.
+     *
+     * @param db the database at {@link #startVersion}
+     */
+    public abstract void migrate(SQLiteDatabase db);
+}
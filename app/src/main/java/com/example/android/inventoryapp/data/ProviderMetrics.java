@@ -0,0 +1,198 @@
+package com.example.android.inventoryapp.data;
+
+import android.os.Bundle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Counts the calls made to the provider and how long they took, for each operation and URI
+ * match code. Recording a call only takes a few atomic increments, without locks or
+ * allocations, so every call on every binder thread can be recorded.
+ * <p>
+ * Latencies are kept in a histogram of microseconds with four buckets per power of two, so a
+ * percentile read from it is within 25% of the actual value at any scale.
+ */
+class ProviderMetrics {
+
+    // Operations recorded, as passed to record()
+    static final int QUERY = 0;
+    static final int INSERT = 1;
+    static final int BULK_INSERT = 2;
+    static final int UPDATE = 3;
+    static final int DELETE = 4;
+    static final int APPLY_BATCH = 5;
+    static final int CALL = 6;
+    static final int OPEN_FILE = 7;
+
+    private static final String[] OPERATION_NAMES = {
+            "query", "insert", "bulkInsert", "update", "delete", "applyBatch", "call", "openFile"
+    };
+
+    /**
+     * Number of buckets per power of two is 2 to the power of this
+     */
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Enough buckets for latencies below 2^31 microseconds. Longer calls go in the last bucket.
+     */
+    private static final int BUCKETS = (31 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    /**
+     * Counters of one operation on one match code, created the first time it is recorded
+     */
+    private static final class Series {
+        final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        final AtomicLongArray totals = new AtomicLongArray(4);
+    }
+
+    // Positions in Series.totals
+    private static final int COUNT = 0;
+    private static final int ERRORS = 1;
+    private static final int TOTAL_NANOS = 2;
+    private static final int MAX_NANOS = 3;
+
+    /**
+     * Match codes recorded, in ascending order, and the URI path each stands for
+     */
+    private final int[] matchCodes;
+    private final String[] matchNames;
+
+    private final AtomicReferenceArray<Series> series;
+
+    /**
+     * @param matchCodes the match codes of the provider, in ascending order, including
+     *                   {@link android.content.UriMatcher#NO_MATCH}
+     * @param matchNames the URI path each match code stands for
+     */
+    ProviderMetrics(int[] matchCodes, String[] matchNames) {
+        this.matchCodes = matchCodes;
+        this.matchNames = matchNames;
+        series = new AtomicReferenceArray<>(matchCodes.length * OPERATION_NAMES.length);
+    }
+
+    /**
+     * Record a call that started at the given {@link System#nanoTime()} and just ended.
+     *
+     * @param operation  one of the operation constants
+     * @param matchCode  the code the URI matched, or the NO_MATCH code
+     * @param startNanos the time the call started
+     * @param failed     whether the call ended with an exception
+     */
+    void record(int operation, int matchCode, long startNanos, boolean failed) {
+        long nanos = System.nanoTime() - startNanos;
+
+        int match = Arrays.binarySearch(matchCodes, matchCode);
+        if (match < 0) {
+            return;
+        }
+        int index = match * OPERATION_NAMES.length + operation;
+        Series counters = series.get(index);
+        if (counters == null) {
+            // Only one of the threads racing to create the series wins, the others use it
+            series.compareAndSet(index, null, new Series());
+            counters = series.get(index);
+        }
+
+        counters.buckets.incrementAndGet(bucketOf(nanos / 1000));
+        counters.totals.incrementAndGet(COUNT);
+        if (failed) {
+            counters.totals.incrementAndGet(ERRORS);
+        }
+        counters.totals.addAndGet(TOTAL_NANOS, nanos);
+        long max;
+        do {
+            max = counters.totals.get(MAX_NANOS);
+        } while (nanos > max && !counters.totals.compareAndSet(MAX_NANOS, max, nanos));
+    }
+
+    /**
+     * Return the counters recorded so far, one bundle per operation and match code that has
+     * been called, with the keys described in {@link InventoryContract#METHOD_GET_METRICS}.
+     * Calls recorded while the snapshot is taken may be partly counted.
+     */
+    Bundle snapshot() {
+        ArrayList<Bundle> metrics = new ArrayList<>();
+        long[] buckets = new long[BUCKETS];
+        for (int index = 0; index < series.length(); index++) {
+            Series counters = series.get(index);
+            if (counters == null) {
+                continue;
+            }
+
+            // Count the calls from the buckets, so the percentiles agree with the count
+            long count = 0;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                buckets[bucket] = counters.buckets.get(bucket);
+                count += buckets[bucket];
+            }
+
+            Bundle metric = new Bundle();
+            metric.putString(InventoryContract.METRIC_OPERATION,
+                    OPERATION_NAMES[index % OPERATION_NAMES.length]);
+            metric.putString(InventoryContract.METRIC_URI,
+                    matchNames[index / OPERATION_NAMES.length]);
+            metric.putLong(InventoryContract.METRIC_COUNT, count);
+            metric.putLong(InventoryContract.METRIC_ERRORS, counters.totals.get(ERRORS));
+            metric.putLong(InventoryContract.METRIC_TOTAL_MICROS,
+                    counters.totals.get(TOTAL_NANOS) / 1000);
+            metric.putLong(InventoryContract.METRIC_MAX_MICROS,
+                    counters.totals.get(MAX_NANOS) / 1000);
+            metric.putLong(InventoryContract.METRIC_P50_MICROS, percentile(buckets, count, 50));
+            metric.putLong(InventoryContract.METRIC_P95_MICROS, percentile(buckets, count, 95));
+            metric.putLong(InventoryContract.METRIC_P99_MICROS, percentile(buckets, count, 99));
+            metrics.add(metric);
+        }
+
+        Bundle result = new Bundle();
+        result.putParcelableArrayList(InventoryContract.EXTRA_METRICS, metrics);
+        return result;
+    }
+
+    /**
+     * Return the upper bound, in microseconds, of the bucket holding the given percentile of
+     * the calls counted in the buckets
+     */
+    static long percentile(long[] buckets, long count, int percent) {
+        // Rank of the call at the percentile, rounded up
+        long rank = (count * percent + 99) / 100;
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += buckets[bucket];
+            if (seen >= rank && seen > 0) {
+                return lowerBoundOf(bucket + 1) - 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Return the bucket of a latency in microseconds. Latencies below {@link #SUB_BUCKETS} have
+     * a bucket each. Above, each power of two is split into {@link #SUB_BUCKETS} buckets.
+     */
+    static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) Math.max(micros, 0);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        int bucket = (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        return Math.min(bucket, BUCKETS - 1);
+    }
+
+    /**
+     * Return the smallest latency in microseconds that falls in the given bucket
+     */
+    static long lowerBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+}
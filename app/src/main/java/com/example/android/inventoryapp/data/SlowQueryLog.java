@@ -0,0 +1,229 @@
+package com.example.android.inventoryapp.data;
+
+import android.content.ContentProvider;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the queries that take longer than a threshold, with their bound arguments and the
+ * plan SQLite chose for them, so a query missing an index shows up even in release builds.
+ * Checking a query against the threshold costs one comparison; the plan is only asked for once
+ * a query has turned out to be slow.
+ * <p>
+ * Slow queries are written to the log and to a file kept on the device, which is exported through
+ * {@link InventoryContract#CONTENT_SLOW_QUERIES_URI}. The file is rotated once it reaches
+ * {@link #MAX_FILE_BYTES}, keeping the previous one, so it never takes more than twice that.
+ */
+class SlowQueryLog implements ContentProvider.PipeDataWriter<Void> {
+
+    private static final String LOG_TAG = SlowQueryLog.class.getSimpleName();
+
+    /**
+     * Threshold used until another one is set
+     */
+    static final long DEFAULT_THRESHOLD_MILLIS = 100;
+
+    /**
+     * Size of a log file at which it is rotated
+     */
+    private static final long MAX_FILE_BYTES = 64 * 1024;
+
+    private static final String FILE_NAME = "slow_queries.log";
+    private static final String OLD_FILE_NAME = "slow_queries.old.log";
+
+    /**
+     * Preferences keeping the threshold across restarts
+     */
+    private static final String PREFERENCES_NAME = "slow_queries";
+    private static final String PREFERENCE_THRESHOLD_MILLIS = "thresholdMillis";
+
+    /**
+     * Threshold value before it has been read from the preferences
+     */
+    private static final long THRESHOLD_UNKNOWN = Long.MIN_VALUE;
+
+    private final Context context;
+
+    /**
+     * Queries taking at least this long are recorded. Negative when recording is off.
+     */
+    private volatile long thresholdNanos = THRESHOLD_UNKNOWN;
+
+    SlowQueryLog(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * Return whether a query that took the given time must be recorded
+     */
+    boolean isSlow(long nanos) {
+        long threshold = thresholdNanos;
+        if (threshold == THRESHOLD_UNKNOWN) {
+            // Read the preferences on the first query rather than while the app starts
+            threshold = toNanos(getPreferences().getLong(PREFERENCE_THRESHOLD_MILLIS,
+                    DEFAULT_THRESHOLD_MILLIS));
+            thresholdNanos = threshold;
+        }
+        return threshold >= 0 && nanos >= threshold;
+    }
+
+    /**
+     * Set the time from which queries are recorded, or turn recording off
+     *
+     * @param thresholdMillis the threshold in milliseconds, negative to record nothing
+     */
+    void setThresholdMillis(long thresholdMillis) {
+        getPreferences().edit().putLong(PREFERENCE_THRESHOLD_MILLIS, thresholdMillis).apply();
+        thresholdNanos = toNanos(thresholdMillis);
+    }
+
+    /**
+     * Record a slow query with the plan SQLite uses for it.
+     *
+     * @param db    the database the query ran on
+     * @param sql   the query
+     * @param args  the arguments bound to the query, or null
+     * @param nanos the time the query took
+     */
+    void record(SQLiteDatabase db, String sql, String[] args, long nanos) {
+        StringBuilder entry = new StringBuilder();
+        entry.append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US).format(new Date()))
+                .append(' ').append(TimeUnit.NANOSECONDS.toMillis(nanos)).append(" ms\n")
+                .append("  ").append(sql).append('\n')
+                .append("  args ").append(Arrays.toString(args)).append('\n');
+        appendQueryPlan(entry, db, sql, args);
+        Log.w(LOG_TAG, entry.toString());
+
+        synchronized (this) {
+            File file = new File(context.getFilesDir(), FILE_NAME);
+            if (file.length() >= MAX_FILE_BYTES
+                    && !file.renameTo(new File(context.getFilesDir(), OLD_FILE_NAME))) {
+                Log.e(LOG_TAG, "Failed to rotate " + file);
+            }
+            Writer writer = null;
+            try {
+                writer = new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8");
+                writer.write(entry.toString());
+            } catch (IOException exception) {
+                Log.e(LOG_TAG, "Failed to save slow query", exception);
+            } finally {
+                closeQuietly(writer);
+            }
+        }
+    }
+
+    /**
+     * Append the lines of EXPLAIN QUERY PLAN for the query, which show for each table whether it
+     * is searched with an index or scanned, and whether rows are sorted with a temporary B-tree
+     */
+    private static void appendQueryPlan(StringBuilder entry, SQLiteDatabase db, String sql,
+                                        String[] args) {
+        Cursor plan = null;
+        try {
+            plan = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+            int detailColumnIndex = plan.getColumnIndexOrThrow("detail");
+            while (plan.moveToNext()) {
+                entry.append("  plan ").append(plan.getString(detailColumnIndex)).append('\n');
+            }
+        } catch (SQLiteException | IllegalArgumentException exception) {
+            entry.append("  plan unavailable: ").append(exception.getMessage()).append('\n');
+        } finally {
+            if (plan != null) {
+                plan.close();
+            }
+        }
+    }
+
+    /**
+     * Write the recorded slow queries into the export pipe, oldest first. The files aren't
+     * locked while the reader takes its time, so a slow query can still be recorded; a file
+     * rotated meanwhile is read to its end under its new name.
+     */
+    @Override
+    public void writeDataToPipe(ParcelFileDescriptor output, Uri uri, String mimeType,
+                                Bundle opts, Void args) {
+        OutputStream out = new FileOutputStream(output.getFileDescriptor());
+        Exception failure = null;
+        try {
+            copy(new File(context.getFilesDir(), OLD_FILE_NAME), out);
+            copy(new File(context.getFilesDir(), FILE_NAME), out);
+        } catch (IOException exception) {
+            // Either the reader closed its end of the pipe before the end, or a log file
+            // couldn't be read. In the latter case the reader must not take what it got for the
+            // whole log; in the former there is no one left to tell.
+            Log.w(LOG_TAG, "Export of " + uri + " stopped early", exception);
+            failure = exception;
+        } catch (RuntimeException exception) {
+            // This runs on a pool thread, where the exception would crash the process
+            Log.e(LOG_TAG, "Export of " + uri + " failed", exception);
+            failure = exception;
+        } finally {
+            closeQuietly(out);
+        }
+
+        // Only once the stream is done with the pipe
+        if (failure != null) {
+            try {
+                output.closeWithError(failure.toString());
+            } catch (IOException exception) {
+                // The reader closed its end of the pipe already
+            }
+        }
+    }
+
+    private static void copy(File file, OutputStream out) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[8 * 1024];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException exception) {
+                // Nothing left to do with it
+            }
+        }
+    }
+
+    private SharedPreferences getPreferences() {
+        return context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    private static long toNanos(long millis) {
+        return millis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
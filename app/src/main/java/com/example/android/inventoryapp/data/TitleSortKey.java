@@ -0,0 +1,50 @@
+package com.example.android.inventoryapp.data;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Derives the key books are sorted by title with, stored next to the title in
+ * {@link InventoryContract.InventoryEntry#COLUMN_TITLE_SORT_KEY}. The key is the title folded so
+ * that a plain binary comparison orders titles the way readers expect: accents are dropped, case
+ * is ignored, punctuation only separates words, and a leading article is skipped, so
+ * "The Fellowship of the Ring" sorts under F next to "Fellowship".
+ * <p>
+ * The key is computed once per write rather than per comparison, which lets SQLite read titles in
+ * order straight from an index instead of sorting them with a collation on every query.
+ */
+final class TitleSortKey {
+
+    // Accents and other marks left over once characters are decomposed
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    // Apostrophes join the parts of a word, as in "Ender's"
+    private static final Pattern APOSTROPHES = Pattern.compile("['\\u2019]");
+
+    // Anything else that is neither a letter nor a digit separates words
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // Articles skipped at the start of a title, as long as some other word follows
+    private static final Pattern LEADING_ARTICLE = Pattern.compile("(the|an|a) ");
+
+    private TitleSortKey() {
+    }
+
+    /**
+     * Return the sort key of the given title
+     */
+    static String of(String title) {
+        String key = Normalizer.normalize(title, Normalizer.Form.NFKD);
+        key = COMBINING_MARKS.matcher(key).replaceAll("");
+        key = APOSTROPHES.matcher(key).replaceAll("");
+        key = SEPARATORS.matcher(key.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+
+        Matcher article = LEADING_ARTICLE.matcher(key);
+        if (article.lookingAt()) {
+            key = key.substring(article.end());
+        }
+        return key;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.android.inventoryapp;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link CsvReader}.
+ */
+public class CsvReaderTest {
+
+    @Test
+    public void readsPlainAndQuotedFields() throws IOException {
+        List<List<String>> records = readAll("productName,price\r\n"
+                + "Dune,9.99\n"
+                + "\"Guns, Germs, and Steel\",\"12.50\"\n"
+                + "\"The \"\"Best\"\" Book\",1\n"
+                + "\"Two\nLines\",");
+
+        assertEquals(Arrays.asList(
+                Arrays.asList("productName", "price"),
+                Arrays.asList("Dune", "9.99"),
+                Arrays.asList("Guns, Germs, and Steel", "12.50"),
+                Arrays.asList("The \"Best\" Book", "1"),
+                Arrays.asList("Two\nLines", "")), records);
+    }
+
+    @Test
+    public void returnsNullAtEndOfFile() throws IOException {
+        CsvReader csv = new CsvReader(new StringReader("a\n"));
+
+        assertEquals(Arrays.asList("a"), csv.readRecord());
+        assertNull(csv.readRecord());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsUnterminatedQuote() throws IOException {
+        readAll("\"Dune,9.99\n");
+    }
+
+    private static List<List<String>> readAll(String text) throws IOException {
+        CsvReader csv = new CsvReader(new StringReader(text));
+        List<List<String>> records = new ArrayList<>();
+        List<String> record;
+        while ((record = csv.readRecord()) != null) {
+            records.add(new ArrayList<>(record));
+        }
+        return records;
+    }
+}
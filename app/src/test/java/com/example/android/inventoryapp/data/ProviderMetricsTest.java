@@ -0,0 +1,51 @@
+package com.example.android.inventoryapp.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the latency histogram of {@link ProviderMetrics}.
+ */
+public class ProviderMetricsTest {
+
+    private static final int BUCKETS = ProviderMetrics.bucketOf(Long.MAX_VALUE) + 1;
+
+    @Test
+    public void bucketsCoverEveryLatencyWithinAQuarter() {
+        for (long micros = 0; micros < 1000000; micros++) {
+            int bucket = ProviderMetrics.bucketOf(micros);
+            long lowerBound = ProviderMetrics.lowerBoundOf(bucket);
+            long upperBound = ProviderMetrics.lowerBoundOf(bucket + 1);
+
+            assertTrue(micros + " below bucket " + bucket, lowerBound <= micros);
+            assertTrue(micros + " above bucket " + bucket, micros < upperBound);
+            assertTrue("bucket " + bucket + " too wide", upperBound - lowerBound <= 1
+                    || (upperBound - lowerBound) * 4 <= lowerBound);
+        }
+    }
+
+    @Test
+    public void longLatenciesGoInTheLastBucket() {
+        assertEquals(BUCKETS - 1, ProviderMetrics.bucketOf(Integer.MAX_VALUE));
+        assertEquals(BUCKETS - 1, ProviderMetrics.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentilesAreWithinAQuarterOfTheLatencies() {
+        long[] buckets = new long[BUCKETS];
+        for (long micros = 1; micros <= 1000; micros++) {
+            buckets[ProviderMetrics.bucketOf(micros)]++;
+        }
+
+        assertWithinAQuarter(500, ProviderMetrics.percentile(buckets, 1000, 50));
+        assertWithinAQuarter(950, ProviderMetrics.percentile(buckets, 1000, 95));
+        assertWithinAQuarter(990, ProviderMetrics.percentile(buckets, 1000, 99));
+        assertEquals(0, ProviderMetrics.percentile(new long[BUCKETS], 0, 50));
+    }
+
+    private static void assertWithinAQuarter(long expected, long actual) {
+        assertTrue("expected about " + expected + " but was " + actual,
+                actual >= expected && actual <= expected * 5 / 4);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.android.inventoryapp.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the title sort keys of {@link TitleSortKey}.
+ */
+public class TitleSortKeyTest {
+
+    @Test
+    public void skipsLeadingArticles() {
+        assertEquals("fellowship of the ring", TitleSortKey.of("The Fellowship of the Ring"));
+        assertEquals("wrinkle in time", TitleSortKey.of("A Wrinkle in Time"));
+        assertEquals("unkindness of ghosts", TitleSortKey.of("An Unkindness of Ghosts"));
+        assertEquals("hobbit", TitleSortKey.of("  THE   Hobbit"));
+    }
+
+    @Test
+    public void keepsArticlesThatAreTheWholeTitleOrPartOfAWord() {
+        assertEquals("the", TitleSortKey.of("The"));
+        assertEquals("a", TitleSortKey.of("A."));
+        assertEquals("theory of everything", TitleSortKey.of("Theory of Everything"));
+        assertEquals("animal farm", TitleSortKey.of("Animal Farm"));
+    }
+
+    @Test
+    public void foldsCaseAndAccents() {
+        assertEquals("les miserables", TitleSortKey.of("Les Misérables"));
+        assertEquals("emile", TitleSortKey.of("ÉMILE"));
+        assertEquals(TitleSortKey.of("Cafe"), TitleSortKey.of("Café"));
+    }
+
+    @Test
+    public void punctuationOnlySeparatesWords() {
+        assertEquals("enders game", TitleSortKey.of("Ender's Game"));
+        assertEquals("enders game", TitleSortKey.of("Ender’s Game"));
+        assertEquals("dune messiah", TitleSortKey.of("\"Dune\" — Messiah!"));
+        assertEquals("", TitleSortKey.of("?!"));
+    }
+
+    @Test
+    public void keysSortTitlesAsReadersExpect() {
+        assertTrue(TitleSortKey.of("The Fellowship of the Ring")
+                .compareTo(TitleSortKey.of("Frankenstein")) < 0);
+        assertTrue(TitleSortKey.of("Émile").compareTo(TitleSortKey.of("Emma")) < 0);
+        assertTrue(TitleSortKey.of("dune").compareTo(TitleSortKey.of("Dune Messiah")) < 0);
+    }
+}